@@ -1,41 +1,113 @@
 import myparser.MiniJavaParser;
 import myparser.ParseException;
 import syntaxtree.Program;
+import mips.AsmPrinter;
+import mips.InstrList;
+import mips.Peephole;
+import mips.PeepholeRules;
 import visitor.BuildSymbolTableVisitor;
+import visitor.BoundsCheckVisitor;
 import visitor.CodeGenVisitor;
+import visitor.CompilationContext;
+import visitor.CompilationException;
+import visitor.ConstantFoldingVisitor;
+import visitor.DeadCodeVisitor;
+import visitor.IrGenVisitor;
+import visitor.SethiUllmanCodeGenVisitor;
 import visitor.TypeCheckVisitor;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
 
+// java Main [flags] [output.asm] < input.java
+//   -O0, -O1, -O2  optimization level (see Options.level; -O0 is the default)
+//   -fpeephole  run the peephole optimizer
+//   -fregalloc  keep values in registers (optimizing code generator)
+//   -fsethi-ullman  evaluate expressions into registers
+//   -fframe-temps  keep temporaries in fixed frame slots
+//   -fconstant-folding  fold constant expressions
+//   -fdead-code  remove unreachable and dead statements
+//   -finduction-variables  walk arrays with pointers in loops (-fregalloc)
+//   -fbounds-check  check array indexes (where they may be out of range)
+//   -fdevirtualize  call methods with one implementation directly
+//   -finline-caches  call the method of the expected class directly
+//   -finline  inline small methods (-fregalloc, -fdevirtualize)
+//   -ftail-calls  jump to the method called in return (recursion as a loop)
+//   -floop-invariants  move invariant code out of loops (-fregalloc)
+//   -fcse  reuse values computed earlier in the block (-fregalloc)
+//   -fssa  constant and copy propagation, dead code in SSA form (-fregalloc)
 public class Main {
   public static void main(String[] args) {
     try {
-      Program root = new MiniJavaParser(System.in).Goal();
+      CompilationContext context = new CompilationContext();
+      String output = null;
+      for (String arg : args) {
+        if (!arg.startsWith("-"))
+          output = arg;
+        else if (!context.getOptions().set(arg)) {
+          System.out.println("Unknown flag " + arg);
+          System.exit(1);
+        }
+      }
 
-      // Build the symbol table
-      BuildSymbolTableVisitor buildSymTab = new BuildSymbolTableVisitor();
-      root.accept(buildSymTab);
+      FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+      if (output != null)
+        out = new FileOutputStream(output).getChannel();
 
-      // Type check
-      TypeCheckVisitor typeCheck = new TypeCheckVisitor(buildSymTab.getSymTab());
-      root.accept(typeCheck);
-
-      PrintWriter out = new PrintWriter(System.out);
-      if (args.length >= 1)
-        out = new PrintWriter(new BufferedWriter(new FileWriter(args[0])));
-
-      CodeGenVisitor cgen = new CodeGenVisitor(buildSymTab.getSymTab(), out);
-
-      root.accept(cgen);
+      compile(System.in, out, context);
 
       out.close();
     } catch (ParseException e) {
       System.out.println(e.toString());
     } catch (IOException e) {
       System.out.println(e.toString());
+    } catch (UncheckedIOException e) {
+      System.out.println(e.getCause().toString());
+    } catch (CompilationException e) {
+      System.exit(e.getStatus());
+    }
+  }
+
+  // Compile the MiniJava program read from "in" to MIPS code written to "out"
+  public static void compile(InputStream in, WritableByteChannel out, CompilationContext context) throws ParseException {
+    Program root = new MiniJavaParser(in).Goal();
+
+    // Build the symbol table
+    BuildSymbolTableVisitor buildSymTab = new BuildSymbolTableVisitor(context);
+    root.accept(buildSymTab);
+
+    // Type check
+    TypeCheckVisitor typeCheck = new TypeCheckVisitor(context);
+    root.accept(typeCheck);
+
+    if (context.getOptions().constantFolding)
+      root.accept(new ConstantFoldingVisitor());
+    if (context.getOptions().deadCode)
+      root.accept(new DeadCodeVisitor());
+    if (context.getOptions().boundsCheck)
+      root.accept(new BoundsCheckVisitor());
+
+    List<InstrList> code;
+    if (context.getOptions().regAlloc) {
+      IrGenVisitor irgen = new IrGenVisitor(context);
+      root.accept(irgen);
+      code = irgen.getCode();
+    } else {
+      CodeGenVisitor cgen = context.getOptions().sethiUllman
+        ? new SethiUllmanCodeGenVisitor(context) : new CodeGenVisitor(context);
+      root.accept(cgen);
+      code = cgen.getCode();
     }
+
+    if (context.getOptions().peephole)
+      new Peephole(PeepholeRules.all()).run(code);
+
+    AsmPrinter.print(code, out);
   }
 }
@@ -0,0 +1,143 @@
+import myparser.ParseException;
+import myparser.TokenMgrError;
+import visitor.CompilationContext;
+import visitor.CompilationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// This one compiles many programs concurrently in one JVM. Every input file
+// X.java (or every .java file under an input directory) is compiled to X.asm
+// next to it, and a summary line is printed for each file.
+//   java MainBatch [-j threads] [flags] file-or-directory ...
+// (the flags are those of Main)
+public class MainBatch {
+
+  private static final List<String> flags = new ArrayList<>();
+
+  public static void main(String[] args) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    List<Path> inputs = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        if (args[i].equals("-j") && i + 1 < args.length) {
+          threads = Integer.parseInt(args[++i]);
+        } else if (args[i].startsWith("-")) {
+          if (!new CompilationContext().getOptions().set(args[i])) {
+            System.out.println("Unknown flag " + args[i]);
+            System.exit(1);
+          }
+          flags.add(args[i]);
+        } else {
+          inputs.addAll(findSources(Paths.get(args[i])));
+        }
+      }
+    } catch (IOException e) {
+      System.out.println(e.toString());
+      System.exit(1);
+    }
+
+    if (inputs.isEmpty()) {
+      System.out.println("Usage: java MainBatch [-j threads] [flags] file-or-directory ...");
+      System.exit(1);
+    }
+
+    // Each file is an independent task of a work-stealing pool
+    long startTime = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    List<ForkJoinTask<String>> tasks = new ArrayList<>();
+    for (Path input : inputs) {
+      tasks.add(pool.submit(() -> compile(input)));
+    }
+
+    int numOfFailures = 0;
+    for (int i = 0; i < inputs.size(); i++) {
+      String errors = tasks.get(i).join();
+      if (errors == null) {
+        System.out.println("OK   " + inputs.get(i));
+      } else {
+        System.out.println("FAIL " + inputs.get(i));
+        System.out.print(errors.replaceAll("(?m)^", "     "));
+        numOfFailures++;
+      }
+    }
+    pool.shutdown();
+
+    long elapsed = (System.nanoTime() - startTime) / 1000000;
+    System.out.printf("%d compiled, %d failed (%d threads, %d ms)%n", inputs.size() - numOfFailures, numOfFailures, threads, elapsed);
+    if (numOfFailures > 0)
+      System.exit(1);
+  }
+
+  // Return the .java files denoted by "path" (itself, or the ones under it)
+  private static List<Path> findSources(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      List<Path> sources = new ArrayList<>();
+      sources.add(path);
+      return sources;
+    }
+
+    try (Stream<Path> files = Files.walk(path)) {
+      return files.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+  }
+
+  // Compile "input" to the corresponding .asm file.
+  // Return null on success, or the error messages.
+  private static String compile(Path input) {
+    // A bad argument is reported like any other failure of its file
+    Path fileName = input.getFileName();
+    String name = fileName == null ? "" : fileName.toString();
+    if (!name.endsWith(".java") || name.length() == ".java".length())
+      return "Not a .java file\n";
+    Path output = input.resolveSibling(name.substring(0, name.length() - ".java".length()) + ".asm");
+
+    ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+    PrintStream messages = new PrintStream(diagnostics, true);
+    CompilationContext context = new CompilationContext();
+    context.setDiagnostics(messages, messages);
+    for (String flag : flags) {
+      context.getOptions().set(flag);
+    }
+
+    boolean success = false;
+    try (InputStream in = new FileInputStream(input.toFile());
+         FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      Main.compile(in, out, context);
+      success = diagnostics.size() == 0;
+    } catch (ParseException | TokenMgrError e) {
+      messages.println(e.toString());
+    } catch (CompilationException e) {
+      // The messages are already in "diagnostics"
+    } catch (IOException | RuntimeException e) {
+      messages.println(e.toString());
+    }
+
+    if (success)
+      return null;
+
+    try {
+      Files.deleteIfExists(output);
+    } catch (IOException e) {
+      messages.println(e.toString());
+    }
+    return diagnostics.size() == 0 ? "Compilation failed\n" : diagnostics.toString();
+  }
+}
@@ -0,0 +1,57 @@
+import myparser.MiniJavaParser;
+import myparser.ParseException;
+import syntaxtree.Program;
+import mips.AsmPrinter;
+import visitor.BuildSymbolTableVisitor;
+import visitor.CodeGenVisitor;
+import visitor.CompilationContext;
+import visitor.TypeCheckVisitor;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+// This one compiles the input repeatedly and reports the average time
+// spent in each phase (the parser runs only once)
+//   java MainBenchmark [iterations] < input.java
+public class MainBenchmark {
+  public static void main(String[] args) {
+    int iterations = 100;
+    if (args.length >= 1)
+      iterations = Integer.parseInt(args[0]);
+    int warmup = iterations;  // Let the JIT settle before measuring
+
+    try {
+      Program root = new MiniJavaParser(System.in).Goal();
+      WritableByteChannel out = Channels.newChannel(OutputStream.nullOutputStream());
+
+      long symTabTime = 0, typeCheckTime = 0, codeGenTime = 0;
+      for (int i = 0; i < warmup + iterations; i++) {
+        long t0 = System.nanoTime();
+        CompilationContext context = new CompilationContext();
+        root.accept(new BuildSymbolTableVisitor(context));
+
+        long t1 = System.nanoTime();
+        root.accept(new TypeCheckVisitor(context));
+
+        long t2 = System.nanoTime();
+        CodeGenVisitor cgen = new CodeGenVisitor(context);
+        root.accept(cgen);
+        AsmPrinter.print(cgen.getCode(), out);
+
+        long t3 = System.nanoTime();
+        if (i >= warmup) {
+          symTabTime += t1 - t0;
+          typeCheckTime += t2 - t1;
+          codeGenTime += t3 - t2;
+        }
+      }
+
+      System.out.printf("symbol table: %10.1f us%n", symTabTime / 1e3 / iterations);
+      System.out.printf("type check:   %10.1f us%n", typeCheckTime / 1e3 / iterations);
+      System.out.printf("code gen:     %10.1f us%n", codeGenTime / 1e3 / iterations);
+    } catch (ParseException e) {
+      System.out.println(e.toString());
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A basic block: straight-line instructions ending with a terminator (JUMP,
+// BRANCH, RETURN, EXIT or TAILCALL, see Instr)
+public final class Block {
+
+  private final String label;
+
+  public final ArrayList<Instr> instrs = new ArrayList<>();
+
+  // Position in Function.blocks (kept up to date by Function.renumber())
+  int index;
+
+  Block(String label) {
+    this.label = label;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public void add(Instr instr) {
+    instrs.add(instr);
+  }
+
+  // The terminator (null while the block is being built)
+  public Instr last() {
+    if (instrs.isEmpty())
+      return null;
+    Instr instr = instrs.get(instrs.size() - 1);
+    return instr.isTerminator() ? instr : null;
+  }
+
+  public boolean isTerminated() {
+    return last() != null;
+  }
+
+  public List<Block> successors() {
+    ArrayList<Block> successors = new ArrayList<>(2);
+    Instr last = last();
+    if (last != null) {
+      if (last.target != null)
+        successors.add(last.target);
+      if (last.other != null && last.other != last.target)
+        successors.add(last.other);
+    }
+    return successors;
+  }
+
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(label).append(":\n");
+    for (Instr instr : instrs) {
+      builder.append("  ").append(instr).append('\n');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,43 @@
+package ir;
+
+import java.util.Arrays;
+
+// Key for looking up a computation: the operation of an instruction, its
+// operands (registers, or value numbers in ValueNumbering) and its
+// immediate, if any. See LoopInvariants and ValueNumbering.
+final class Computation {
+
+  final int op;
+  final int[] operands;
+  final boolean hasImm;
+  final int imm;
+  private final int hashCode;
+
+  Computation(int op, int[] operands, boolean hasImm, int imm) {
+    this.op = op;
+    this.operands = operands;
+    this.hasImm = hasImm;
+    this.imm = hasImm ? imm : 0;
+    this.hashCode = 31 * (31 * op + Arrays.hashCode(operands)) + (hasImm ? this.imm : -1);
+  }
+
+  // The computation of "instr", on its own sources
+  static Computation of(Instr instr) {
+    return new Computation(instr.op, instr.srcs.clone(), instr.hasImm, instr.imm);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Computation)) return false;
+
+    Computation other = (Computation) o;
+    return op == other.op && hashCode == other.hashCode && hasImm == other.hasImm
+        && imm == other.imm && Arrays.equals(operands, other.operands);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+}
@@ -0,0 +1,343 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Sparse conditional constant propagation (Wegman and Zadeck) on SSA form.
+//
+// Each register is unknown (no definition reached yet), a constant, or
+// varying; the edges of the CFG are taken or not (yet). Only the
+// instructions of blocks reached through taken edges are evaluated, a phi
+// only meets the sources of its taken edges, and a branch with a constant
+// condition takes one edge. So a value can be constant because the code
+// that would change it never runs:
+//
+//   x = 1; if (x < 2) y = x + 1; else y = 5;  // y is 2
+//
+// Then the instructions defining constants become CONST, branches with a
+// constant condition become jumps, and the blocks never reached are
+// removed. A constant operand that MIPS can take as an immediate (the
+// second one, or either of a commutative operation) becomes one.
+public final class ConstantPropagation {
+
+  private static final int UNKNOWN = 0;
+  private static final int CONSTANT = 1;
+  private static final int VARYING = 2;
+
+  private final Ssa ssa;
+  private final int[] kind;
+  private final int[] value;
+  private final List<List<Instr>> uses = new ArrayList<>();
+  private final IdentityHashMap<Instr, Block> blockOf = new IdentityHashMap<>();
+
+  private final HashMap<Block, boolean[]> taken = new HashMap<>();  // Of each predecessor edge
+  private final BitSet reached = new BitSet();
+  private final ArrayDeque<Block[]> edges = new ArrayDeque<>();
+  private final ArrayDeque<Instr> instrs = new ArrayDeque<>();
+
+  private ConstantPropagation(Ssa ssa) {
+    this.ssa = ssa;
+    Function function = ssa.getFunction();
+    function.renumber();
+    int numOfRegs = function.getNumOfRegs();
+    kind = new int[numOfRegs];
+    value = new int[numOfRegs];
+    for (int v = 0; v < numOfRegs; v++) {
+      uses.add(new ArrayList<>());
+      kind[v] = VARYING;  // Until a definition is found: read before set
+    }
+    for (Block block : function.blocks) {
+      taken.put(block, new boolean[ssa.predecessors(block).size()]);
+      for (Instr instr : block.instrs) {
+        blockOf.put(instr, block);
+        if (instr.dst != Instr.NONE)
+          kind[instr.dst] = UNKNOWN;
+        for (int src : instr.srcs) {
+          uses.get(src).add(instr);
+        }
+      }
+    }
+  }
+
+  public static void run(Ssa ssa) {
+    ConstantPropagation propagation = new ConstantPropagation(ssa);
+    propagation.propagate();
+    propagation.rewrite();
+  }
+
+  private void propagate() {
+    reach(ssa.getFunction().entry());
+    while (!edges.isEmpty() || !instrs.isEmpty()) {
+      if (!edges.isEmpty()) {
+        Block[] edge = edges.poll();
+        Block to = edge[1];
+        int k = ssa.predecessors(to).indexOf(edge[0]);
+        if (taken.get(to)[k])
+          continue;
+        taken.get(to)[k] = true;
+        if (!reached.get(to.index)) {
+          reach(to);
+        } else {
+          for (Instr phi : to.instrs) {
+            if (phi.op != Instr.PHI)
+              break;
+            evaluate(phi);
+          }
+        }
+      } else {
+        Instr instr = instrs.poll();
+        if (reached.get(blockOf.get(instr).index))
+          evaluate(instr);
+      }
+    }
+  }
+
+  private void reach(Block block) {
+    reached.set(block.index);
+    for (Instr instr : block.instrs) {
+      evaluate(instr);
+    }
+  }
+
+  private void evaluate(Instr instr) {
+    switch (instr.op) {
+      case Instr.PHI: {
+        boolean[] edges = taken.get(blockOf.get(instr));
+        boolean known = false;
+        int constant = 0;
+        for (int i = 0; i < instr.srcs.length; i++) {
+          int src = instr.srcs[i];
+          if (!edges[i] || kind[src] == UNKNOWN)
+            continue;
+          if (kind[src] == VARYING || known && value[src] != constant) {
+            set(instr.dst, VARYING, 0);
+            return;
+          }
+          known = true;
+          constant = value[src];
+        }
+        if (known)
+          set(instr.dst, CONSTANT, constant);
+        break;
+      }
+
+      case Instr.CONST:
+        set(instr.dst, CONSTANT, instr.imm);
+        break;
+
+      case Instr.MOVE:
+        set(instr.dst, kind[instr.srcs[0]], value[instr.srcs[0]]);
+        break;
+
+      case Instr.ADD:
+      case Instr.SUB:
+      case Instr.MUL:
+      case Instr.LT:
+      case Instr.AND:
+      case Instr.XOR:
+      case Instr.SLL:
+      case Instr.NOT: {
+        int operands = operands(instr);
+        if (operands != CONSTANT)
+          set(instr.dst, operands, 0);
+        else
+          set(instr.dst, CONSTANT, fold(instr.op, value[instr.srcs[0]], second(instr)));
+        break;
+      }
+
+      case Instr.JUMP:
+        take(instr, instr.target);
+        break;
+
+      case Instr.BRANCH: {
+        int operands = operands(instr);
+        if (operands == CONSTANT) {
+          boolean holds = holds(instr.cond, value[instr.srcs[0]], second(instr));
+          take(instr, holds ? instr.target : instr.other);
+        } else if (operands == VARYING) {
+          take(instr, instr.target);
+          take(instr, instr.other);
+        }
+        break;
+      }
+
+      default:
+        if (instr.dst != Instr.NONE)
+          set(instr.dst, VARYING, 0);
+        break;
+    }
+  }
+
+  // UNKNOWN if a source is, otherwise VARYING if a source is, otherwise
+  // CONSTANT
+  private int operands(Instr instr) {
+    int operands = CONSTANT;
+    for (int src : instr.srcs) {
+      if (kind[src] == UNKNOWN)
+        return UNKNOWN;
+      if (kind[src] == VARYING)
+        operands = VARYING;
+    }
+    return operands;
+  }
+
+  // The value of the second operand (constant)
+  private int second(Instr instr) {
+    return instr.hasImm ? instr.imm : instr.srcs.length > 1 ? value[instr.srcs[1]] : 0;
+  }
+
+  private void take(Instr instr, Block to) {
+    edges.add(new Block[] { blockOf.get(instr), to });
+  }
+
+  private void set(int reg, int kind, int value) {
+    if (kind == this.kind[reg] && (kind != CONSTANT || value == this.value[reg]))
+      return;
+    this.kind[reg] = kind;
+    this.value[reg] = value;
+    instrs.addAll(uses.get(reg));
+  }
+
+  // The value of "op", as computed by the MIPS instructions of MipsGen
+  private static int fold(int op, int a, int b) {
+    switch (op) {
+      case Instr.ADD: return a + b;
+      case Instr.SUB: return a - b;
+      case Instr.MUL: return a * b;
+      case Instr.LT: return a < b ? 1 : 0;
+      case Instr.AND: return a & b;
+      case Instr.XOR: return a ^ b;
+      case Instr.SLL: return a << (b & 31);
+      case Instr.NOT: return a ^ 1;
+      default: throw new IllegalArgumentException("Cannot fold " + op);
+    }
+  }
+
+  private static boolean holds(int cond, int a, int b) {
+    switch (cond) {
+      case Instr.EQ: return a == b;
+      case Instr.NE: return a != b;
+      case Instr.LESS: return a < b;
+      case Instr.GE: return a >= b;
+      case Instr.GT: return a > b;
+      default: return a <= b;
+    }
+  }
+
+  private void rewrite() {
+    Function function = ssa.getFunction();
+
+    // Branches taking one edge become jumps, the blocks never reached go.
+    // Every branch is decided before an edge is removed: removing one
+    // shifts the predecessors of its block, which index "taken".
+    List<Block> decided = new ArrayList<>();
+    List<Block> kept = new ArrayList<>();
+    for (Block block : function.blocks) {
+      if (!reached.get(block.index))
+        continue;
+      Instr last = block.last();
+      if (last.op != Instr.BRANCH || last.target == last.other)
+        continue;
+      boolean toTarget = isTaken(block, last.target);
+      if (toTarget == isTaken(block, last.other))
+        continue;
+      decided.add(block);
+      kept.add(toTarget ? last.target : last.other);
+    }
+    for (int i = 0; i < decided.size(); i++) {
+      Block block = decided.get(i);
+      Instr last = block.last();
+      Block dropped = kept.get(i) == last.target ? last.other : last.target;
+      Instr jump = Instr.jump(kept.get(i));
+      jump.line = last.line;
+      block.instrs.set(block.instrs.size() - 1, jump);
+      ssa.removeEdge(block, dropped);
+    }
+    BitSet removed = new BitSet();
+    for (Block block : function.blocks) {
+      if (!reached.get(block.index))
+        removed.set(block.index);
+    }
+    List<Block> blocks = new ArrayList<>(function.blocks);
+    for (int b = removed.nextSetBit(0); b >= 0; b = removed.nextSetBit(b + 1)) {
+      ssa.removeBlock(blocks.get(b));
+    }
+
+    for (Block block : function.blocks) {
+      List<Instr> list = block.instrs;
+      int phis = Ssa.phiCount(block);
+      for (int k = 0; k < list.size(); k++) {
+        Instr instr = list.get(k);
+        if (instr.dst != Instr.NONE && kind[instr.dst] == CONSTANT && instr.op != Instr.CONST) {
+          Instr constant = Instr.constant(instr.dst, value[instr.dst]);
+          constant.line = instr.line;
+          if (instr.op == Instr.PHI) {
+            list.remove(k);
+            list.add(--phis, constant);
+            k--;
+          } else {
+            list.set(k, constant);
+          }
+        } else {
+          immediate(instr);
+        }
+      }
+    }
+  }
+
+  private boolean isTaken(Block from, Block to) {
+    int k = ssa.predecessors(to).indexOf(from);
+    return taken.get(to)[k];
+  }
+
+  // Make a constant operand of "instr" an immediate, if MIPS has the form
+  private void immediate(Instr instr) {
+    if (instr.hasImm || instr.srcs.length != 2)
+      return;
+    boolean commutative;
+    switch (instr.op) {
+      case Instr.ADD:
+      case Instr.MUL:
+      case Instr.AND:
+      case Instr.XOR:
+      case Instr.BRANCH:
+        commutative = true;
+        break;
+      case Instr.SUB:
+      case Instr.LT:
+        commutative = false;
+        break;
+      default:
+        return;
+    }
+    int src1 = instr.srcs[0];
+    int src2 = instr.srcs[1];
+    if (kind[src2] == CONSTANT) {
+      instr.srcs = new int[] { src1 };
+      instr.imm = value[src2];
+    } else if (commutative && kind[src1] == CONSTANT) {
+      instr.srcs = new int[] { src2 };
+      instr.imm = value[src1];
+      if (instr.op == Instr.BRANCH)
+        instr.cond = swap(instr.cond);
+    } else {
+      return;
+    }
+    instr.hasImm = true;
+  }
+
+  // The condition of "b cond a" when "a cond b" holds
+  private static int swap(int cond) {
+    switch (cond) {
+      case Instr.LESS: return Instr.GT;
+      case Instr.GE: return Instr.LE;
+      case Instr.GT: return Instr.LESS;
+      case Instr.LE: return Instr.GE;
+      default: return cond;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package ir;
+
+// Copy propagation on SSA form: the uses of the destination of "d = s"
+// read s instead, and the MOVE goes; a phi whose sources are all the same
+// register (or the phi itself, around a loop) is such a copy too. In SSA
+// form neither register is set again, so this holds everywhere.
+public final class CopyPropagation {
+
+  private CopyPropagation() {
+  }
+
+  public static void run(Ssa ssa) {
+    Function function = ssa.getFunction();
+    int numOfRegs = function.getNumOfRegs();
+    int[] copyOf = new int[numOfRegs];
+    for (int v = 0; v < numOfRegs; v++) {
+      copyOf[v] = v;
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block block : function.blocks) {
+        for (Instr instr : block.instrs) {
+          int dst = instr.dst;
+          if (dst == Instr.NONE || copyOf[dst] != dst)
+            continue;
+          int src = Instr.NONE;
+          if (instr.op == Instr.MOVE) {
+            src = find(copyOf, instr.srcs[0]);
+          } else if (instr.op == Instr.PHI) {
+            for (int s : instr.srcs) {
+              s = find(copyOf, s);
+              if (s == dst || s == src)
+                continue;
+              if (src != Instr.NONE) {
+                src = Instr.NONE;
+                break;
+              }
+              src = s;
+            }
+          }
+          if (src != Instr.NONE && src != dst) {
+            copyOf[dst] = src;
+            changed = true;
+          }
+        }
+      }
+    }
+
+    for (Block block : function.blocks) {
+      block.instrs.removeIf(instr -> instr.dst != Instr.NONE && copyOf[instr.dst] != instr.dst);
+      for (Instr instr : block.instrs) {
+        for (int i = 0; i < instr.srcs.length; i++) {
+          instr.srcs[i] = find(copyOf, instr.srcs[i]);
+        }
+      }
+    }
+  }
+
+  private static int find(int[] copyOf, int v) {
+    while (copyOf[v] != v) {
+      v = copyOf[v];
+    }
+    return v;
+  }
+}
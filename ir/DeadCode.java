@@ -0,0 +1,74 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Dead code elimination on SSA form: an instruction is kept if it has an
+// effect (a store, a call, a check, a terminator, or a load that may fault)
+// or defines a register read by a kept instruction; the others are
+// removed. A call whose value is not read keeps no destination (MipsGen
+// then skips the move from $v0).
+//
+// A load through the object of the method ("this" is never null) cannot
+// fault, so it goes when its value is not read, like an ALU operation.
+public final class DeadCode {
+
+  private DeadCode() {
+  }
+
+  public static void run(Ssa ssa) {
+    Function function = ssa.getFunction();
+    int object = function.isMain() ? Instr.NONE : function.getParams()[0];
+    Instr[] defOf = new Instr[function.getNumOfRegs()];
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.dst != Instr.NONE)
+          defOf[instr.dst] = instr;
+      }
+    }
+
+    IdentityHashMap<Instr, Boolean> kept = new IdentityHashMap<>();
+    List<Instr> work = new ArrayList<>();
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (hasEffect(instr, object)) {
+          kept.put(instr, true);
+          work.add(instr);
+        }
+      }
+    }
+    boolean[] read = new boolean[defOf.length];
+    while (!work.isEmpty()) {
+      Instr instr = work.remove(work.size() - 1);
+      for (int src : instr.srcs) {
+        read[src] = true;
+        Instr def = defOf[src];
+        if (def != null && kept.put(def, true) == null)
+          work.add(def);
+      }
+    }
+
+    for (Block block : function.blocks) {
+      block.instrs.removeIf(instr -> !kept.containsKey(instr));
+      for (Instr instr : block.instrs) {
+        if (instr.isCall() && instr.dst != Instr.NONE && !read[instr.dst])
+          instr.dst = Instr.NONE;
+      }
+    }
+  }
+
+  private static boolean hasEffect(Instr instr, int object) {
+    switch (instr.op) {
+      case Instr.STORE:
+      case Instr.CALL:
+      case Instr.RUNTIME:
+      case Instr.CHECK:
+        return true;
+      case Instr.LOAD:
+        return instr.srcs[0] != object;
+      default:
+        return instr.isTerminator();
+    }
+  }
+}
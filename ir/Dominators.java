@@ -0,0 +1,187 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The dominator tree of a function (Cooper, Harvey and Kennedy: immediate
+// dominators iterated in reverse postorder) and the dominance frontiers.
+// Blocks are identified by their index (see Function.renumber); the blocks
+// not reachable from the entry have no immediate dominator.
+public final class Dominators {
+
+  private final List<Block> blocks;
+  private final List<List<Block>> predecessors;
+  private final int[] idom;      // Index of the immediate dominator (-1 if none)
+  private final int[] order;     // Position in reverse postorder (-1 if unreachable)
+  private final List<List<Block>> children = new ArrayList<>();
+  private List<List<Block>> frontiers;
+
+  public Dominators(Function function) {
+    function.renumber();
+    blocks = function.blocks;
+    int n = blocks.size();
+    predecessors = predecessors(function);
+    idom = new int[n];
+    order = new int[n];
+    Arrays.fill(idom, -1);
+    Arrays.fill(order, -1);
+
+    List<Block> reversePostorder = reversePostorder(function);
+    for (int i = 0; i < reversePostorder.size(); i++) {
+      order[reversePostorder.get(i).index] = i;
+    }
+
+    idom[0] = 0;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block block : reversePostorder) {
+        int b = block.index;
+        if (b == 0)
+          continue;
+        int dom = -1;
+        for (Block predecessor : predecessors.get(b)) {
+          int p = predecessor.index;
+          if (idom[p] == -1)
+            continue;
+          dom = dom == -1 ? p : intersect(p, dom);
+        }
+        if (dom != idom[b]) {
+          idom[b] = dom;
+          changed = true;
+        }
+      }
+    }
+
+    for (int b = 0; b < n; b++) {
+      children.add(new ArrayList<>());
+    }
+    for (Block block : reversePostorder) {
+      if (block.index != 0)
+        children.get(idom[block.index]).add(block);
+    }
+  }
+
+  // The predecessors of each block of "function", by block index
+  public static List<List<Block>> predecessors(Function function) {
+    List<List<Block>> predecessors = new ArrayList<>();
+    for (int b = 0; b < function.blocks.size(); b++) {
+      predecessors.add(new ArrayList<>());
+    }
+    for (Block block : function.blocks) {
+      for (Block successor : block.successors()) {
+        predecessors.get(successor.index).add(block);
+      }
+    }
+    return predecessors;
+  }
+
+  // The blocks reachable from the entry, each before its successors (except
+  // along back edges)
+  public static List<Block> reversePostorder(Function function) {
+    int n = function.blocks.size();
+    boolean[] visited = new boolean[n];
+    ArrayList<Block> postorder = new ArrayList<>();
+    ArrayList<Block> stack = new ArrayList<>();
+    ArrayList<Integer> next = new ArrayList<>();  // Next successor of each block on the stack
+    stack.add(function.entry());
+    next.add(0);
+    visited[0] = true;
+    while (!stack.isEmpty()) {
+      int top = stack.size() - 1;
+      Block block = stack.get(top);
+      List<Block> successors = block.successors();
+      int i = next.get(top);
+      if (i < successors.size()) {
+        next.set(top, i + 1);
+        Block successor = successors.get(i);
+        if (!visited[successor.index]) {
+          visited[successor.index] = true;
+          stack.add(successor);
+          next.add(0);
+        }
+      } else {
+        postorder.add(block);
+        stack.remove(top);
+        next.remove(top);
+      }
+    }
+    ArrayList<Block> reversePostorder = new ArrayList<>();
+    for (int i = postorder.size() - 1; i >= 0; i--) {
+      reversePostorder.add(postorder.get(i));
+    }
+    return reversePostorder;
+  }
+
+  private int intersect(int a, int b) {
+    while (a != b) {
+      while (order[a] > order[b]) {
+        a = idom[a];
+      }
+      while (order[b] > order[a]) {
+        b = idom[b];
+      }
+    }
+    return a;
+  }
+
+  public boolean isReachable(Block block) {
+    return order[block.index] != -1;
+  }
+
+  // The immediate dominator of "block" (null for the entry and the
+  // unreachable blocks)
+  public Block idom(Block block) {
+    int b = block.index;
+    return b == 0 || idom[b] == -1 ? null : blocks.get(idom[b]);
+  }
+
+  // Whether every path from the entry to "b" goes through "a"
+  public boolean dominates(Block a, Block b) {
+    if (!isReachable(b))
+      return false;
+    int i = b.index;
+    while (i != a.index && i != 0) {
+      i = idom[i];
+    }
+    return i == a.index;
+  }
+
+  // The blocks immediately dominated by "block", in reverse postorder
+  public List<Block> children(Block block) {
+    return children.get(block.index);
+  }
+
+  public List<Block> predecessors(Block block) {
+    return predecessors.get(block.index);
+  }
+
+  // The blocks where the dominance of "block" ends: the join points reached
+  // from it that it does not strictly dominate
+  public List<Block> frontier(Block block) {
+    if (frontiers == null) {
+      frontiers = new ArrayList<>();
+      for (int b = 0; b < blocks.size(); b++) {
+        frontiers.add(new ArrayList<>());
+      }
+      for (Block join : blocks) {
+        List<Block> from = predecessors.get(join.index);
+        if (from.size() < 2 || !isReachable(join))
+          continue;
+        for (Block predecessor : from) {
+          int runner = predecessor.index;
+          if (!isReachable(predecessor))
+            continue;
+          while (runner != idom[join.index]) {
+            List<Block> frontier = frontiers.get(runner);
+            if (!frontier.contains(join))
+              frontier.add(join);
+            runner = idom[runner];
+          }
+        }
+      }
+    }
+    return frontiers.get(block.index);
+  }
+}
@@ -0,0 +1,85 @@
+package ir;
+
+import java.util.ArrayList;
+
+// The IR of one routine: a MiniJava method or the main program. The first
+// block is the entry; the blocks are laid out in the order of "blocks".
+public final class Function {
+
+  private final String name;
+  private final boolean isMain;
+
+  // Virtual registers holding the arguments on entry: params[0] is the
+  // object, params[k] is parameter k (none for the main program)
+  private final int[] params;
+
+  public final ArrayList<Block> blocks = new ArrayList<>();
+
+  private int numOfRegs = 0;
+  private int numOfLabels = 0;
+
+  public Function(String name, int numOfParams, boolean isMain) {
+    this.name = name;
+    this.isMain = isMain;
+    this.params = new int[isMain ? 0 : 1 + numOfParams];
+    for (int i = 0; i < params.length; i++) {
+      params[i] = newReg();
+    }
+  }
+
+  // The label of the routine ("main" for the main program)
+  public String getName() {
+    return name;
+  }
+
+  public boolean isMain() {
+    return isMain;
+  }
+
+  public int[] getParams() {
+    return params;
+  }
+
+  public int newReg() {
+    return numOfRegs++;
+  }
+
+  public int getNumOfRegs() {
+    return numOfRegs;
+  }
+
+  // A new block, not yet part of the layout (see addBlock)
+  public Block newBlock() {
+    return new Block(name + "_" + numOfLabels++);
+  }
+
+  // Append "block" to the layout
+  public void addBlock(Block block) {
+    block.index = blocks.size();
+    blocks.add(block);
+  }
+
+  public Block entry() {
+    return blocks.get(0);
+  }
+
+  // Update the block indexes after the layout was changed
+  public void renumber() {
+    for (int i = 0; i < blocks.size(); i++) {
+      blocks.get(i).index = i;
+    }
+  }
+
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(name).append('(');
+    for (int i = 0; i < params.length; i++) {
+      builder.append(i == 0 ? "v" : ", v").append(params[i]);
+    }
+    builder.append(")\n");
+    for (Block block : blocks) {
+      builder.append(block);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,291 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Strength reduction of array accesses in loops (-finduction-variables).
+//
+// A basic induction variable of a loop is a register whose only definition
+// in the loop is i = i + c. An array access indexed by i + d, whose address
+// IrGenVisitor computes as
+//
+//   o = i << 2;  a = base + o;  load/store [a + 4]
+//
+// with "base" invariant in the loop, gets a pointer p = base + 4 * i instead:
+// p is computed before the loop, advanced by 4 * c right after i = i + c,
+// and the access becomes load/store [p + 4 + 4 * d]. All the accesses to the
+// same array with the same induction variable share the pointer.
+//
+// The base is invariant if it is not defined in the loop, or if it is loaded
+// from a field of an invariant object and the loop has no call and no store
+// to a field at the same offset (array element stores are told apart by
+// their address computation). Only the accesses whose index is computed in
+// the same block, with no change of i in between, are rewritten.
+public final class InductionVariables {
+
+  private InductionVariables() {
+  }
+
+  public static void run(Function function) {
+    for (Loops.Loop loop : Loops.find(function)) {
+      if (loop.preheader != null)
+        new LoopRewriter(function, loop).run();
+    }
+  }
+
+  // An array access to rewrite
+  private static final class Access {
+    Instr access;   // The load or store through "address"
+    Instr address;  // address = base + offset
+    Instr offset;   // offset = index << 2
+    Instr index;    // index = i + d (null if the index is i)
+    Instr base;     // base = load [object + k] (null if base is invariant)
+    int d;
+  }
+
+  // The accesses sharing a pointer: their induction variable, and their
+  // base, invariant register or field (object register and offset)
+  private static final class Group {
+    final int i;
+    final int base;  // The register, or the object of the field
+    final boolean isField;
+    final int offset;  // Of the field
+
+    Group(int i, Access access) {
+      this.i = i;
+      isField = access.base != null;
+      base = isField ? access.base.srcs[0] : access.address.srcs[0];
+      offset = isField ? access.base.imm : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Group)) return false;
+
+      Group other = (Group) o;
+      return i == other.i && base == other.base && isField == other.isField
+          && offset == other.offset;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * (31 * i + base) + offset) + (isField ? 1 : 0);
+    }
+  }
+
+  private static final class LoopRewriter {
+    private final Function function;
+    private final Loops.Loop loop;
+    private final List<Block> blocks = new ArrayList<>();
+
+    private final int[] defs;  // Number of definitions in the loop
+    private final Instr[] def;  // The (last) definition in the loop
+    private final int[] uses;  // Number of uses in the function
+    private boolean hasCall = false;
+    private final List<Integer> fieldStores = new ArrayList<>();  // Their offsets
+
+    LoopRewriter(Function function, Loops.Loop loop) {
+      this.function = function;
+      this.loop = loop;
+      int numOfRegs = function.getNumOfRegs();
+      defs = new int[numOfRegs];
+      def = new Instr[numOfRegs];
+      uses = new int[numOfRegs];
+
+      for (Block block : function.blocks) {
+        boolean inLoop = loop.contains(block);
+        if (inLoop)
+          blocks.add(block);
+        for (int k = 0; k < block.instrs.size(); k++) {
+          Instr instr = block.instrs.get(k);
+          for (int src : instr.srcs) {
+            uses[src]++;
+          }
+          if (!inLoop)
+            continue;
+          if (instr.dst != Instr.NONE) {
+            defs[instr.dst]++;
+            def[instr.dst] = instr;
+          }
+          if (instr.op == Instr.CALL)
+            hasCall = true;
+          if (instr.op == Instr.STORE && !isElementAddress(block, k, instr.srcs[0]))
+            fieldStores.add(instr.imm);
+        }
+      }
+    }
+
+    void run() {
+      // The accesses of each (induction variable, base)
+      HashMap<Group, List<Access>> groups = new HashMap<>();
+      for (Block block : blocks) {
+        for (int k = 0; k < block.instrs.size(); k++) {
+          Instr instr = block.instrs.get(k);
+          if ((instr.op == Instr.LOAD || instr.op == Instr.STORE) && instr.imm == 4) {
+            Access access = match(block, k);
+            if (access != null) {
+              int i = access.index == null ? access.offset.srcs[0] : access.index.srcs[0];
+              groups.computeIfAbsent(new Group(i, access), x -> new ArrayList<>()).add(access);
+            }
+          }
+        }
+      }
+      if (groups.isEmpty())
+        return;
+
+      IdentityHashMap<Instr, Boolean> removed = new IdentityHashMap<>();
+      for (List<Access> group : groups.values()) {
+        rewrite(group, removed);
+      }
+      for (Block block : blocks) {
+        block.instrs.removeIf(removed::containsKey);
+      }
+    }
+
+    // The access at instrs[k] of "block" if it can use a pointer
+    private Access match(Block block, int k) {
+      List<Instr> instrs = block.instrs;
+      Access access = new Access();
+      access.access = instrs.get(k);
+
+      int a = access.access.srcs[0];
+      int ia = defBefore(instrs, a, k);
+      if (ia < 0 || uses[a] != 1)
+        return null;
+      access.address = instrs.get(ia);
+      if (access.address.op != Instr.ADD || access.address.hasImm)
+        return null;
+
+      int o = access.address.srcs[1];
+      int io = defBefore(instrs, o, ia);
+      if (io < 0 || uses[o] != 1)
+        return null;
+      access.offset = instrs.get(io);
+      if (access.offset.op != Instr.SLL || !access.offset.hasImm || access.offset.imm != 2)
+        return null;
+
+      // The index: i, or i + d computed in the block
+      int x = access.offset.srcs[0];
+      int i;
+      int from;
+      if (isBasic(x)) {
+        i = x;
+        from = io;
+      } else {
+        int ix = defBefore(instrs, x, io);
+        if (ix < 0)
+          return null;
+        Instr index = instrs.get(ix);
+        if ((index.op != Instr.ADD && index.op != Instr.SUB) || !index.hasImm
+            || !isBasic(index.srcs[0]) || index.dst == index.srcs[0])
+          return null;
+        access.index = index;
+        access.d = index.op == Instr.ADD ? index.imm : -index.imm;
+        i = index.srcs[0];
+        from = ix;
+      }
+      if (definedBetween(instrs, i, from, k))
+        return null;
+
+      // The base: invariant, or loaded from an invariant field in the block
+      int base = access.address.srcs[0];
+      if (defs[base] != 0) {
+        int ib = defBefore(instrs, base, ia);
+        if (ib < 0)
+          return null;
+        Instr load = instrs.get(ib);
+        if (load.op != Instr.LOAD || defs[load.srcs[0]] != 0 || hasCall || fieldStores.contains(load.imm))
+          return null;
+        access.base = load;
+      }
+      return access;
+    }
+
+    // Give the accesses of one group a pointer
+    private void rewrite(List<Access> group, IdentityHashMap<Instr, Boolean> removed) {
+      Access first = group.get(0);
+      int i = first.index == null ? first.offset.srcs[0] : first.index.srcs[0];
+      Instr increment = def[i];
+      int step = increment.op == Instr.ADD ? increment.imm : -increment.imm;
+
+      // p = base + 4 * i before the loop
+      List<Instr> setup = new ArrayList<>();
+      int base;
+      if (first.base == null) {
+        base = first.address.srcs[0];
+      } else {
+        base = function.newReg();
+        setup.add(Instr.load(base, first.base.srcs[0], first.base.imm));
+      }
+      int offset = function.newReg();
+      setup.add(Instr.binaryImm(Instr.SLL, offset, i, 2));
+      int p = function.newReg();
+      setup.add(Instr.binary(Instr.ADD, p, base, offset));
+      List<Instr> preheader = loop.preheader.instrs;
+      preheader.addAll(preheader.size() - 1, setup);
+
+      // p = p + 4 * c after i = i + c
+      for (Block block : blocks) {
+        int k = block.instrs.indexOf(increment);
+        if (k >= 0) {
+          Instr advance = Instr.binaryImm(Instr.ADD, p, p, 4 * step);
+          advance.line = increment.line;
+          block.instrs.add(k + 1, advance);
+        }
+      }
+
+      for (Access access : group) {
+        access.access.srcs[0] = p;
+        access.access.imm = 4 + 4 * access.d;
+        removed.put(access.address, true);
+        removed.put(access.offset, true);
+        if (access.index != null && uses[access.index.dst] == 1)
+          removed.put(access.index, true);
+        if (access.base != null && uses[access.base.dst] == 1)
+          removed.put(access.base, true);
+      }
+    }
+
+    // Whether "reg" is a basic induction variable: i = i + c is its only
+    // definition in the loop
+    private boolean isBasic(int reg) {
+      if (defs[reg] != 1)
+        return false;
+      Instr instr = def[reg];
+      return (instr.op == Instr.ADD || instr.op == Instr.SUB) && instr.hasImm
+          && instr.srcs[0] == reg;
+    }
+
+    // Whether "reg" is the address of an array element computed in the
+    // block before instrs[k] (base + (index << 2), see IrGenVisitor)
+    private static boolean isElementAddress(Block block, int k, int reg) {
+      List<Instr> instrs = block.instrs;
+      int ia = defBefore(instrs, reg, k);
+      if (ia < 0 || instrs.get(ia).op != Instr.ADD || instrs.get(ia).hasImm)
+        return false;
+      int io = defBefore(instrs, instrs.get(ia).srcs[1], ia);
+      return io >= 0 && instrs.get(io).op == Instr.SLL && instrs.get(io).imm == 2;
+    }
+  }
+
+  // The index of the last definition of "reg" before instrs[k] (-1 if none)
+  private static int defBefore(List<Instr> instrs, int reg, int k) {
+    for (int j = k - 1; j >= 0; j--) {
+      if (instrs.get(j).dst == reg)
+        return j;
+    }
+    return -1;
+  }
+
+  // Whether "reg" is defined by instrs[j] for some from <= j < to
+  private static boolean definedBetween(List<Instr> instrs, int reg, int from, int to) {
+    for (int j = from; j < to; j++) {
+      if (instrs.get(j).dst == reg)
+        return true;
+    }
+    return false;
+  }
+}
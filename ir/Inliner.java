@@ -0,0 +1,263 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Inlining of small methods at their direct call sites (-finline).
+//
+// Only a CALL with a symbol and no guard is inlined: its method is bound
+// statically (it has a single implementation, see
+// SymbolTable.getOnlyImplementation), so the copy is what dispatch would
+// run. The callee is inlined if it has at most SMALL instructions, or HOT
+// instructions when the call is in a loop (it runs more than once), and
+// never if it is recursive (in a cycle of direct calls): a copy would
+// have the call again. Inlined bodies may have calls to inline in turn,
+// in the next round (up to ROUNDS, and MAX_SIZE instructions per
+// function).
+//
+// The block of the call is split after it; the copy of the callee, with
+// fresh registers, goes in between. A parameter the callee never assigns
+// is replaced by the argument, and the value returned is computed directly
+// into the destination of the call when it can, so that a getter becomes a
+// single load. The null check of the receiver (see Instr.nullCheck) is
+// dropped when the callee starts with an access to its object, which
+// faults on null anyway.
+public final class Inliner {
+
+  private static final int SMALL = 8;
+  private static final int HOT = 30;
+  private static final int ROUNDS = 3;
+  private static final int MAX_SIZE = 2000;
+
+  private Inliner() {
+  }
+
+  public static void run(List<Function> functions) {
+    HashMap<String, Function> byName = new HashMap<>();
+    for (Function function : functions) {
+      byName.put(function.getName(), function);
+    }
+
+    HashSet<Function> recursive = recursive(functions, byName);
+    for (int round = 0; round < ROUNDS; round++) {
+      boolean changed = false;
+      for (Function function : functions) {
+        changed |= inlineCalls(function, byName, recursive);
+      }
+      if (!changed)
+        return;
+    }
+  }
+
+  // The functions that can call themselves through direct calls
+  private static HashSet<Function> recursive(List<Function> functions,
+      HashMap<String, Function> byName) {
+    HashSet<Function> recursive = new HashSet<>();
+    for (Function function : functions) {
+      HashSet<Function> seen = new HashSet<>();
+      ArrayDeque<Function> work = new ArrayDeque<>();
+      work.add(function);
+      while (!work.isEmpty() && !recursive.contains(function)) {
+        for (Function callee : callees(work.poll(), byName)) {
+          if (callee == function)
+            recursive.add(function);
+          else if (seen.add(callee))
+            work.add(callee);
+        }
+      }
+    }
+    return recursive;
+  }
+
+  // The functions that "function" calls directly
+  private static List<Function> callees(Function function, HashMap<String, Function> byName) {
+    List<Function> callees = new ArrayList<>();
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.op == Instr.CALL && instr.symbol != null && instr.guard == null
+            && byName.containsKey(instr.symbol))
+          callees.add(byName.get(instr.symbol));
+      }
+    }
+    return callees;
+  }
+
+  // Inline the calls of "function" that pass the heuristics (each once;
+  // the copies are not scanned before the next round)
+  private static boolean inlineCalls(Function function, HashMap<String, Function> byName,
+      HashSet<Function> recursive) {
+    HashSet<Block> hot = new HashSet<>();
+    for (Loops.Loop loop : Loops.find(function)) {
+      for (Block block : function.blocks) {
+        if (loop.contains(block))
+          hot.add(block);
+      }
+    }
+
+    boolean changed = false;
+    int size = size(function);
+    int numOfBlocks = function.blocks.size();
+    for (int b = 0; b < numOfBlocks; b++) {
+      Block block = function.blocks.get(b);
+      for (int k = 0; k < block.instrs.size(); k++) {
+        Instr instr = block.instrs.get(k);
+        if (instr.op != Instr.CALL || instr.symbol == null || instr.guard != null)
+          continue;
+        Function callee = byName.get(instr.symbol);
+        if (callee == null || recursive.contains(callee))
+          continue;
+        int calleeSize = size(callee);
+        if (calleeSize > (hot.contains(block) ? HOT : SMALL) || size + calleeSize > MAX_SIZE)
+          continue;
+
+        List<Block> added = inline(function, b, k, callee);
+        if (hot.contains(block))
+          hot.addAll(added);
+        size += calleeSize;
+        numOfBlocks += added.size();
+        changed = true;
+        b += added.size() - 1;  // Go on with the rest of the block, the last added
+        break;
+      }
+    }
+    function.renumber();
+    return changed;
+  }
+
+  // Replace the call instrs[k] of blocks[b] by the body of "callee".
+  // Return the blocks added after blocks[b].
+  private static List<Block> inline(Function function, int b, int k, Function callee) {
+    Block block = function.blocks.get(b);
+    Instr call = block.instrs.get(k);
+
+    // The instructions after the call go to a block of their own
+    Block rest = function.newBlock();
+    List<Instr> after = block.instrs.subList(k + 1, block.instrs.size());
+    rest.instrs.addAll(after);
+    after.clear();
+    block.instrs.remove(k);
+
+    int[] params = callee.getParams();
+    if (k > 0) {
+      Instr check = block.instrs.get(k - 1);
+      if (check.op == Instr.CHECK && check.srcs.length == 1 && check.srcs[0] == call.srcs[0]
+          && accessesObjectFirst(callee))
+        block.instrs.remove(k - 1);
+    }
+
+    // Registers of the callee: the arguments for the parameters it does not
+    // assign, fresh registers for the others
+    boolean[] assigned = new boolean[callee.getNumOfRegs()];
+    int[] uses = new int[callee.getNumOfRegs()];
+    for (Block calleeBlock : callee.blocks) {
+      for (Instr instr : calleeBlock.instrs) {
+        if (instr.dst != Instr.NONE)
+          assigned[instr.dst] = true;
+        for (int src : instr.srcs) {
+          uses[src]++;
+        }
+      }
+    }
+    int[] map = new int[callee.getNumOfRegs()];
+    for (int v = 0; v < map.length; v++) {
+      map[v] = function.newReg();
+    }
+    for (int i = 0; i < params.length; i++) {
+      if (assigned[params[i]])
+        add(block, Instr.move(map[params[i]], call.srcs[i]), call.line);
+      else
+        map[params[i]] = call.srcs[i];
+    }
+
+    IdentityHashMap<Block, Block> copies = new IdentityHashMap<>();
+    List<Block> added = new ArrayList<>();
+    for (Block calleeBlock : callee.blocks) {
+      Block copy = function.newBlock();
+      copies.put(calleeBlock, copy);
+      added.add(copy);
+    }
+    add(block, Instr.jump(copies.get(callee.entry())), call.line);
+
+    for (Block calleeBlock : callee.blocks) {
+      Block copy = copies.get(calleeBlock);
+      for (Instr instr : calleeBlock.instrs) {
+        if (instr.op == Instr.RETURN) {
+          // The value goes to the destination of the call
+          int value = instr.srcs[0];
+          Instr last = copy.instrs.isEmpty() ? null : copy.instrs.get(copy.instrs.size() - 1);
+          if (last != null && last.dst == map[value] && uses[value] == 1)
+            last.dst = call.dst;
+          else
+            add(copy, Instr.move(call.dst, map[value]), instr.line);
+          add(copy, Instr.jump(rest), instr.line);
+          continue;
+        }
+
+        Instr c = instr.copy();
+        if (c.dst != Instr.NONE)
+          c.dst = map[c.dst];
+        for (int i = 0; i < c.srcs.length; i++) {
+          c.srcs[i] = map[c.srcs[i]];
+        }
+        if (c.target != null)
+          c.target = copies.get(c.target);
+        if (c.other != null)
+          c.other = copies.get(c.other);
+        copy.add(c);
+      }
+    }
+    added.add(rest);
+
+    function.blocks.addAll(b + 1, added);
+    function.renumber();
+    return added;
+  }
+
+  private static void add(Block block, Instr instr, int line) {
+    instr.line = line;
+    block.add(instr);
+  }
+
+  // Whether the first instruction of "function" with an effect is a load
+  // or store through its object (which faults if the object is null)
+  private static boolean accessesObjectFirst(Function function) {
+    int object = function.getParams()[0];
+    for (Instr instr : function.entry().instrs) {
+      switch (instr.op) {
+        case Instr.CONST:
+        case Instr.MOVE:
+        case Instr.ADD:
+        case Instr.SUB:
+        case Instr.MUL:
+        case Instr.LT:
+        case Instr.AND:
+        case Instr.XOR:
+        case Instr.SLL:
+        case Instr.NOT:
+          continue;
+        case Instr.LOAD:
+        case Instr.STORE:
+          return instr.srcs[0] == object;
+        default:
+          return false;
+      }
+    }
+    return false;
+  }
+
+  // The number of instructions of "function", without jumps and returns
+  private static int size(Function function) {
+    int size = 0;
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.op != Instr.JUMP && instr.op != Instr.RETURN)
+          size++;
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,272 @@
+package ir;
+
+import java.util.Arrays;
+
+// One instruction of the intermediate representation: an operation on
+// virtual registers (numbered from 0 in each Function, see newReg()).
+//
+// The sources are in srcs. For the ALU operations, BRANCH, LOAD and STORE
+// the last operand may be an immediate instead: the instruction then has
+// one source less and the value is in imm.
+//
+//   CONST    dst = imm
+//   MOVE     dst = srcs[0]
+//   ADD ...  dst = srcs[0] op (srcs[1] or imm)
+//   NOT      dst = !srcs[0]  (of a boolean)
+//   LOAD     dst = mem[srcs[0] + imm]
+//   STORE    mem[srcs[0] + imm] = srcs[1]
+//   CALL     dst = symbol(srcs), srcs[0] is the object (MiniJava method);
+//            without a symbol, the method at offset imm of its vtable;
+//            with a guard too, symbol if the vtable of the object is the
+//            label guard, and the method at offset imm otherwise
+//   RUNTIME  dst = symbol(srcs[0]), both optional (runtime routine taking
+//            its argument in $a0 and returning in $v0)
+//   CHECK    if (srcs[0] >= srcs[1], unsigned), or if (srcs[0] == 0) when
+//            it is the only source, go to the runtime routine "symbol"
+//            (which reports the exception and ends the program)
+//   PHI      dst = srcs[k] when coming from the k-th predecessor of the
+//            block (only in SSA form, at the start of a block, see Ssa)
+//
+// The last instruction of each Block is one of:
+//
+//   JUMP     goto target
+//   BRANCH   if (srcs[0] cond (srcs[1] or imm)) goto target else goto other
+//   RETURN   return srcs[0]
+//   EXIT     end of the program
+//   TAILCALL return symbol(srcs), or the method at offset imm of the vtable
+//            of srcs[0] without a symbol: a CALL in tail position, that
+//            reuses the frame (see TailCalls)
+public final class Instr {
+
+  public static final int NONE = -1;
+
+  public static final int CONST = 0;
+  public static final int MOVE = 1;
+  public static final int ADD = 2;
+  public static final int SUB = 3;
+  public static final int MUL = 4;
+  public static final int LT = 5;
+  public static final int AND = 6;
+  public static final int XOR = 7;
+  public static final int SLL = 8;
+  public static final int NOT = 9;
+  public static final int LOAD = 10;
+  public static final int STORE = 11;
+  public static final int CALL = 12;
+  public static final int RUNTIME = 13;
+  public static final int CHECK = 14;
+  public static final int PHI = 15;
+  public static final int JUMP = 16;
+  public static final int BRANCH = 17;
+  public static final int RETURN = 18;
+  public static final int EXIT = 19;
+  public static final int TAILCALL = 20;
+
+  private static final String[] NAMES = {
+    "const", "move", "add", "sub", "mul", "lt", "and", "xor", "sll", "not",
+    "load", "store", "call", "runtime", "check", "phi", "jump", "branch", "return",
+    "exit", "tailcall"
+  };
+
+  // Conditions of BRANCH
+  public static final int EQ = 0;
+  public static final int NE = 1;
+  public static final int LESS = 2;
+  public static final int GE = 3;
+  public static final int GT = 4;
+  public static final int LE = 5;
+
+  private static final String[] CONDITIONS = { "==", "!=", "<", ">=", ">", "<=" };
+
+  public int op;
+  public int dst = NONE;
+  public int[] srcs;
+  public int imm;
+  public boolean hasImm;
+  public int cond;
+  public String symbol;
+  public String guard;
+  public Block target;
+  public Block other;
+
+  // Source line of the statement (0 if unknown)
+  public int line;
+
+  public Instr(int op, int dst, int[] srcs) {
+    this.op = op;
+    this.dst = dst;
+    this.srcs = srcs;
+  }
+
+  public static Instr constant(int dst, int value) {
+    Instr instr = new Instr(CONST, dst, new int[0]);
+    instr.imm = value;
+    instr.hasImm = true;
+    return instr;
+  }
+
+  public static Instr move(int dst, int src) {
+    return new Instr(MOVE, dst, new int[] { src });
+  }
+
+  public static Instr binary(int op, int dst, int src1, int src2) {
+    return new Instr(op, dst, new int[] { src1, src2 });
+  }
+
+  public static Instr binaryImm(int op, int dst, int src, int imm) {
+    Instr instr = new Instr(op, dst, new int[] { src });
+    instr.imm = imm;
+    instr.hasImm = true;
+    return instr;
+  }
+
+  public static Instr load(int dst, int base, int offset) {
+    Instr instr = new Instr(LOAD, dst, new int[] { base });
+    instr.imm = offset;
+    instr.hasImm = true;
+    return instr;
+  }
+
+  public static Instr store(int base, int offset, int value) {
+    Instr instr = new Instr(STORE, NONE, new int[] { base, value });
+    instr.imm = offset;
+    instr.hasImm = true;
+    return instr;
+  }
+
+  public static Instr call(int dst, String label, int[] args) {
+    Instr instr = new Instr(CALL, dst, args);
+    instr.symbol = label;
+    return instr;
+  }
+
+  // A call through the vtable of the object args[0]
+  public static Instr callVirtual(int dst, int offset, int[] args) {
+    Instr instr = new Instr(CALL, dst, args);
+    instr.imm = offset;
+    return instr;
+  }
+
+  // A call through the vtable with an inline cache: "label" is called when
+  // the vtable of the object is "vtable"
+  public static Instr callCached(int dst, String vtable, String label, int offset, int[] args) {
+    Instr instr = callVirtual(dst, offset, args);
+    instr.guard = vtable;
+    instr.symbol = label;
+    return instr;
+  }
+
+  // A call of a runtime routine; arg and dst may be NONE
+  public static Instr runtime(int dst, String label, int arg) {
+    Instr instr = new Instr(RUNTIME, dst, arg == NONE ? new int[0] : new int[] { arg });
+    instr.symbol = label;
+    return instr;
+  }
+
+  // A bounds check of "index" against "length"
+  public static Instr check(int index, int length) {
+    Instr instr = new Instr(CHECK, NONE, new int[] { index, length });
+    instr.symbol = "_array_index_out_of_bound_exception";
+    return instr;
+  }
+
+  // A null check of the receiver of a call
+  public static Instr nullCheck(int object) {
+    Instr instr = new Instr(CHECK, NONE, new int[] { object });
+    instr.symbol = "_null_pointer_exception";
+    return instr;
+  }
+
+  // A phi of "numOfPredecessors" sources, all "src" for now
+  public static Instr phi(int dst, int src, int numOfPredecessors) {
+    int[] srcs = new int[numOfPredecessors];
+    Arrays.fill(srcs, src);
+    return new Instr(PHI, dst, srcs);
+  }
+
+  public static Instr jump(Block target) {
+    Instr instr = new Instr(JUMP, NONE, new int[0]);
+    instr.target = target;
+    return instr;
+  }
+
+  public static Instr branch(int cond, int src1, int src2, Block target, Block other) {
+    Instr instr = new Instr(BRANCH, NONE, new int[] { src1, src2 });
+    instr.cond = cond;
+    instr.target = target;
+    instr.other = other;
+    return instr;
+  }
+
+  public static Instr branchImm(int cond, int src, int imm, Block target, Block other) {
+    Instr instr = new Instr(BRANCH, NONE, new int[] { src });
+    instr.imm = imm;
+    instr.hasImm = true;
+    instr.cond = cond;
+    instr.target = target;
+    instr.other = other;
+    return instr;
+  }
+
+  public static Instr ret(int src) {
+    return new Instr(RETURN, NONE, new int[] { src });
+  }
+
+  public static Instr exit() {
+    return new Instr(EXIT, NONE, new int[0]);
+  }
+
+  public boolean isTerminator() {
+    return op >= JUMP;
+  }
+
+  // Whether the instruction calls a routine (and clobbers the caller-saved
+  // registers)
+  public boolean isCall() {
+    return op == CALL || op == RUNTIME;
+  }
+
+  // The condition that holds exactly when "cond" does not
+  public static int negate(int cond) {
+    return cond ^ 1;
+  }
+
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    if (dst != NONE)
+      builder.append('v').append(dst).append(" = ");
+    builder.append(NAMES[op]);
+    if (op == BRANCH)
+      builder.append(' ').append(CONDITIONS[cond]);
+    if (guard != null)
+      builder.append(' ').append(guard).append('?');
+    if (symbol != null)
+      builder.append(' ').append(symbol);
+    if ((op == CALL || op == TAILCALL) && (symbol == null || guard != null))
+      builder.append(" vtable+").append(imm);
+    for (int src : srcs) {
+      builder.append(" v").append(src);
+    }
+    if (hasImm)
+      builder.append(' ').append(imm);
+    if (target != null)
+      builder.append(" -> ").append(target.getLabel());
+    if (other != null)
+      builder.append(", ").append(other.getLabel());
+    return builder.toString();
+  }
+
+  // A copy of the instruction (sharing the blocks it refers to)
+  public Instr copy() {
+    Instr instr = new Instr(op, dst, Arrays.copyOf(srcs, srcs.length));
+    instr.imm = imm;
+    instr.hasImm = hasImm;
+    instr.cond = cond;
+    instr.symbol = symbol;
+    instr.guard = guard;
+    instr.target = target;
+    instr.other = other;
+    instr.line = line;
+    return instr;
+  }
+}
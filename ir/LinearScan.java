@@ -0,0 +1,196 @@
+package ir;
+
+import mips.Reg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Linear scan register allocation (Poletto and Sarkar) of the virtual
+// registers of a function to $t0 - $t9 and $s0 - $s7.
+//
+// The instructions are numbered in layout order; instruction k reads its
+// sources at 2k and writes its destination at 2k + 1. The live interval of
+// a virtual register goes from its first to its last position (holes
+// included). A value live across a call only gets a callee-saved $s
+// register; the others prefer the caller-saved $t registers. When no
+// register is free, the interval that ends last is spilled to the frame.
+public final class LinearScan {
+
+  // The registers handed out, in order of preference
+  private static final int[] TEMPS = {
+    Reg.T0, Reg.T1, Reg.T2, Reg.T3, Reg.T4, Reg.T5, Reg.T6, Reg.T7, Reg.T8, Reg.T9
+  };
+  private static final int[] SAVED = {
+    Reg.S0, Reg.S1, Reg.S2, Reg.S3, Reg.S4, Reg.S5, Reg.S6, Reg.S7
+  };
+
+  private final int[] start;
+  private final int[] end;
+  private final boolean[] crossesCall;
+  private final int[] hint;  // The source of a move that defines the register
+
+  private final int[] regs;        // The allocated register (or NONE)
+  private final boolean[] spilled;
+  private int usedSaved = 0;       // Bit mask of the $s registers used
+
+  public LinearScan(Function function) {
+    int numOfRegs = function.getNumOfRegs();
+    start = new int[numOfRegs];
+    end = new int[numOfRegs];
+    crossesCall = new boolean[numOfRegs];
+    hint = new int[numOfRegs];
+    regs = new int[numOfRegs];
+    spilled = new boolean[numOfRegs];
+    Arrays.fill(start, Integer.MAX_VALUE);
+    Arrays.fill(end, Integer.MIN_VALUE);
+    Arrays.fill(hint, Instr.NONE);
+    Arrays.fill(regs, Instr.NONE);
+
+    buildIntervals(function);
+    allocate();
+  }
+
+  // The register allocated to "reg", or NONE if it was spilled
+  public int reg(int reg) {
+    return regs[reg];
+  }
+
+  public boolean isSpilled(int reg) {
+    return spilled[reg];
+  }
+
+  // Bit mask of the callee-saved registers used
+  public int getUsedSaved() {
+    return usedSaved;
+  }
+
+  private void buildIntervals(Function function) {
+    LiveVariables live = new LiveVariables(function);
+    ArrayList<Integer> calls = new ArrayList<>();
+
+    for (int param : function.getParams()) {
+      extend(param, -1);
+    }
+
+    int k = 0;
+    for (Block block : function.blocks) {
+      int blockStart = 2 * k;
+      BitSet liveIn = live.liveIn(block);
+      for (int v = liveIn.nextSetBit(0); v >= 0; v = liveIn.nextSetBit(v + 1)) {
+        extend(v, blockStart);
+      }
+
+      for (Instr instr : block.instrs) {
+        for (int src : instr.srcs) {
+          extend(src, 2 * k);
+        }
+        if (instr.dst != Instr.NONE) {
+          extend(instr.dst, 2 * k + 1);
+          if (instr.op == Instr.MOVE && hint[instr.dst] == Instr.NONE)
+            hint[instr.dst] = instr.srcs[0];
+        }
+        if (instr.isCall())
+          calls.add(2 * k);
+        k++;
+      }
+
+      int blockEnd = 2 * k - 1;
+      BitSet liveOut = live.liveOut(block);
+      for (int v = liveOut.nextSetBit(0); v >= 0; v = liveOut.nextSetBit(v + 1)) {
+        extend(v, blockEnd);
+      }
+    }
+
+    // A value is clobbered by a call at 2c if it is live before and after it
+    int[] callPositions = calls.stream().mapToInt(Integer::intValue).toArray();
+    for (int v = 0; v < start.length; v++) {
+      if (start[v] > end[v])
+        continue;
+      int i = Arrays.binarySearch(callPositions, start[v]);
+      if (i < 0)
+        i = -i - 1;
+      crossesCall[v] = i < callPositions.length && callPositions[i] + 1 < end[v];
+    }
+  }
+
+  private void extend(int reg, int position) {
+    start[reg] = Math.min(start[reg], position);
+    end[reg] = Math.max(end[reg], position);
+  }
+
+  private void allocate() {
+    ArrayList<Integer> intervals = new ArrayList<>();
+    for (int v = 0; v < start.length; v++) {
+      if (start[v] <= end[v])
+        intervals.add(v);
+    }
+    intervals.sort((v, w) -> start[v] != start[w] ? Integer.compare(start[v], start[w]) : Integer.compare(v, w));
+
+    boolean[] free = new boolean[32];
+    for (int reg : TEMPS) {
+      free[reg] = true;
+    }
+    for (int reg : SAVED) {
+      free[reg] = true;
+    }
+
+    // Intervals holding a register, by increasing end
+    ArrayList<Integer> active = new ArrayList<>();
+
+    for (int v : intervals) {
+      // Expire the intervals that ended
+      while (!active.isEmpty() && end[active.get(0)] < start[v]) {
+        free[regs[active.remove(0)]] = true;
+      }
+
+      int reg = Instr.NONE;
+      int h = hint[v];
+      if (h != Instr.NONE && regs[h] != Instr.NONE && free[regs[h]] && isAllowed(v, regs[h]))
+        reg = regs[h];
+      if (reg == Instr.NONE && !crossesCall[v])
+        reg = firstFree(free, TEMPS);
+      if (reg == Instr.NONE)
+        reg = firstFree(free, SAVED);
+
+      if (reg == Instr.NONE) {
+        // Spill the interval (this one or an active one) that ends last
+        int victim = v;
+        for (int w : active) {
+          if (isAllowed(v, regs[w]) && end[w] > end[victim])
+            victim = w;
+        }
+        if (victim == v) {
+          spilled[v] = true;
+          continue;
+        }
+        reg = regs[victim];
+        regs[victim] = Instr.NONE;
+        spilled[victim] = true;
+        active.remove((Integer) victim);
+      }
+
+      free[reg] = false;
+      regs[v] = reg;
+      if (reg >= Reg.S0 && reg <= Reg.S7)
+        usedSaved |= 1 << reg;
+      int i = 0;
+      while (i < active.size() && end[active.get(i)] <= end[v]) {
+        i++;
+      }
+      active.add(i, v);
+    }
+  }
+
+  private boolean isAllowed(int v, int reg) {
+    return !crossesCall[v] || (reg >= Reg.S0 && reg <= Reg.S7);
+  }
+
+  private static int firstFree(boolean[] free, int[] pool) {
+    for (int reg : pool) {
+      if (free[reg])
+        return reg;
+    }
+    return Instr.NONE;
+  }
+}
@@ -0,0 +1,63 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+// The virtual registers live at the beginning and at the end of each block
+// of a function (backward dataflow, iterated to a fixed point)
+public final class LiveVariables {
+
+  private final BitSet[] liveIn;
+  private final BitSet[] liveOut;
+
+  public LiveVariables(Function function) {
+    function.renumber();
+    ArrayList<Block> blocks = function.blocks;
+    int n = blocks.size();
+    BitSet[] uses = new BitSet[n];
+    BitSet[] defs = new BitSet[n];
+    liveIn = new BitSet[n];
+    liveOut = new BitSet[n];
+
+    for (int b = 0; b < n; b++) {
+      uses[b] = new BitSet();
+      defs[b] = new BitSet();
+      for (Instr instr : blocks.get(b).instrs) {
+        for (int src : instr.srcs) {
+          if (!defs[b].get(src))
+            uses[b].set(src);
+        }
+        if (instr.dst != Instr.NONE)
+          defs[b].set(instr.dst);
+      }
+      liveIn[b] = (BitSet) uses[b].clone();
+      liveOut[b] = new BitSet();
+    }
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int b = n - 1; b >= 0; b--) {
+        BitSet out = liveOut[b];
+        for (Block successor : blocks.get(b).successors()) {
+          out.or(liveIn[successor.index]);
+        }
+        BitSet in = (BitSet) out.clone();
+        in.andNot(defs[b]);
+        in.or(uses[b]);
+        if (!in.equals(liveIn[b])) {
+          liveIn[b] = in;
+          changed = true;
+        }
+      }
+    }
+  }
+
+  public BitSet liveIn(Block block) {
+    return liveIn[block.index];
+  }
+
+  public BitSet liveOut(Block block) {
+    return liveOut[block.index];
+  }
+}
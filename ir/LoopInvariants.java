@@ -0,0 +1,158 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+// Loop-invariant code motion (-floop-invariants).
+//
+// An instruction of a loop is moved to the end of its preheader when its
+// sources are not defined in the loop (or only by instructions moved
+// before it) and it is the only definition of its destination in the loop,
+// which is neither live at the header (read before it is set) nor live at
+// an exit of the loop. Inner loops come first, so that what is moved to
+// their preheader can leave the enclosing loops too. This also takes the
+// operands of a loop condition out of the loop (i < this.size - 1 is one
+// branch per iteration).
+//
+// The ALU operations have no effect and cannot fault, so they may run even
+// if the loop body does not. A LOAD is moved if nothing in the loop may
+// change the word:
+//   - an array length (offset 0) never changes;
+//   - otherwise, the loop must have no call and no store at the same offset
+//     (fields at different offsets, or a field and an array element, are
+//     different words; element accesses are all at offset 4 before
+//     InductionVariables)
+// and if it cannot fault where the loop would not: its base is the object
+// of the method ("this" is never null), or it is in the header with only
+// ALU operations before it (the header runs at least once).
+//
+// An instruction computing the same as one already moved (same operation,
+// sources and immediate) is removed instead, and its destination renamed in
+// the loop: all its uses are there, after it.
+//
+// A constant stays in a loop with calls: out of it, it would take an $s
+// register (saved and restored on every call of the method) to save one
+// li per iteration.
+public final class LoopInvariants {
+
+  private LoopInvariants() {
+  }
+
+  public static void run(Function function) {
+    for (Loops.Loop loop : Loops.find(function)) {
+      if (loop.preheader != null)
+        hoist(function, loop);
+    }
+  }
+
+  private static void hoist(Function function, Loops.Loop loop) {
+    List<Block> blocks = new ArrayList<>();
+    for (Block block : function.blocks) {
+      if (loop.contains(block))
+        blocks.add(block);
+    }
+
+    int[] defs = new int[function.getNumOfRegs()];  // Definitions in the loop
+    boolean hasCall = false;
+    boolean hasRuntimeCall = false;
+    BitSet storeOffsets = new BitSet();
+    for (Block block : blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.dst != Instr.NONE)
+          defs[instr.dst]++;
+        if (instr.op == Instr.CALL)
+          hasCall = true;
+        if (instr.op == Instr.RUNTIME)
+          hasRuntimeCall = true;
+        if (instr.op == Instr.STORE)
+          storeOffsets.set(instr.imm);
+      }
+    }
+
+    // Registers that must keep their value from before the loop or to after it
+    LiveVariables live = new LiveVariables(function);
+    BitSet kept = (BitSet) live.liveIn(loop.header).clone();
+    for (Block block : blocks) {
+      for (Block successor : block.successors()) {
+        if (!loop.contains(successor))
+          kept.or(live.liveIn(successor));
+      }
+    }
+
+    int object = function.isMain() ? Instr.NONE : function.getParams()[0];
+    List<Instr> preheader = loop.preheader.instrs;
+    HashMap<Computation, Integer> moved = new HashMap<>();  // Register of each moved computation
+    int[] rename = new int[function.getNumOfRegs()];
+    for (int v = 0; v < rename.length; v++) {
+      rename[v] = v;
+    }
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block block : blocks) {
+        boolean effects = false;  // An instruction that may fault came before
+        for (int k = 0; k < block.instrs.size(); k++) {
+          Instr instr = block.instrs.get(k);
+          for (int i = 0; i < instr.srcs.length; i++) {
+            instr.srcs[i] = rename[instr.srcs[i]];
+          }
+          boolean movable = isPure(instr) && !(instr.op == Instr.CONST && (hasCall || hasRuntimeCall));
+          if (instr.op == Instr.LOAD) {
+            boolean unchanged = instr.imm == 0 || !hasCall && !storeOffsets.get(instr.imm);
+            boolean safe = instr.srcs[0] == object || block == loop.header && !effects;
+            movable = unchanged && safe;
+          }
+          if (movable && isInvariant(instr, defs, kept)) {
+            block.instrs.remove(k--);
+            Computation computation = Computation.of(instr);
+            Integer same = moved.get(computation);
+            if (same != null) {
+              rename[instr.dst] = same;
+            } else {
+              moved.put(computation, instr.dst);
+              preheader.add(preheader.size() - 1, instr);
+            }
+            defs[instr.dst] = 0;
+            changed = true;
+            continue;
+          }
+          effects |= !isPure(instr);
+        }
+      }
+    }
+  }
+
+  // Whether the value of "instr" is the same in every iteration, and it is
+  // the only definition of its destination
+  private static boolean isInvariant(Instr instr, int[] defs, BitSet kept) {
+    if (instr.dst == Instr.NONE || instr.isTerminator() || instr.isCall()
+        || defs[instr.dst] != 1 || kept.get(instr.dst))
+      return false;
+    for (int src : instr.srcs) {
+      if (defs[src] != 0)
+        return false;
+    }
+    return true;
+  }
+
+  // Operations without effects that cannot fault
+  private static boolean isPure(Instr instr) {
+    switch (instr.op) {
+      case Instr.CONST:
+      case Instr.MOVE:
+      case Instr.ADD:
+      case Instr.SUB:
+      case Instr.MUL:
+      case Instr.LT:
+      case Instr.AND:
+      case Instr.XOR:
+      case Instr.SLL:
+      case Instr.NOT:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// The natural loops of a function. For each back edge t -> h (h dominates
+// t), the loop of h is made of h and the blocks that reach t without going
+// through h; the loops of the back edges to the same header are merged.
+// Blocks are identified by their index (see Function.renumber and
+// Dominators).
+public final class Loops {
+
+  public static final class Loop {
+    public final Block header;
+    public final BitSet blocks = new BitSet();
+
+    // The only block outside the loop that jumps to the header, if the
+    // header is its only successor (null otherwise): code put at its end
+    // runs once before the loop
+    public Block preheader;
+
+    Loop(Block header) {
+      this.header = header;
+    }
+
+    public boolean contains(Block block) {
+      return blocks.get(block.index);
+    }
+  }
+
+  private Loops() {
+  }
+
+  // The loops of "function", inner loops before the loops containing them
+  public static List<Loop> find(Function function) {
+    function.renumber();
+    ArrayList<Block> blocks = function.blocks;
+    Dominators dominators = new Dominators(function);
+
+    List<Loop> loops = new ArrayList<>();
+    Loop[] loopOf = new Loop[blocks.size()];
+    for (Block tail : blocks) {
+      for (Block header : tail.successors()) {
+        if (!dominators.dominates(header, tail))
+          continue;
+        Loop loop = loopOf[header.index];
+        if (loop == null) {
+          loop = new Loop(header);
+          loopOf[header.index] = loop;
+          loops.add(loop);
+        }
+        addBody(loop, tail, dominators);
+      }
+    }
+
+    for (Loop loop : loops) {
+      Block preheader = null;
+      int outside = 0;
+      for (Block predecessor : dominators.predecessors(loop.header)) {
+        if (!loop.contains(predecessor)) {
+          preheader = predecessor;
+          outside++;
+        }
+      }
+      if (outside == 1 && preheader.successors().size() == 1)
+        loop.preheader = preheader;
+    }
+
+    loops.sort((a, b) -> a.blocks.cardinality() - b.blocks.cardinality());
+    return loops;
+  }
+
+  // Add "tail" and the blocks reaching it (up to the header) to the loop
+  private static void addBody(Loop loop, Block tail, Dominators dominators) {
+    loop.blocks.set(loop.header.index);
+    ArrayList<Block> work = new ArrayList<>();
+    work.add(tail);
+    while (!work.isEmpty()) {
+      Block block = work.remove(work.size() - 1);
+      if (loop.blocks.get(block.index))
+        continue;
+      loop.blocks.set(block.index);
+      work.addAll(dominators.predecessors(block));
+    }
+  }
+}
@@ -0,0 +1,441 @@
+package ir;
+
+import mips.InstrList;
+import mips.Multiply;
+import mips.Op;
+
+import static mips.Reg.*;
+
+// Translate the IR of a function to MIPS, with the registers allocated by
+// LinearScan.
+//
+// Frame (F bytes, $sp is lowered by F on entry and points to a free word):
+//   F + 4(n+1)($sp)  the object (n = number of parameters)
+//   F + 4k($sp)      parameter k, stored by the caller
+//   F($sp)           $ra (the free word of the caller)
+//   ...              saved $s registers, spilled virtual registers
+//   4k($sp)          outgoing argument k of the calls (the object last)
+// A spilled parameter stays in its incoming slot. A leaf function that
+// spills nothing has no frame (F = 0).
+//
+// Spilled values are loaded into $v1 and $a3 when read, and written from
+// $v1.
+//
+// A TAILCALL stores its arguments in the incoming slots (the callee's frame
+// starts where this one did), pops the frame and jumps to the callee, which
+// returns to the caller. When an argument is a spilled parameter, whose
+// slot may be overwritten first, the arguments go through the outgoing
+// slots.
+public final class MipsGen {
+
+  private static final int SCRATCH1 = V1;
+  private static final int SCRATCH2 = A3;
+
+  private final Function function;
+  private final LinearScan alloc;
+  private final InstrList asm;
+
+  private final int[] offsets;  // Frame offset of each spilled register
+  private final int[] saved;    // Saved $s registers
+  private final int[] savedOffsets;
+  private final boolean hasCalls;
+  private final int frameSize;
+
+  private Block next;  // The block laid out after the one being generated
+  private int numOfCaches = 0;  // Inline caches generated so far
+
+  private MipsGen(Function function) {
+    this.function = function;
+    this.alloc = new LinearScan(function);
+    this.asm = new InstrList(function.getName());
+    function.renumber();
+
+    int maxArgs = 0;
+    boolean calls = false;
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.isCall())
+          calls = true;
+        if (instr.op == Instr.CALL || instr.op == Instr.TAILCALL && isStaged(instr))
+          maxArgs = Math.max(maxArgs, instr.srcs.length);
+      }
+    }
+    hasCalls = calls;
+
+    int words = maxArgs;
+    offsets = new int[function.getNumOfRegs()];
+    int[] params = function.getParams();
+    boolean[] isParam = new boolean[offsets.length];
+    for (int param : params) {
+      isParam[param] = true;
+    }
+    for (int v = 0; v < offsets.length; v++) {
+      if (alloc.isSpilled(v) && !isParam[v])
+        offsets[v] = 4 * ++words;
+    }
+
+    int usedSaved = function.isMain() ? 0 : alloc.getUsedSaved();
+    saved = new int[Integer.bitCount(usedSaved)];
+    savedOffsets = new int[saved.length];
+    for (int reg = S0, i = 0; reg <= S7; reg++) {
+      if ((usedSaved & 1 << reg) != 0) {
+        saved[i] = reg;
+        savedOffsets[i++] = 4 * ++words;
+      }
+    }
+
+    frameSize = words == 0 && !hasCalls ? 0 : 4 * (words + 1);
+
+    // Parameters: params[0] (the object) is the last argument
+    int n = params.length - 1;
+    for (int k = 0; k < params.length; k++) {
+      if (alloc.isSpilled(params[k]))
+        offsets[params[k]] = frameSize + 4 * (k == 0 ? n + 1 : k);
+    }
+  }
+
+  // The MIPS code of "function"
+  public static InstrList generate(Function function) {
+    MipsGen gen = new MipsGen(function);
+    gen.generate();
+    return gen.asm;
+  }
+
+  private void generate() {
+    if (!function.isMain())
+      asm.label(function.getName());
+
+    // Prologue
+    if (frameSize > 0)
+      asm.addiu(SP, SP, -frameSize);
+    if (hasCalls && !function.isMain())
+      asm.sw(RA, frameSize, SP);
+    for (int i = 0; i < saved.length; i++) {
+      asm.sw(saved[i], savedOffsets[i], SP);
+    }
+    int[] params = function.getParams();
+    int n = params.length - 1;
+    for (int k = 0; k < params.length; k++) {
+      int reg = alloc.reg(params[k]);
+      if (reg != NONE)
+        asm.lw(reg, frameSize + 4 * (k == 0 ? n + 1 : k), SP);
+    }
+
+    for (int b = 0; b < function.blocks.size(); b++) {
+      Block block = function.blocks.get(b);
+      next = b + 1 < function.blocks.size() ? function.blocks.get(b + 1) : null;
+      asm.label(block.getLabel());
+      for (Instr instr : block.instrs) {
+        asm.setLine(instr.line);
+        generate(instr);
+      }
+    }
+    asm.setLine(InstrList.NO_LINE);
+    asm.blank();
+  }
+
+  private static final int NONE = Instr.NONE;
+
+  private void generate(Instr instr) {
+    switch (instr.op) {
+      case Instr.CONST:
+        asm.li(def(instr.dst), instr.imm);
+        finish(instr.dst);
+        break;
+
+      case Instr.MOVE: {
+        int src = use(instr.srcs[0], SCRATCH1);
+        int dst = alloc.reg(instr.dst);
+        if (dst == NONE)
+          asm.sw(src, offsets[instr.dst], SP);
+        else if (dst != src)
+          asm.move(dst, src);
+        break;
+      }
+
+      case Instr.ADD:
+      case Instr.SUB:
+      case Instr.MUL:
+      case Instr.LT:
+      case Instr.AND:
+      case Instr.XOR:
+      case Instr.SLL:
+        arithmetic(instr);
+        break;
+
+      case Instr.NOT: {
+        int src = use(instr.srcs[0], SCRATCH1);
+        asm.xori(def(instr.dst), src, 1);
+        finish(instr.dst);
+        break;
+      }
+
+      case Instr.LOAD: {
+        int base = use(instr.srcs[0], SCRATCH1);
+        asm.lw(def(instr.dst), instr.imm, base);
+        finish(instr.dst);
+        break;
+      }
+
+      case Instr.STORE: {
+        int base = use(instr.srcs[0], SCRATCH1);
+        int value = use(instr.srcs[1], SCRATCH2);
+        asm.sw(value, instr.imm, base);
+        break;
+      }
+
+      case Instr.CALL: {
+        // Arguments in the outgoing slots, the object last
+        int n = instr.srcs.length - 1;
+        for (int k = 0; k < instr.srcs.length; k++) {
+          int arg = use(instr.srcs[k], SCRATCH1);
+          asm.sw(arg, 4 * (k == 0 ? n + 1 : k), SP);
+        }
+        if (instr.symbol != null && instr.guard == null) {
+          asm.jal(instr.symbol);
+        } else {
+          // Through the vtable (faults if the object is null)
+          int object = use(instr.srcs[0], SCRATCH1);
+          asm.lw(SCRATCH1, 0, object);
+          String hit = null;
+          if (instr.guard != null) {
+            hit = function.getName() + "_ic_" + numOfCaches++;
+            asm.la(SCRATCH2, instr.guard);
+            asm.beq(SCRATCH1, SCRATCH2, hit);
+          }
+          asm.lw(SCRATCH1, instr.imm, SCRATCH1);
+          asm.jalr(SCRATCH1);
+          if (hit != null) {
+            asm.j(hit + "_end");
+            asm.label(hit);
+            asm.jal(instr.symbol);
+            asm.label(hit + "_end");
+          }
+        }
+        result(instr.dst);
+        break;
+      }
+
+      case Instr.RUNTIME:
+        if (instr.srcs.length > 0) {
+          int arg = alloc.reg(instr.srcs[0]);
+          if (arg == NONE)
+            asm.lw(A0, offsets[instr.srcs[0]], SP);
+          else
+            asm.move(A0, arg);
+        }
+        asm.jal(instr.symbol);
+        result(instr.dst);
+        break;
+
+      case Instr.CHECK:
+        if (instr.srcs.length == 1)
+          asm.beq(use(instr.srcs[0], SCRATCH1), ZERO, instr.symbol);
+        else
+          asm.bgeu(use(instr.srcs[0], SCRATCH1), use(instr.srcs[1], SCRATCH2), instr.symbol);
+        break;
+
+      case Instr.JUMP:
+        if (instr.target != next)
+          asm.j(instr.target.getLabel());
+        break;
+
+      case Instr.BRANCH:
+        branch(instr);
+        break;
+
+      case Instr.RETURN: {
+        int src = use(instr.srcs[0], SCRATCH1);
+        asm.move(V0, src);
+        epilogue();
+        asm.jr(RA);
+        break;
+      }
+
+      case Instr.TAILCALL:
+        tailCall(instr);
+        break;
+
+      case Instr.EXIT:
+        asm.li(V0, 10);
+        asm.syscall();
+        break;
+
+      default:
+        throw new IllegalArgumentException("Cannot generate " + instr);
+    }
+  }
+
+  // Restore the saved registers and $ra, and pop the frame
+  private void epilogue() {
+    for (int i = 0; i < saved.length; i++) {
+      asm.lw(saved[i], savedOffsets[i], SP);
+    }
+    if (hasCalls)
+      asm.lw(RA, frameSize, SP);
+    if (frameSize > 0)
+      asm.addiu(SP, SP, frameSize);
+  }
+
+  private void tailCall(Instr instr) {
+    // Arguments in the incoming slots, the object last
+    int n = instr.srcs.length - 1;
+    boolean staged = isStaged(instr);
+    for (int k = 0; k < instr.srcs.length; k++) {
+      int arg = use(instr.srcs[k], SCRATCH1);
+      int offset = 4 * (k == 0 ? n + 1 : k);
+      asm.sw(arg, staged ? offset : frameSize + offset, SP);
+    }
+    if (staged) {
+      for (int k = 0; k < instr.srcs.length; k++) {
+        int offset = 4 * (k == 0 ? n + 1 : k);
+        asm.lw(SCRATCH1, offset, SP);
+        asm.sw(SCRATCH1, frameSize + offset, SP);
+      }
+    }
+
+    if (instr.symbol != null) {
+      epilogue();
+      asm.j(instr.symbol);
+    } else {
+      // Through the vtable (faults if the object is null), before the
+      // saved registers are restored
+      int object = alloc.reg(instr.srcs[0]);
+      if (object == NONE) {
+        asm.lw(SCRATCH1, frameSize + 4 * (n + 1), SP);
+        object = SCRATCH1;
+      }
+      asm.lw(SCRATCH1, 0, object);
+      asm.lw(SCRATCH1, instr.imm, SCRATCH1);
+      epilogue();
+      asm.jr(SCRATCH1);
+    }
+  }
+
+  // Whether the arguments of a TAILCALL are stored in the outgoing slots
+  // first, because one of them is read from an incoming slot
+  private boolean isStaged(Instr instr) {
+    for (int param : function.getParams()) {
+      if (!alloc.isSpilled(param))
+        continue;
+      for (int src : instr.srcs) {
+        if (src == param)
+          return true;
+      }
+    }
+    return false;
+  }
+
+  private void arithmetic(Instr instr) {
+    int op = instr.op;
+    int src1 = use(instr.srcs[0], SCRATCH1);
+
+    if (instr.hasImm) {
+      int imm = instr.imm;
+      boolean isSigned = op == Instr.ADD || op == Instr.SUB || op == Instr.LT;
+      if (op == Instr.SUB)
+        imm = -imm;
+      if (op == Instr.SLL || op != Instr.MUL && fitsImmediate(imm, isSigned)) {
+        int dst = def(instr.dst);
+        switch (op) {
+          case Instr.ADD:
+          case Instr.SUB: asm.addiu(dst, src1, imm); break;
+          case Instr.LT: asm.slti(dst, src1, imm); break;
+          case Instr.AND: asm.andi(dst, src1, imm); break;
+          case Instr.XOR: asm.xori(dst, src1, imm); break;
+          case Instr.SLL: asm.sll(dst, src1, imm); break;
+        }
+        finish(instr.dst);
+        return;
+      }
+      if (op == Instr.MUL) {
+        Multiply.byConstant(asm, def(instr.dst), src1, instr.imm, SCRATCH2);
+        finish(instr.dst);
+        return;
+      }
+      asm.li(SCRATCH2, instr.imm);
+      threeRegisters(op, def(instr.dst), src1, SCRATCH2);
+    } else {
+      int src2 = use(instr.srcs[1], SCRATCH2);
+      threeRegisters(op, def(instr.dst), src1, src2);
+    }
+    finish(instr.dst);
+  }
+
+  private void threeRegisters(int op, int dst, int src1, int src2) {
+    switch (op) {
+      case Instr.ADD: asm.addu(dst, src1, src2); break;
+      case Instr.SUB: asm.subu(dst, src1, src2); break;
+      case Instr.MUL: asm.mul(dst, src1, src2); break;
+      case Instr.LT: asm.slt(dst, src1, src2); break;
+      case Instr.AND: asm.and(dst, src1, src2); break;
+      case Instr.XOR: asm.xor(dst, src1, src2); break;
+      default: throw new IllegalArgumentException("No register form of " + op);
+    }
+  }
+
+  private static boolean fitsImmediate(int imm, boolean isSigned) {
+    return isSigned ? imm >= -32768 && imm <= 32767 : imm >= 0 && imm <= 65535;
+  }
+
+  private void branch(Instr instr) {
+    int src1 = use(instr.srcs[0], SCRATCH1);
+    int src2;
+    if (!instr.hasImm) {
+      src2 = use(instr.srcs[1], SCRATCH2);
+    } else if (instr.imm == 0) {
+      src2 = ZERO;
+    } else {
+      asm.li(SCRATCH2, instr.imm);
+      src2 = SCRATCH2;
+    }
+
+    if (instr.target == next) {
+      emitBranch(Instr.negate(instr.cond), src1, src2, instr.other.getLabel());
+    } else {
+      emitBranch(instr.cond, src1, src2, instr.target.getLabel());
+      if (instr.other != next)
+        asm.j(instr.other.getLabel());
+    }
+  }
+
+  private static final int[] BRANCHES = { Op.BEQ, Op.BNE, Op.BLT, Op.BGE, Op.BGT, Op.BLE };
+
+  private void emitBranch(int cond, int src1, int src2, String label) {
+    asm.emit(BRANCHES[cond], src1, src2, 0, label);
+  }
+
+  // The register holding the value of "reg" (loaded into "scratch" if it
+  // was spilled)
+  private int use(int reg, int scratch) {
+    int r = alloc.reg(reg);
+    if (r != NONE)
+      return r;
+    asm.lw(scratch, offsets[reg], SP);
+    return scratch;
+  }
+
+  // The register to write the value of "reg" in (see finish())
+  private int def(int reg) {
+    int r = alloc.reg(reg);
+    return r != NONE ? r : SCRATCH1;
+  }
+
+  // Store the value of "reg" written by the last instruction if it was
+  // spilled
+  private void finish(int reg) {
+    if (alloc.reg(reg) == NONE)
+      asm.sw(SCRATCH1, offsets[reg], SP);
+  }
+
+  // Copy the result of a call ($v0) to "reg" (if any)
+  private void result(int reg) {
+    if (reg == NONE)
+      return;
+    int r = alloc.reg(reg);
+    if (r == NONE)
+      asm.sw(V0, offsets[reg], SP);
+    else
+      asm.move(r, V0);
+  }
+}
@@ -0,0 +1,325 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+// Static single assignment form of a Function (-fssa), for the passes that
+// need one definition per register: ConstantPropagation, CopyPropagation
+// and DeadCode.
+//
+// build() places a PHI for a register at the blocks of the iterated
+// dominance frontier of its definitions where it is live (pruned SSA, see
+// Dominators), then renames every definition to a new register, walking the
+// dominator tree. A register read before any definition (a parameter, or a
+// local not yet assigned) keeps its own number as its first version, so the
+// parameters are still where MipsGen expects them. The k-th source of a
+// PHI comes from the k-th predecessor of its block (see predecessors()).
+//
+// destruct() goes back to ordinary code: each PHI gets a new register t,
+// set by a MOVE at the end of every predecessor, and the PHI becomes
+// "dst = t" (copies on every edge, which are correct whatever the passes
+// did to the live ranges). The MOVEs whose registers do not interfere are
+// then coalesced, which undoes most of the renaming: a loop counter is one
+// register again (i = i + 1, as InductionVariables expects).
+public final class Ssa {
+
+  private final Function function;
+  private final HashMap<Block, List<Block>> predecessors = new HashMap<>();
+  // The variable (register before renaming) of each phi
+  private final IdentityHashMap<Instr, Integer> phiVars = new IdentityHashMap<>();
+
+  private Ssa(Function function) {
+    this.function = function;
+  }
+
+  public Function getFunction() {
+    return function;
+  }
+
+  // The predecessors of "block", in the order of the sources of its PHIs
+  public List<Block> predecessors(Block block) {
+    return predecessors.get(block);
+  }
+
+  public static Ssa build(Function function) {
+    Ssa ssa = new Ssa(function);
+
+    // A phi has a source for each predecessor: the entry gets one
+    // (entering the function) if it is jumped to
+    function.renumber();
+    if (!Dominators.predecessors(function).get(0).isEmpty()) {
+      Block entry = function.newBlock();
+      entry.add(Instr.jump(function.entry()));
+      function.blocks.add(0, entry);
+    }
+    removeUnreachable(function);
+
+    Dominators dominators = new Dominators(function);
+    for (Block block : function.blocks) {
+      ssa.predecessors.put(block, new ArrayList<>(dominators.predecessors(block)));
+    }
+    ssa.placePhis(dominators);
+
+    int numOfVars = function.getNumOfRegs();
+    int[] current = new int[numOfVars];
+    for (int v = 0; v < numOfVars; v++) {
+      current[v] = v;
+    }
+    ssa.rename(function.entry(), dominators, current);
+    return ssa;
+  }
+
+  private static void removeUnreachable(Function function) {
+    BitSet reachable = new BitSet();
+    for (Block block : Dominators.reversePostorder(function)) {
+      reachable.set(block.index);
+    }
+    function.blocks.removeIf(block -> !reachable.get(block.index));
+    function.renumber();
+  }
+
+  private void placePhis(Dominators dominators) {
+    int numOfVars = function.getNumOfRegs();
+    List<List<Block>> defBlocks = new ArrayList<>();
+    for (int v = 0; v < numOfVars; v++) {
+      defBlocks.add(new ArrayList<>());
+    }
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.dst != Instr.NONE) {
+          List<Block> blocks = defBlocks.get(instr.dst);
+          if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block)
+            blocks.add(block);
+        }
+      }
+    }
+
+    LiveVariables live = new LiveVariables(function);
+    int n = function.blocks.size();
+    for (int v = 0; v < numOfVars; v++) {
+      BitSet frontier = new BitSet(n);  // The iterated dominance frontier so far
+      List<Block> work = new ArrayList<>(defBlocks.get(v));
+      while (!work.isEmpty()) {
+        Block block = work.remove(work.size() - 1);
+        for (Block join : dominators.frontier(block)) {
+          if (frontier.get(join.index))
+            continue;
+          frontier.set(join.index);
+          work.add(join);
+          if (live.liveIn(join).get(v)) {
+            Instr phi = Instr.phi(v, v, predecessors(join).size());
+            phi.line = join.instrs.get(0).line;
+            join.instrs.add(phiCount(join), phi);
+            phiVars.put(phi, v);
+          }
+        }
+      }
+    }
+  }
+
+  // Give each definition a new register, and each use the register of the
+  // definition reaching it ("current", by variable)
+  private void rename(Block block, Dominators dominators, int[] current) {
+    int numOfVars = current.length;
+    ArrayList<int[]> previous = new ArrayList<>();  // (variable, version) to restore
+    for (Instr instr : block.instrs) {
+      if (instr.op != Instr.PHI) {
+        for (int i = 0; i < instr.srcs.length; i++) {
+          if (instr.srcs[i] < numOfVars)
+            instr.srcs[i] = current[instr.srcs[i]];
+        }
+      }
+      if (instr.dst != Instr.NONE) {
+        int v = instr.dst;
+        previous.add(new int[] { v, current[v] });
+        current[v] = function.newReg();
+        instr.dst = current[v];
+      }
+    }
+
+    for (Block successor : block.successors()) {
+      int k = predecessors(successor).indexOf(block);
+      for (Instr phi : successor.instrs) {
+        if (phi.op != Instr.PHI)
+          break;
+        phi.srcs[k] = current[phiVars.get(phi)];
+      }
+    }
+
+    for (Block child : dominators.children(block)) {
+      rename(child, dominators, current);
+    }
+    for (int i = previous.size() - 1; i >= 0; i--) {
+      current[previous.get(i)[0]] = previous.get(i)[1];
+    }
+  }
+
+  // The number of phis at the start of "block"
+  static int phiCount(Block block) {
+    int count = 0;
+    while (count < block.instrs.size() && block.instrs.get(count).op == Instr.PHI) {
+      count++;
+    }
+    return count;
+  }
+
+  // Remove the edge from "from" to "to" (the terminator of "from" must not
+  // go to "to" any more): the phis of "to" lose their source from it.
+  // Nothing to do if "to" was removed already (unreached blocks are
+  // removed in any order).
+  void removeEdge(Block from, Block to) {
+    List<Block> edges = predecessors(to);
+    if (edges == null)
+      return;
+    int k = edges.indexOf(from);
+    if (k < 0)
+      return;
+    edges.remove(k);
+    for (Instr phi : to.instrs) {
+      if (phi.op != Instr.PHI)
+        break;
+      int[] srcs = new int[phi.srcs.length - 1];
+      System.arraycopy(phi.srcs, 0, srcs, 0, k);
+      System.arraycopy(phi.srcs, k + 1, srcs, k, srcs.length - k);
+      phi.srcs = srcs;
+    }
+  }
+
+  // Remove "block", which no other block goes to any more
+  void removeBlock(Block block) {
+    for (Block successor : block.successors()) {
+      removeEdge(block, successor);
+    }
+    function.blocks.remove(block);
+    predecessors.remove(block);
+    function.renumber();
+  }
+
+  // Replace the phis by copies, and coalesce the copies
+  public void destruct() {
+    for (Block block : function.blocks) {
+      List<Block> from = predecessors(block);
+      for (int i = 0; i < block.instrs.size(); i++) {
+        Instr phi = block.instrs.get(i);
+        if (phi.op != Instr.PHI)
+          break;
+        int temp = function.newReg();
+        for (int k = 0; k < from.size(); k++) {
+          List<Instr> instrs = from.get(k).instrs;
+          Instr copy = Instr.move(temp, phi.srcs[k]);
+          copy.line = instrs.get(instrs.size() - 1).line;
+          instrs.add(instrs.size() - 1, copy);
+        }
+        Instr move = Instr.move(phi.dst, temp);
+        move.line = phi.line;
+        block.instrs.set(i, move);
+      }
+    }
+    coalesce();
+  }
+
+  // Give a MOVE and its source the same register when their values are
+  // never live at the same time (Chaitin): merged registers interfere with
+  // what either did
+  private void coalesce() {
+    int numOfRegs = function.getNumOfRegs();
+    BitSet[] interference = interference();
+    int[] leader = new int[numOfRegs];
+    boolean[] isParam = new boolean[numOfRegs];
+    for (int v = 0; v < numOfRegs; v++) {
+      leader[v] = v;
+    }
+    for (int param : function.getParams()) {
+      isParam[param] = true;
+    }
+
+    for (Block block : function.blocks) {
+      for (Instr instr : block.instrs) {
+        if (instr.op != Instr.MOVE)
+          continue;
+        int a = find(leader, instr.dst);
+        int b = find(leader, instr.srcs[0]);
+        if (a == b || interference[a].get(b) || isParam[a] && isParam[b])
+          continue;
+        if (isParam[b]) {
+          int swap = a;
+          a = b;
+          b = swap;
+        }
+        leader[b] = a;
+        interference[a].or(interference[b]);
+        BitSet others = interference[b];
+        for (int v = others.nextSetBit(0); v >= 0; v = others.nextSetBit(v + 1)) {
+          interference[v].set(a);
+        }
+      }
+    }
+
+    for (Block block : function.blocks) {
+      block.instrs.removeIf(instr -> {
+        if (instr.dst != Instr.NONE)
+          instr.dst = find(leader, instr.dst);
+        for (int i = 0; i < instr.srcs.length; i++) {
+          instr.srcs[i] = find(leader, instr.srcs[i]);
+        }
+        return instr.op == Instr.MOVE && instr.dst == instr.srcs[0];
+      });
+    }
+  }
+
+  private static int find(int[] leader, int v) {
+    while (leader[v] != v) {
+      leader[v] = leader[leader[v]];
+      v = leader[v];
+    }
+    return v;
+  }
+
+  // Pairs of registers live at the same time with different values: a
+  // definition interferes with the registers live after it (except the
+  // source of a MOVE), and the parameters with what is live on entry
+  private BitSet[] interference() {
+    int numOfRegs = function.getNumOfRegs();
+    BitSet[] interference = new BitSet[numOfRegs];
+    for (int v = 0; v < numOfRegs; v++) {
+      interference[v] = new BitSet();
+    }
+    LiveVariables live = new LiveVariables(function);
+    for (Block block : function.blocks) {
+      BitSet now = (BitSet) live.liveOut(block).clone();
+      for (int k = block.instrs.size() - 1; k >= 0; k--) {
+        Instr instr = block.instrs.get(k);
+        int dst = instr.dst;
+        if (dst != Instr.NONE) {
+          now.clear(dst);
+          for (int v = now.nextSetBit(0); v >= 0; v = now.nextSetBit(v + 1)) {
+            if (instr.op == Instr.MOVE && v == instr.srcs[0])
+              continue;
+            interference[dst].set(v);
+            interference[v].set(dst);
+          }
+        }
+        for (int src : instr.srcs) {
+          now.set(src);
+        }
+      }
+    }
+
+    BitSet entry = (BitSet) live.liveIn(function.entry()).clone();
+    for (int param : function.getParams()) {
+      entry.set(param);
+    }
+    for (int param : function.getParams()) {
+      for (int v = entry.nextSetBit(0); v >= 0; v = entry.nextSetBit(v + 1)) {
+        if (v != param) {
+          interference[param].set(v);
+          interference[v].set(param);
+        }
+      }
+    }
+    return interference;
+  }
+}
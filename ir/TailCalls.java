@@ -0,0 +1,118 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Calls in tail position (-ftail-calls): a block ending with
+//
+//   v = call f(args);  return v
+//
+// or with v = call f(args) and jumps to a block that only returns v (as in
+// "if (...) r = this.f(...); else ...; return r;") reuses the frame of the
+// function instead of returning through it.
+//
+// When f is the function itself (called directly, see
+// SymbolTable.getOnlyImplementation), the arguments are moved to the
+// parameters and the call becomes a jump back to the start: the recursion
+// is a loop, which the other passes see as one. The null check of the
+// receiver stays in front.
+//
+// Other calls become a TAILCALL, which MipsGen generates as a jump after
+// the epilogue, with the arguments in the incoming slots of the function.
+// The callee may take no more arguments than the function (the caller made
+// room for that many). A call with an inline cache goes through the vtable:
+// with no return to come back to, the cache would not save anything.
+public final class TailCalls {
+
+  private TailCalls() {
+  }
+
+  public static void run(Function function) {
+    if (function.isMain())
+      return;
+
+    int[] params = function.getParams();
+    Block header = null;
+    for (Block block : new ArrayList<>(function.blocks)) {
+      List<Instr> instrs = block.instrs;
+      int size = instrs.size();
+      if (size < 2)
+        continue;
+      Instr call = instrs.get(size - 2);
+      if (call.op != Instr.CALL || call.dst == Instr.NONE || !returns(instrs.get(size - 1), call.dst)
+          || call.srcs.length > params.length)
+        continue;
+      instrs.subList(size - 2, size).clear();
+
+      if (call.guard == null && function.getName().equals(call.symbol)) {
+        if (header == null)
+          header = loopHeader(function);
+        moveArgs(function, block, call);
+        add(block, Instr.jump(header), call.line);
+      } else {
+        Instr tail = call.copy();
+        tail.op = Instr.TAILCALL;
+        tail.dst = Instr.NONE;
+        if (tail.guard != null) {
+          tail.guard = null;
+          tail.symbol = null;
+        }
+        block.add(tail);
+      }
+    }
+  }
+
+  // Whether the terminator "last" returns "reg" right away (through jumps
+  // to empty blocks)
+  private static boolean returns(Instr last, int reg) {
+    for (int i = 0; last.op == Instr.JUMP; i++) {
+      List<Instr> instrs = last.target.instrs;
+      if (instrs.size() != 1 || i > 100)
+        return false;
+      last = instrs.get(0);
+    }
+    return last.op == Instr.RETURN && last.srcs[0] == reg;
+  }
+
+  // The block the recursive calls jump to: the entry, which gets a new
+  // entry block in front of it (the preheader of the loop)
+  private static Block loopHeader(Function function) {
+    Block header = function.entry();
+    Block entry = function.newBlock();
+    entry.add(Instr.jump(header));
+    function.blocks.add(0, entry);
+    function.renumber();
+    return header;
+  }
+
+  // params[k] = args[k] for all k at once. A parameter read by a later
+  // argument is assigned last, through a new register.
+  private static void moveArgs(Function function, Block block, Instr call) {
+    int[] params = function.getParams();
+    int[] args = call.srcs;
+    List<Instr> last = new ArrayList<>();
+    for (int k = 0; k < args.length; k++) {
+      if (args[k] == params[k])
+        continue;
+      boolean readLater = false;
+      for (int j = k + 1; j < args.length; j++) {
+        readLater |= args[j] == params[k];
+      }
+      if (readLater) {
+        int temp = function.newReg();
+        add(block, Instr.move(temp, args[k]), call.line);
+        last.add(Instr.move(params[k], temp));
+      } else {
+        add(block, Instr.move(params[k], args[k]), call.line);
+      }
+    }
+    for (Instr move : last) {
+      add(block, move, call.line);
+    }
+  }
+
+  private static void add(Block block, Instr instr, int line) {
+    instr.line = line;
+    block.add(instr);
+  }
+}
@@ -0,0 +1,269 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+// Value numbering (-fcse): an ALU operation or a load computing a value
+// already held in a register is not computed again.
+//
+// Each register gets a value number; an instruction is identified by its
+// operation, the value numbers of its sources (in order, except for the
+// commutative ADD, MUL, AND and XOR) and its immediate. A block with a
+// single predecessor, laid out after it, starts with what is known at the
+// end of the predecessor (extended basic blocks), so that the branches of
+// an if reuse the values computed before it.
+//
+// A load is known until a store or a call may change the word: a store
+// keeps only the loads through the same base at another offset (after
+// InductionVariables, the same word may be reached from different bases),
+// and the value it stores is what a load of its word gives next.
+//
+// A CHECK (bounds or null) of values already checked on the way is
+// removed: it cannot fail either (-fbounds-check).
+//
+// A call (of a method or of the runtime) forgets the loads and constants:
+// kept in a register across it, a value takes an $s register (saved and
+// restored by the method) to save one lw or li.
+//
+// A repeated instruction is removed, and the register it defined replaced
+// by the one holding the value, when that register is a temporary of the
+// block (defined once, not live at its end). Otherwise it becomes a MOVE.
+public final class ValueNumbering {
+
+  private ValueNumbering() {
+  }
+
+  // What is known at some point of a block
+  private static final class State {
+    int[] numbers;  // Value number of each register (0 if not yet known)
+    HashMap<Computation, Integer> values = new HashMap<>();  // Of each ALU operation
+    HashMap<Integer, Integer> constants = new HashMap<>();  // Of each constant
+    HashMap<Integer, Integer> holders = new HashMap<>();  // A register holding each value
+    HashMap<Long, Integer> loads = new HashMap<>();  // Of each word loaded (see word())
+    HashSet<Computation> checks = new HashSet<>();  // The checks passed
+    int next;  // The next value number
+
+    State(int numOfRegs, int next) {
+      numbers = new int[numOfRegs];
+      this.next = next;
+    }
+
+    State copy() {
+      State state = new State(0, next);
+      state.numbers = Arrays.copyOf(numbers, numbers.length);
+      state.values = new HashMap<>(values);
+      state.constants = new HashMap<>(constants);
+      state.holders = new HashMap<>(holders);
+      state.loads = new HashMap<>(loads);
+      state.checks = new HashSet<>(checks);
+      return state;
+    }
+
+    int number(int reg) {
+      if (numbers[reg] == 0)
+        define(reg, next++);
+      return numbers[reg];
+    }
+
+    void define(int reg, int number) {
+      numbers[reg] = number;
+      Integer holder = holders.get(number);
+      if (holder == null || numbers[holder] != number)
+        holders.put(number, reg);
+    }
+
+    // A register holding "number", or NONE
+    int holder(int number) {
+      Integer holder = holders.get(number);
+      return holder != null && numbers[holder] == number ? holder : Instr.NONE;
+    }
+  }
+
+  public static void run(Function function) {
+    function.renumber();
+    int numOfRegs = function.getNumOfRegs();
+    int[] defs = new int[numOfRegs];
+    for (int param : function.getParams()) {
+      defs[param]++;
+    }
+    List<List<Block>> predecessors = new ArrayList<>();
+    for (Block block : function.blocks) {
+      predecessors.add(new ArrayList<>());
+      for (Instr instr : block.instrs) {
+        if (instr.dst != Instr.NONE)
+          defs[instr.dst]++;
+      }
+    }
+    for (Block block : function.blocks) {
+      for (Block successor : block.successors()) {
+        predecessors.get(successor.index).add(block);
+      }
+    }
+
+    LiveVariables live = new LiveVariables(function);
+    State[] atEnd = new State[function.blocks.size()];
+    int next = 1;
+    for (Block block : function.blocks) {
+      List<Block> from = predecessors.get(block.index);
+      State state;
+      if (from.size() == 1 && from.get(0).index < block.index)
+        state = atEnd[from.get(0).index].copy();
+      else
+        state = new State(numOfRegs, next);
+      number(block, state, defs, live);
+      atEnd[block.index] = state;
+      next = Math.max(next, state.next);
+    }
+  }
+
+  private static void number(Block block, State state, int[] defs, LiveVariables live) {
+    List<Instr> instrs = block.instrs;
+    int[] rename = new int[defs.length];
+    for (int v = 0; v < rename.length; v++) {
+      rename[v] = v;
+    }
+
+    for (int k = 0; k < instrs.size(); k++) {
+      Instr instr = instrs.get(k);
+      for (int i = 0; i < instr.srcs.length; i++) {
+        instr.srcs[i] = rename[instr.srcs[i]];
+      }
+
+      Integer known = null;  // The value number of the computation, if known
+      Long word = null;
+      Computation computation = null;
+      switch (instr.op) {
+        case Instr.MOVE:
+          state.define(instr.dst, state.number(instr.srcs[0]));
+          continue;
+
+        case Instr.STORE: {
+          int base = state.number(instr.srcs[0]);
+          state.loads.keySet().removeIf(load -> base(load) != base || offset(load) == instr.imm);
+          state.loads.put(word(base, instr.imm), state.number(instr.srcs[1]));
+          continue;
+        }
+
+        case Instr.CALL:
+        case Instr.RUNTIME:
+          state.loads.clear();
+          state.constants.clear();
+          break;
+
+        case Instr.CHECK:
+          if (!state.checks.add(computation(instr, state))) {
+            instrs.remove(k--);
+            continue;
+          }
+          break;
+
+        case Instr.LOAD:
+          word = word(state.number(instr.srcs[0]), instr.imm);
+          known = state.loads.get(word);
+          break;
+
+        case Instr.CONST:
+          known = state.constants.get(instr.imm);
+          break;
+
+        case Instr.ADD:
+        case Instr.SUB:
+        case Instr.MUL:
+        case Instr.LT:
+        case Instr.AND:
+        case Instr.XOR:
+        case Instr.SLL:
+        case Instr.NOT:
+          computation = computation(instr, state);
+          known = state.values.get(computation);
+          break;
+
+        default:
+          break;
+      }
+      if (known != null) {
+        if (reuse(instrs, k, known, state, defs, live, block, rename)) {
+          k--;
+          continue;
+        }
+        if (state.numbers[instr.dst] == known)
+          continue;  // Now a MOVE from the register holding it
+      }
+
+      if (instr.dst == Instr.NONE)
+        continue;
+      int number = state.next++;
+      if (instr.op == Instr.LOAD)
+        state.loads.put(word, number);
+      else if (instr.op == Instr.CONST)
+        state.constants.put(instr.imm, number);
+      else if (computation != null)
+        state.values.put(computation, number);
+      state.define(instr.dst, number);
+    }
+  }
+
+  // The key of the word at "offset" from the value "base" in State.loads
+  private static long word(int base, int offset) {
+    return (long) base << 32 | offset & 0xffffffffL;
+  }
+
+  private static int base(long word) {
+    return (int) (word >>> 32);
+  }
+
+  private static int offset(long word) {
+    return (int) word;
+  }
+
+  // Use the register holding "number" instead of computing instrs[k] again.
+  // Return true if instrs[k] was removed.
+  private static boolean reuse(List<Instr> instrs, int k, int number, State state, int[] defs,
+      LiveVariables live, Block block, int[] rename) {
+    int holder = state.holder(number);
+    if (holder == Instr.NONE)
+      return false;
+    Instr instr = instrs.get(k);
+    int dst = instr.dst;
+    if (defs[dst] == 1 && !live.liveOut(block).get(dst) && !definedAfter(instrs, k, holder)) {
+      instrs.remove(k);
+      rename[dst] = holder;
+      state.numbers[dst] = number;
+      return true;
+    }
+    if (instr.op != Instr.CONST)
+      instrs.set(k, copyLine(Instr.move(dst, holder), instr));
+    state.define(dst, number);
+    return false;
+  }
+
+  private static Instr copyLine(Instr instr, Instr from) {
+    instr.line = from.line;
+    return instr;
+  }
+
+  // The computation of an ALU operation or a check, in value numbers
+  private static Computation computation(Instr instr, State state) {
+    int[] numbers = new int[instr.srcs.length];
+    for (int i = 0; i < numbers.length; i++) {
+      numbers[i] = state.number(instr.srcs[i]);
+    }
+    boolean commutative = instr.op == Instr.ADD || instr.op == Instr.MUL
+        || instr.op == Instr.AND || instr.op == Instr.XOR;
+    if (commutative && numbers.length == 2 && numbers[0] > numbers[1])
+      numbers = new int[] { numbers[1], numbers[0] };
+    return new Computation(instr.op, numbers, instr.hasImm, instr.imm);
+  }
+
+  // Whether "reg" is defined by an instruction after instrs[k]
+  private static boolean definedAfter(List<Instr> instrs, int k, int reg) {
+    for (int j = k + 1; j < instrs.size(); j++) {
+      if (instrs.get(j).dst == reg)
+        return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,89 @@
+package mips;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// A growable byte buffer for assembly text. Text is appended without
+// creating intermediate Strings, and the buffer is reused after every
+// flush to the output channel.
+public final class AsmBuffer {
+
+  private static final int FLUSH_THRESHOLD = 1 << 16;
+
+  private final WritableByteChannel channel;
+  private byte[] bytes = new byte[FLUSH_THRESHOLD + 1024];
+  private int size = 0;
+
+  public AsmBuffer(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  private void reserve(int n) {
+    if (size + n > bytes.length) {
+      byte[] larger = new byte[Math.max(bytes.length * 2, size + n)];
+      System.arraycopy(bytes, 0, larger, 0, size);
+      bytes = larger;
+    }
+  }
+
+  public AsmBuffer append(char c) {
+    reserve(1);
+    bytes[size++] = (byte) c;
+    return this;
+  }
+
+  // Append an ASCII string
+  public AsmBuffer append(String s) {
+    int n = s.length();
+    reserve(n);
+    for (int i = 0; i < n; i++) {
+      bytes[size++] = (byte) s.charAt(i);
+    }
+    return this;
+  }
+
+  // Append the decimal representation of "value"
+  public AsmBuffer append(int value) {
+    reserve(11);
+    if (value == Integer.MIN_VALUE) {
+      return append("-2147483648");
+    }
+    if (value < 0) {
+      bytes[size++] = '-';
+      value = -value;
+    }
+
+    int end = size + digits(value);
+    for (int i = end - 1; i >= size; i--) {
+      bytes[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    size = end;
+    return this;
+  }
+
+  private static int digits(int value) {
+    int n = 1;
+    while (value >= 10) {
+      value /= 10;
+      n++;
+    }
+    return n;
+  }
+
+  // Write the buffered text to the channel if the buffer is getting large
+  public void flushIfFull() throws IOException {
+    if (size >= FLUSH_THRESHOLD)
+      flush();
+  }
+
+  // Write all buffered text to the channel
+  public void flush() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    size = 0;
+  }
+}
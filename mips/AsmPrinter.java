@@ -0,0 +1,19 @@
+package mips;
+
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+// Serializes the generated instruction lists as MIPS assembly text
+public final class AsmPrinter {
+
+  private AsmPrinter() {
+  }
+
+  public static void print(List<InstrList> code, WritableByteChannel out) {
+    AsmWriter writer = new AsmWriter(out);
+    for (InstrList list : code) {
+      list.emitTo(writer);
+    }
+    writer.flush();
+  }
+}
@@ -0,0 +1,123 @@
+package mips;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+
+// Writes MIPS assembly text, one line per instruction, into an AsmBuffer
+// that is flushed to the output channel in large chunks. Registers are
+// numbers (see Reg) and immediates are ints, so printing an instruction
+// does not build any String.
+public class AsmWriter extends Emitter {
+
+  private final AsmBuffer buf;
+
+  public AsmWriter(WritableByteChannel channel) {
+    this.buf = new AsmBuffer(channel);
+  }
+
+  public void emit(int op, int a, int b, int c, String symbol) {
+    switch (Op.format(op)) {
+      case Op.RRR:
+        mnemonic(op).reg(a).comma().reg(b).comma().reg(c);
+        break;
+      case Op.RRI:
+        mnemonic(op).reg(a).comma().reg(b).comma().imm(c);
+        break;
+      case Op.RR:
+        mnemonic(op).reg(a).comma().reg(b);
+        break;
+      case Op.RI:
+        mnemonic(op).reg(a).comma().imm(c);
+        break;
+      case Op.RS:
+        mnemonic(op).reg(a).comma().symbol(symbol);
+        break;
+      case Op.MEM:
+        mnemonic(op).reg(a).comma().imm(c);
+        buf.append('(').append(Reg.name(b)).append(')');
+        break;
+      case Op.R:
+        mnemonic(op).reg(a);
+        break;
+      case Op.TARGET:
+        mnemonic(op).symbol(symbol);
+        break;
+      case Op.BRANCH:
+        mnemonic(op).reg(a).comma().reg(b).comma().symbol(symbol);
+        break;
+      case Op.NONE:
+        buf.append(Op.name(op));
+        break;
+      default:
+        pseudo(op, symbol);
+        flushIfFull();
+        return;
+    }
+    buf.append('\n');
+    flushIfFull();
+  }
+
+  private void pseudo(int op, String symbol) {
+    switch (op) {
+      case Op.LABEL:
+        buf.append(symbol).append(":\n");
+        break;
+      case Op.COMMENT:
+        buf.append("# ").append(symbol).append('\n');
+        break;
+      case Op.BLANK:
+        buf.append('\n');
+        break;
+      case Op.TEXT:
+        buf.append(symbol);
+        break;
+      case Op.WORD:
+        buf.append(".word ").append(symbol).append('\n');
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown opcode " + op);
+    }
+  }
+
+  public void flush() {
+    try {
+      buf.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private AsmWriter mnemonic(int op) {
+    buf.append(Op.name(op)).append(' ');
+    return this;
+  }
+
+  private AsmWriter reg(int reg) {
+    buf.append(Reg.name(reg));
+    return this;
+  }
+
+  private AsmWriter imm(int imm) {
+    buf.append(imm);
+    return this;
+  }
+
+  private AsmWriter symbol(String label) {
+    buf.append(label);
+    return this;
+  }
+
+  private AsmWriter comma() {
+    buf.append(", ");
+    return this;
+  }
+
+  private void flushIfFull() {
+    try {
+      buf.flushIfFull();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package mips;
+
+// Typed instruction methods, one per opcode. Subclasses decide what to do
+// with each instruction: InstrList records it, AsmWriter prints it.
+public abstract class Emitter {
+
+  // Emit one instruction or pseudo instruction (see Op for the operands)
+  public abstract void emit(int op, int a, int b, int c, String symbol);
+
+  // rd = rs op rt
+  public void add(int rd, int rs, int rt) { emit(Op.ADD, rd, rs, rt, null); }
+  public void addu(int rd, int rs, int rt) { emit(Op.ADDU, rd, rs, rt, null); }
+  public void sub(int rd, int rs, int rt) { emit(Op.SUB, rd, rs, rt, null); }
+  public void subu(int rd, int rs, int rt) { emit(Op.SUBU, rd, rs, rt, null); }
+  public void mul(int rd, int rs, int rt) { emit(Op.MUL, rd, rs, rt, null); }
+  public void slt(int rd, int rs, int rt) { emit(Op.SLT, rd, rs, rt, null); }
+  public void and(int rd, int rs, int rt) { emit(Op.AND, rd, rs, rt, null); }
+  public void or(int rd, int rs, int rt) { emit(Op.OR, rd, rs, rt, null); }
+  public void xor(int rd, int rs, int rt) { emit(Op.XOR, rd, rs, rt, null); }
+
+  // rt = rs op imm
+  public void addi(int rt, int rs, int imm) { emit(Op.ADDI, rt, rs, imm, null); }
+  public void addiu(int rt, int rs, int imm) { emit(Op.ADDIU, rt, rs, imm, null); }
+  public void andi(int rt, int rs, int imm) { emit(Op.ANDI, rt, rs, imm, null); }
+  public void xori(int rt, int rs, int imm) { emit(Op.XORI, rt, rs, imm, null); }
+  public void slti(int rt, int rs, int imm) { emit(Op.SLTI, rt, rs, imm, null); }
+  public void sll(int rd, int rt, int shamt) { emit(Op.SLL, rd, rt, shamt, null); }
+  public void sra(int rd, int rt, int shamt) { emit(Op.SRA, rd, rt, shamt, null); }
+
+  public void move(int rd, int rs) { emit(Op.MOVE, rd, rs, 0, null); }
+  public void not(int rd, int rs) { emit(Op.NOT, rd, rs, 0, null); }
+  public void neg(int rd, int rs) { emit(Op.NEG, rd, rs, 0, null); }
+
+  public void li(int rd, int imm) { emit(Op.LI, rd, 0, imm, null); }
+  public void la(int rd, String label) { emit(Op.LA, rd, 0, 0, label); }
+
+  // Memory access: rt = mem[base + offset] or mem[base + offset] = rt
+  public void lw(int rt, int offset, int base) { emit(Op.LW, rt, base, offset, null); }
+  public void sw(int rt, int offset, int base) { emit(Op.SW, rt, base, offset, null); }
+
+  public void j(String label) { emit(Op.J, 0, 0, 0, label); }
+  public void jal(String label) { emit(Op.JAL, 0, 0, 0, label); }
+  public void jr(int rs) { emit(Op.JR, rs, 0, 0, null); }
+  public void jalr(int rs) { emit(Op.JALR, rs, 0, 0, null); }
+
+  // Branch to "label" if rs op rt
+  public void beq(int rs, int rt, String label) { emit(Op.BEQ, rs, rt, 0, label); }
+  public void bne(int rs, int rt, String label) { emit(Op.BNE, rs, rt, 0, label); }
+  public void blt(int rs, int rt, String label) { emit(Op.BLT, rs, rt, 0, label); }
+  public void bge(int rs, int rt, String label) { emit(Op.BGE, rs, rt, 0, label); }
+  public void bgt(int rs, int rt, String label) { emit(Op.BGT, rs, rt, 0, label); }
+  public void ble(int rs, int rt, String label) { emit(Op.BLE, rs, rt, 0, label); }
+  public void bltu(int rs, int rt, String label) { emit(Op.BLTU, rs, rt, 0, label); }
+  public void bgeu(int rs, int rt, String label) { emit(Op.BGEU, rs, rt, 0, label); }
+
+  public void syscall() { emit(Op.SYSCALL, 0, 0, 0, null); }
+
+  public void label(String label) { emit(Op.LABEL, 0, 0, 0, label); }
+
+  // A whole-line comment
+  public void comment(String comment) { emit(Op.COMMENT, 0, 0, 0, comment); }
+
+  public void blank() { emit(Op.BLANK, 0, 0, 0, null); }
+
+  // Verbatim text (directives, data and hand-written routines)
+  public void text(String text) { emit(Op.TEXT, 0, 0, 0, text); }
+
+  // The address of a label, in the data segment
+  public void word(String label) { emit(Op.WORD, 0, 0, 0, label); }
+}
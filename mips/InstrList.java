@@ -0,0 +1,129 @@
+package mips;
+
+import java.util.Arrays;
+
+// The instructions of one routine (a method, an allocator, the main
+// program, ...), kept in parallel arrays instead of one object per
+// instruction. Instruction i is (op(i), a(i), b(i), c(i), symbol(i)), see Op
+// for the meaning of the operands, tagged with the source line line(i)
+// (or NO_LINE).
+public final class InstrList extends Emitter {
+
+  public static final int NO_LINE = 0;
+
+  private final String name;
+
+  private int[] ops;
+  private int[] as;
+  private int[] bs;
+  private int[] cs;
+  private int[] lines;
+  private String[] symbols;
+  private int size = 0;
+
+  // The source line tagged to the instructions being emitted
+  private int currLine = NO_LINE;
+
+  public InstrList(String name) {
+    this.name = name;
+    int capacity = 64;
+    ops = new int[capacity];
+    as = new int[capacity];
+    bs = new int[capacity];
+    cs = new int[capacity];
+    lines = new int[capacity];
+    symbols = new String[capacity];
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void emit(int op, int a, int b, int c, String symbol) {
+    insert(size, op, a, b, c, symbol);
+    lines[size - 1] = currLine;
+  }
+
+  // Insert an instruction before instruction i (with the source line of
+  // the instruction before it)
+  public void insert(int i, int op, int a, int b, int c, String symbol) {
+    if (size == ops.length) {
+      int capacity = size * 2;
+      ops = Arrays.copyOf(ops, capacity);
+      as = Arrays.copyOf(as, capacity);
+      bs = Arrays.copyOf(bs, capacity);
+      cs = Arrays.copyOf(cs, capacity);
+      lines = Arrays.copyOf(lines, capacity);
+      symbols = Arrays.copyOf(symbols, capacity);
+    }
+    int n = size - i;
+    System.arraycopy(ops, i, ops, i + 1, n);
+    System.arraycopy(as, i, as, i + 1, n);
+    System.arraycopy(bs, i, bs, i + 1, n);
+    System.arraycopy(cs, i, cs, i + 1, n);
+    System.arraycopy(lines, i, lines, i + 1, n);
+    System.arraycopy(symbols, i, symbols, i + 1, n);
+    size++;
+
+    set(i, op, a, b, c, symbol);
+    lines[i] = i > 0 ? lines[i - 1] : NO_LINE;
+  }
+
+  // Remove instruction i
+  public void remove(int i) {
+    int n = size - i - 1;
+    System.arraycopy(ops, i + 1, ops, i, n);
+    System.arraycopy(as, i + 1, as, i, n);
+    System.arraycopy(bs, i + 1, bs, i, n);
+    System.arraycopy(cs, i + 1, cs, i, n);
+    System.arraycopy(lines, i + 1, lines, i, n);
+    System.arraycopy(symbols, i + 1, symbols, i, n);
+    size--;
+    symbols[size] = null;
+  }
+
+  // Tag the instructions emitted from now on with source line "line".
+  // Return the previous tag, so that it can be restored.
+  public int setLine(int line) {
+    int prevLine = currLine;
+    currLine = line;
+    return prevLine;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int op(int i) { return ops[i]; }
+  public int a(int i) { return as[i]; }
+  public int b(int i) { return bs[i]; }
+  public int c(int i) { return cs[i]; }
+  public String symbol(int i) { return symbols[i]; }
+  public int line(int i) { return lines[i]; }
+
+  // Replace instruction i (keeping its source line)
+  public void set(int i, int op, int a, int b, int c, String symbol) {
+    ops[i] = op;
+    as[i] = a;
+    bs[i] = b;
+    cs[i] = c;
+    symbols[i] = symbol;
+  }
+
+  // The number of real instructions (labels, comments, ... excluded)
+  public int numOfInstructions() {
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      if (Op.isInstruction(ops[i]))
+        n++;
+    }
+    return n;
+  }
+
+  // Emit all instructions to "out" (an AsmWriter to print them)
+  public void emitTo(Emitter out) {
+    for (int i = 0; i < size; i++) {
+      out.emit(ops[i], as[i], bs[i], cs[i], symbols[i]);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package mips;
+
+import java.util.HashMap;
+
+// Register liveness over one InstrList. Sets of registers are int bit masks
+// (bit r is register r, see Reg).
+//
+// A call (jal, jalr) reads $a0 - $a3 and clobbers the caller-saved
+// registers; a return (jr $ra) reads $v0 and the registers a caller may
+// rely on. Everything is assumed live where control leaves the list in any
+// other way (verbatim text, jumps to other routines, falling off the end).
+//
+// The registers live at each label are computed once; the registers live
+// after an instruction are found by scanning forward to the end of its
+// straight-line code. The label sets stay safe while the code is rewritten
+// by transformations that do not make more registers live at any label.
+public final class Liveness {
+
+  public static final int ALL = -1;
+
+  private static final int ARGS = bit(Reg.A0) | bit(Reg.A1) | bit(Reg.A2) | bit(Reg.A3);
+  private static final int TEMPS = 0xff << Reg.T0 | bit(Reg.T8) | bit(Reg.T9);
+  private static final int SAVED = 0xff << Reg.S0;
+
+  private static final int CALL_USES = ARGS | bit(Reg.SP) | bit(Reg.FP);
+  private static final int CALL_DEFS = ARGS | TEMPS | bit(Reg.V0) | bit(Reg.V1) | bit(Reg.RA) | bit(Reg.AT);
+  private static final int RETURN_USES = bit(Reg.V0) | bit(Reg.SP) | bit(Reg.FP) | bit(Reg.RA) | bit(Reg.GP) | SAVED;
+
+  private final InstrList code;
+
+  // Registers live at each label
+  private final HashMap<String, Integer> labelLiveIn = new HashMap<>();
+
+  public Liveness(InstrList code) {
+    this.code = code;
+    compute();
+  }
+
+  public static int bit(int reg) {
+    return 1 << reg;
+  }
+
+  // Registers live after instruction i
+  public int liveOut(int i) {
+    int live = 0;
+    int killed = 0;
+    for (int j = i + 1; j < code.size(); j++) {
+      int op = code.op(j);
+      if (op == Op.LABEL)
+        return live | labelLiveIn(code.symbol(j)) & ~killed;
+      if (op == Op.TEXT)
+        return ALL & ~killed;
+
+      live |= uses(code, j) & ~killed;
+      if (op == Op.J)
+        return live | labelLiveIn(code.symbol(j)) & ~killed;
+      if (op == Op.JR)
+        return live | (code.a(j) == Reg.RA ? RETURN_USES : ALL) & ~killed;
+      if (Op.format(op) == Op.BRANCH)
+        live |= labelLiveIn(code.symbol(j)) & ~killed;
+      killed |= defs(code, j) & ~live;
+    }
+    return live | ALL & ~killed;
+  }
+
+  public boolean isLiveOut(int i, int reg) {
+    return (liveOut(i) & bit(reg)) != 0;
+  }
+
+  private int labelLiveIn(String label) {
+    return labelLiveIn.getOrDefault(label, ALL);
+  }
+
+  private void compute() {
+    int size = code.size();
+    HashMap<String, Integer> labels = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      if (code.op(i) == Op.LABEL)
+        labels.put(code.symbol(i), i);
+    }
+
+    // The index of the label each jump or branch goes to (-1 if outside)
+    int[] targets = new int[size];
+    for (int i = 0; i < size; i++) {
+      int op = code.op(i);
+      if (op == Op.J || Op.format(op) == Op.BRANCH)
+        targets[i] = labels.getOrDefault(code.symbol(i), -1);
+    }
+
+    int[] liveIn = new int[size + 1];
+    liveIn[size] = ALL;  // Falling off the end
+
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = size - 1; i >= 0; i--) {
+        int op = code.op(i);
+
+        int out;
+        if (op == Op.J || Op.format(op) == Op.BRANCH) {
+          out = targets[i] < 0 ? ALL : liveIn[targets[i]];
+          if (op != Op.J)
+            out |= liveIn[i + 1];
+        } else if (op == Op.JR) {
+          out = code.a(i) == Reg.RA ? RETURN_USES : ALL;
+        } else {
+          out = liveIn[i + 1];
+        }
+
+        int in = op == Op.TEXT ? ALL : (out & ~defs(code, i)) | uses(code, i);
+        if (in != liveIn[i]) {
+          liveIn[i] = in;
+          changed = true;
+        }
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (code.op(i) == Op.LABEL)
+        labelLiveIn.put(code.symbol(i), liveIn[i]);
+    }
+  }
+
+  // Registers written by instruction i
+  public static int defs(InstrList code, int i) {
+    int op = code.op(i);
+    switch (Op.format(op)) {
+      case Op.RRR:
+      case Op.RRI:
+      case Op.RR:
+      case Op.RI:
+      case Op.RS:
+        return bit(code.a(i));
+      case Op.MEM:
+        return op == Op.LW ? bit(code.a(i)) : 0;
+      case Op.R:
+        return op == Op.JALR ? CALL_DEFS : 0;
+      case Op.TARGET:
+        return op == Op.JAL ? CALL_DEFS : 0;
+      case Op.NONE:
+        return bit(Reg.V0);
+      default:
+        return 0;
+    }
+  }
+
+  // Registers read by instruction i
+  public static int uses(InstrList code, int i) {
+    int op = code.op(i);
+    switch (Op.format(op)) {
+      case Op.RRR:
+        return bit(code.b(i)) | bit(code.c(i));
+      case Op.RRI:
+      case Op.RR:
+        return bit(code.b(i));
+      case Op.MEM:
+        return op == Op.SW ? bit(code.a(i)) | bit(code.b(i)) : bit(code.b(i));
+      case Op.R:
+        return op == Op.JALR ? bit(code.a(i)) | CALL_USES : bit(code.a(i));
+      case Op.TARGET:
+        return op == Op.JAL ? CALL_USES : 0;
+      case Op.BRANCH:
+        return bit(code.a(i)) | bit(code.b(i));
+      case Op.NONE:
+        return bit(Reg.V0) | ARGS;
+      default:
+        return 0;
+    }
+  }
+}
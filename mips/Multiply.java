@@ -0,0 +1,48 @@
+package mips;
+
+import static mips.Reg.*;
+
+// Multiplication by a constant (strength reduction). A power of two is a
+// shift, 2^k + 1 and 2^k - 1 are a shift and an add or subtract, and a
+// negative constant negates the result; any other constant is loaded and
+// multiplied. The sequence is never longer than li + mul.
+public final class Multiply {
+
+  private Multiply() {
+  }
+
+  // rd = rs * c ("scratch" is overwritten, and must differ from rs)
+  public static void byConstant(Emitter asm, int rd, int rs, int c, int scratch) {
+    if (c == 0) {
+      asm.li(rd, 0);
+    } else if (c == 1) {
+      if (rd != rs)
+        asm.move(rd, rs);
+    } else if (c == -1) {
+      asm.subu(rd, ZERO, rs);
+    } else if (isPowerOfTwo(c)) {
+      asm.sll(rd, rs, log2(c));
+    } else if (c > 0 && isPowerOfTwo(c - 1)) {
+      asm.sll(scratch, rs, log2(c - 1));
+      asm.addu(rd, scratch, rs);
+    } else if (c > 0 && isPowerOfTwo(c + 1)) {
+      asm.sll(scratch, rs, log2(c + 1));
+      asm.subu(rd, scratch, rs);
+    } else if (c < 0 && isPowerOfTwo(-c)) {
+      asm.sll(rd, rs, log2(-c));
+      asm.subu(rd, ZERO, rd);
+    } else {
+      asm.li(scratch, c);
+      asm.mul(rd, rs, scratch);
+    }
+  }
+
+  // (2^31 counts as a power of two: x * -2^31 is x << 31)
+  private static boolean isPowerOfTwo(int c) {
+    return c != 0 && (c & (c - 1)) == 0;
+  }
+
+  private static int log2(int c) {
+    return Integer.numberOfTrailingZeros(c);
+  }
+}
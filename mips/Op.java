@@ -0,0 +1,119 @@
+package mips;
+
+// MIPS opcodes (and a few pseudo instructions for labels, comments and
+// verbatim text), with the mnemonic and operand format of each.
+//
+// Operands are stored as (a, b, c, symbol), depending on the format:
+//   RRR     op a, b, c          (rd, rs, rt)
+//   RRI     op a, b, c          (rt, rs, imm)
+//   RR      op a, b             (rd, rs)
+//   RI      op a, c             (rd, imm)
+//   RS      op a, symbol        (rd, label)
+//   MEM     op a, c(b)          (rt, offset, base)
+//   R       op a                (rs)
+//   TARGET  op symbol
+//   BRANCH  op a, b, symbol     (rs, rt, label)
+//   NONE    op
+public final class Op {
+  // Formats
+  public static final int RRR = 0;
+  public static final int RRI = 1;
+  public static final int RR = 2;
+  public static final int RI = 3;
+  public static final int RS = 4;
+  public static final int MEM = 5;
+  public static final int R = 6;
+  public static final int TARGET = 7;
+  public static final int BRANCH = 8;
+  public static final int NONE = 9;
+  public static final int PSEUDO = 10;
+
+  // rd = rs op rt
+  public static final int ADD = 0;
+  public static final int ADDU = 1;
+  public static final int SUB = 2;
+  public static final int SUBU = 3;
+  public static final int MUL = 4;
+  public static final int SLT = 5;
+  public static final int AND = 6;
+  public static final int OR = 7;
+  public static final int XOR = 8;
+
+  // rt = rs op imm
+  public static final int ADDI = 9;
+  public static final int ADDIU = 10;
+  public static final int ANDI = 11;
+  public static final int XORI = 12;
+  public static final int SLTI = 13;
+  public static final int SLL = 14;
+  public static final int SRA = 15;
+
+  public static final int MOVE = 16;
+  public static final int NOT = 17;
+  public static final int NEG = 18;
+  public static final int LI = 19;
+  public static final int LA = 20;
+  public static final int LW = 21;
+  public static final int SW = 22;
+
+  public static final int J = 23;
+  public static final int JAL = 24;
+  public static final int JR = 25;
+  public static final int JALR = 26;
+
+  public static final int BEQ = 27;
+  public static final int BNE = 28;
+  public static final int BLT = 29;
+  public static final int BGE = 30;
+  public static final int BGT = 31;
+  public static final int BLE = 32;
+  public static final int BLTU = 33;  // Unsigned
+  public static final int BGEU = 34;
+
+  public static final int SYSCALL = 35;
+
+  // Pseudo instructions (not executed)
+  public static final int LABEL = 36;    // symbol:
+  public static final int COMMENT = 37;  // # symbol
+  public static final int BLANK = 38;    // an empty line
+  public static final int TEXT = 39;     // symbol, verbatim
+  public static final int WORD = 40;     // .word symbol (the address of a label, as data)
+
+  public static final int NUM_OF_OPS = 41;
+
+  private static final String[] NAMES = {
+    "add", "addu", "sub", "subu", "mul", "slt", "and", "or", "xor",
+    "addi", "addiu", "andi", "xori", "slti", "sll", "sra",
+    "move", "not", "neg", "li", "la", "lw", "sw",
+    "j", "jal", "jr", "jalr",
+    "beq", "bne", "blt", "bge", "bgt", "ble", "bltu", "bgeu",
+    "syscall",
+    "<label>", "<comment>", "<blank>", "<text>", ".word"
+  };
+
+  private static final int[] FORMATS = {
+    RRR, RRR, RRR, RRR, RRR, RRR, RRR, RRR, RRR,
+    RRI, RRI, RRI, RRI, RRI, RRI, RRI,
+    RR, RR, RR, RI, RS, MEM, MEM,
+    TARGET, TARGET, R, R,
+    BRANCH, BRANCH, BRANCH, BRANCH, BRANCH, BRANCH, BRANCH, BRANCH,
+    NONE,
+    PSEUDO, PSEUDO, PSEUDO, PSEUDO, PSEUDO
+  };
+
+  private Op() {
+  }
+
+  public static String name(int op) {
+    return NAMES[op];
+  }
+
+  public static int format(int op) {
+    return FORMATS[op];
+  }
+
+  // Whether "op" is a real instruction (not a label, comment, ...)
+  public static boolean isInstruction(int op) {
+    return FORMATS[op] != PSEUDO;
+  }
+}
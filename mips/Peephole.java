@@ -0,0 +1,185 @@
+package mips;
+
+import java.util.HashMap;
+import java.util.List;
+
+// Peephole optimizer: applies a set of rules (see PeepholeRules) to every
+// instruction of every routine until none of them changes anything.
+//
+// Rules rely on the frame discipline of the code generator: the frame
+// ($ra, parameters, locals) is addressed through $fp, temporaries pushed
+// while evaluating an expression are addressed through $sp, the stack is
+// never addressed through other registers, and nothing below $sp is read
+// across a label, jump, branch or call.
+public class Peephole {
+
+  private final List<PeepholeRule> rules;
+
+  // Number of references (jumps, branches, la, .word) to each label
+  private final HashMap<String, Integer> references = new HashMap<>();
+
+  // Cached analyses of the routine being optimized. The liveness is
+  // computed once per pass over the routine, as rules never make more
+  // registers live at a label.
+  private InstrList analyzedCode = null;
+  private Liveness liveness = null;
+  private HashMap<String, Integer> labels = null;
+
+  private int numOfRewrites = 0;
+
+  public Peephole(List<PeepholeRule> rules) {
+    this.rules = rules;
+  }
+
+  public void run(List<InstrList> program) {
+    for (InstrList code : program) {
+      for (int i = 0; i < code.size(); i++) {
+        if (isReference(code.op(i)))
+          addReference(code.symbol(i), 1);
+      }
+    }
+
+    for (InstrList code : program) {
+      run(code);
+    }
+  }
+
+  private void run(InstrList code) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      liveness = null;
+      for (int i = 0; i < code.size(); i++) {
+        for (PeepholeRule rule : rules) {
+          if (i < code.size() && rule.apply(this, code, i)) {
+            numOfRewrites++;
+            changed = true;
+          }
+        }
+      }
+    }
+    invalidate();
+  }
+
+  public int getNumOfRewrites() {
+    return numOfRewrites;
+  }
+
+  // Analyses
+
+  public Liveness liveness(InstrList code) {
+    analyze(code);
+    if (liveness == null)
+      liveness = new Liveness(code);
+    return liveness;
+  }
+
+  // Index of the label "label" in "code" (-1 if it is not in there)
+  public int labelIndex(InstrList code, String label) {
+    analyze(code);
+    if (labels == null) {
+      labels = new HashMap<>();
+      for (int i = 0; i < code.size(); i++) {
+        if (code.op(i) == Op.LABEL)
+          labels.put(code.symbol(i), i);
+      }
+    }
+    Integer i = labels.get(label);
+    return i == null ? -1 : i;
+  }
+
+  public boolean isReferenced(String label) {
+    return references.getOrDefault(label, 0) > 0;
+  }
+
+  // The index of the first instruction after i that is not a comment
+  // (code.size() if there is none)
+  public static int next(InstrList code, int i) {
+    int j = i + 1;
+    while (j < code.size() && (code.op(j) == Op.COMMENT || code.op(j) == Op.BLANK)) {
+      j++;
+    }
+    return j;
+  }
+
+  // Whether "label" is one of the labels right after instruction i
+  public static boolean isLabelledNext(InstrList code, int i, String label) {
+    for (int j = next(code, i); j < code.size() && code.op(j) == Op.LABEL; j = next(code, j)) {
+      if (code.symbol(j).equals(label))
+        return true;
+    }
+    return false;
+  }
+
+  // Whether instruction i ends a straight-line sequence of code
+  public static boolean isBarrier(InstrList code, int i) {
+    int op = code.op(i);
+    switch (op) {
+      case Op.LABEL:
+      case Op.TEXT:
+      case Op.J:
+      case Op.JAL:
+      case Op.JR:
+      case Op.JALR:
+      case Op.SYSCALL:
+        return true;
+      default:
+        return Op.format(op) == Op.BRANCH;
+    }
+  }
+
+  // Whether the memory words at off1(base1) and off2(base2) may be the same
+  public static boolean mayAlias(int base1, int off1, int base2, int off2) {
+    if (base1 == base2)
+      return off1 == off2;
+    boolean stack1 = base1 == Reg.SP || base1 == Reg.FP;
+    boolean stack2 = base2 == Reg.SP || base2 == Reg.FP;
+    return !stack1 && !stack2;
+  }
+
+  // Edits (keeping the references and analyses up to date)
+
+  public void remove(InstrList code, int i) {
+    if (isReference(code.op(i)))
+      addReference(code.symbol(i), -1);
+    code.remove(i);
+    invalidate();
+  }
+
+  public void replace(InstrList code, int i, int op, int a, int b, int c, String symbol) {
+    if (isReference(code.op(i)))
+      addReference(code.symbol(i), -1);
+    code.set(i, op, a, b, c, symbol);
+    if (isReference(op))
+      addReference(symbol, 1);
+    invalidate();
+  }
+
+  public void insert(InstrList code, int i, int op, int a, int b, int c, String symbol) {
+    code.insert(i, op, a, b, c, symbol);
+    if (isReference(op))
+      addReference(symbol, 1);
+    invalidate();
+  }
+
+  private void analyze(InstrList code) {
+    if (analyzedCode != code) {
+      analyzedCode = code;
+      liveness = null;
+      labels = null;
+    }
+  }
+
+  private void invalidate() {
+    labels = null;
+  }
+
+  private static boolean isReference(int op) {
+    int format = Op.format(op);
+    return format == Op.TARGET || format == Op.BRANCH || format == Op.RS || op == Op.WORD;
+  }
+
+  private void addReference(String label, int n) {
+    references.merge(label, n, Integer::sum);
+  }
+}
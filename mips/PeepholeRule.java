@@ -0,0 +1,9 @@
+package mips;
+
+// A rewrite rule of the peephole optimizer (see Peephole)
+public interface PeepholeRule {
+
+  // Try to rewrite "code" at instruction i, editing it only through the
+  // methods of "peephole". Return true if the code was changed.
+  boolean apply(Peephole peephole, InstrList code, int i);
+}
@@ -0,0 +1,406 @@
+package mips;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+// The rules of the peephole optimizer
+public final class PeepholeRules {
+
+  private PeepholeRules() {
+  }
+
+  // All rules, in the order they are tried at each instruction
+  public static List<PeepholeRule> all() {
+    List<PeepholeRule> rules = new ArrayList<>();
+    rules.add(new StoreLoadForwarding());
+    rules.add(new DeadStackStore());
+    rules.add(new MergeStackAdjustments());
+    rules.add(new CopyPropagation());
+    rules.add(new RetargetDefinition());
+    rules.add(new DeadDefinition());
+    rules.add(new SelfMove());
+    rules.add(new ComplementaryBranch());
+    rules.add(new BranchOverJump());
+    rules.add(new JumpThreading());
+    rules.add(new JumpToNext());
+    rules.add(new UnreachableCode());
+    rules.add(new UnusedLabel());
+    return rules;
+  }
+
+  private static boolean isStackAdjustment(InstrList code, int i) {
+    return code.op(i) == Op.ADDIU && code.a(i) == Reg.SP && code.b(i) == Reg.SP;
+  }
+
+  private static int invert(int branch) {
+    switch (branch) {
+      case Op.BEQ: return Op.BNE;
+      case Op.BNE: return Op.BEQ;
+      case Op.BLT: return Op.BGE;
+      case Op.BGE: return Op.BLT;
+      case Op.BGT: return Op.BLE;
+      case Op.BLE: return Op.BGT;
+      case Op.BLTU: return Op.BGEU;
+      case Op.BGEU: return Op.BLTU;
+      default: throw new IllegalArgumentException(Op.name(branch));
+    }
+  }
+
+  // sw x, off(base); ...; lw y, off(base)  =>  sw x, off(base); ...; move y, x
+  // If x is overwritten in between, it is first copied to a free register.
+  static class StoreLoadForwarding implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (code.op(i) != Op.SW)
+        return false;
+      int x = code.a(i), base = code.b(i), off = code.c(i);
+
+      boolean xWritten = false;
+      int referenced = 0;  // Registers used or defined in between
+      int j = Peephole.next(code, i);
+      for (; j < code.size(); j = Peephole.next(code, j)) {
+        if (Peephole.isBarrier(code, j))
+          return false;
+        if (code.op(j) == Op.LW && code.b(j) == base && code.c(j) == off)
+          break;
+        if (code.op(j) == Op.SW && Peephole.mayAlias(base, off, code.b(j), code.c(j)))
+          return false;
+
+        int defs = Liveness.defs(code, j);
+        if ((defs & Liveness.bit(base)) != 0)
+          return false;
+        if ((defs & Liveness.bit(x)) != 0)
+          xWritten = true;
+        referenced |= defs | Liveness.uses(code, j);
+      }
+      if (j == code.size())
+        return false;
+      int y = code.a(j);
+
+      if (!xWritten) {
+        if (y == x)
+          p.remove(code, j);
+        else
+          p.replace(code, j, Op.MOVE, y, x, 0, null);
+        return true;
+      }
+
+      // Keep x in a register that is free from here to the load
+      int liveOut = p.liveness(code).liveOut(i);
+      int free = -1;
+      for (int t = -1; t < 10 && free < 0; t++) {
+        int reg = t < 0 ? y : Reg.t(t);
+        int mask = Liveness.bit(reg);
+        if (reg != x && reg != base && reg != Reg.ZERO && (referenced & mask) == 0 && (liveOut & mask) == 0)
+          free = reg;
+      }
+      if (free < 0)
+        return false;
+
+      p.insert(code, i + 1, Op.MOVE, free, x, 0, null);
+      j++;
+      if (y == free)
+        p.remove(code, j);
+      else
+        p.replace(code, j, Op.MOVE, y, free, 0, null);
+      return true;
+    }
+  }
+
+  // sw x, off($sp) is removed if its stack slot is overwritten before it is
+  // read, or if the slot is free (at or below $sp) at the end of the
+  // straight-line code without being read
+  static class DeadStackStore implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (code.op(i) != Op.SW || code.b(i) != Reg.SP)
+        return false;
+      int off = code.c(i);
+
+      int delta = 0;  // $sp relative to its value at i
+      int j = Peephole.next(code, i);
+      for (; j < code.size() && !Peephole.isBarrier(code, j); j = Peephole.next(code, j)) {
+        int op = code.op(j);
+        if ((op == Op.LW || op == Op.SW) && code.b(j) == Reg.SP && delta + code.c(j) == off) {
+          if (op == Op.LW)
+            return false;
+          break;
+        }
+        if (isStackAdjustment(code, j))
+          delta += code.c(j);
+        else if ((Liveness.defs(code, j) & Liveness.bit(Reg.SP)) != 0)
+          return false;
+      }
+
+      boolean overwritten = j < code.size() && code.op(j) == Op.SW;
+      if (!overwritten && off > delta)
+        return false;
+      p.remove(code, i);
+      return true;
+    }
+  }
+
+  // addiu $sp, $sp, k; ...; addiu $sp, $sp, m  =>  ...; addiu $sp, $sp, k+m
+  // (adjusting the $sp offsets of the loads and stores in between)
+  static class MergeStackAdjustments implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (!isStackAdjustment(code, i))
+        return false;
+      int k = code.c(i);
+
+      int j = Peephole.next(code, i);
+      for (; j < code.size(); j = Peephole.next(code, j)) {
+        if (Peephole.isBarrier(code, j))
+          return false;
+        if (isStackAdjustment(code, j))
+          break;
+
+        int op = code.op(j);
+        if ((op == Op.LW || op == Op.SW) && code.b(j) == Reg.SP && code.a(j) != Reg.SP)
+          continue;
+        if (((Liveness.defs(code, j) | Liveness.uses(code, j)) & Liveness.bit(Reg.SP)) != 0)
+          return false;
+      }
+      if (j == code.size())
+        return false;
+
+      for (int m = i + 1; m < j; m++) {
+        if ((code.op(m) == Op.LW || code.op(m) == Op.SW) && code.b(m) == Reg.SP)
+          p.replace(code, m, code.op(m), code.a(m), Reg.SP, code.c(m) + k, null);
+      }
+      int sum = code.c(j) + k;
+      if (sum == 0)
+        p.remove(code, j);
+      else
+        p.replace(code, j, Op.ADDIU, Reg.SP, Reg.SP, sum, null);
+      p.remove(code, i);
+      return true;
+    }
+  }
+
+  // move d, s; ...; (use of d)  =>  move d, s; ...; (use of s)
+  static class CopyPropagation implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (code.op(i) != Op.MOVE)
+        return false;
+      int d = code.a(i), s = code.b(i);
+      if (d == s || isFrameRegister(d) || isFrameRegister(s))
+        return false;
+
+      boolean changed = false;
+      for (int j = Peephole.next(code, i); j < code.size(); j = Peephole.next(code, j)) {
+        int op = code.op(j);
+        boolean branch = Op.format(op) == Op.BRANCH;
+        if (Peephole.isBarrier(code, j) && !branch)
+          break;
+
+        if ((Liveness.uses(code, j) & Liveness.bit(d)) != 0) {
+          int a = code.a(j), b = code.b(j), c = code.c(j);
+          switch (Op.format(op)) {
+            case Op.RRR:
+              b = b == d ? s : b;
+              c = c == d ? s : c;
+              break;
+            case Op.RRI:
+            case Op.RR:
+              b = s;
+              break;
+            case Op.MEM:
+              if (op == Op.SW && a == d)
+                a = s;
+              b = b == d ? s : b;
+              break;
+            case Op.BRANCH:
+              a = a == d ? s : a;
+              b = b == d ? s : b;
+              break;
+            default:
+              return changed;
+          }
+          p.replace(code, j, op, a, b, c, code.symbol(j));
+          changed = true;
+        }
+
+        if (branch || (Liveness.defs(code, j) & (Liveness.bit(d) | Liveness.bit(s))) != 0)
+          break;
+      }
+      return changed;
+    }
+
+    private static boolean isFrameRegister(int reg) {
+      return reg == Reg.SP || reg == Reg.FP || reg == Reg.RA;
+    }
+  }
+
+  // op r, ...; move d, r  =>  op d, ...  (if r is not read afterwards)
+  static class RetargetDefinition implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      int op = code.op(i);
+      switch (Op.format(op)) {
+        case Op.RRR:
+        case Op.RRI:
+        case Op.RR:
+        case Op.RI:
+        case Op.RS:
+          break;
+        case Op.MEM:
+          if (op == Op.LW)
+            break;
+          return false;
+        default:
+          return false;
+      }
+
+      int r = code.a(i);
+      int j = Peephole.next(code, i);
+      if (j == code.size() || code.op(j) != Op.MOVE || code.b(j) != r || code.a(j) == r)
+        return false;
+      if (r == Reg.SP || r == Reg.FP || p.liveness(code).isLiveOut(j, r))
+        return false;
+
+      p.replace(code, i, op, code.a(j), code.b(i), code.c(i), code.symbol(i));
+      p.remove(code, j);
+      return true;
+    }
+  }
+
+  // An instruction whose result is never read is removed
+  static class DeadDefinition implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      int op = code.op(i);
+      switch (Op.format(op)) {
+        case Op.RRR:
+        case Op.RRI:
+        case Op.RR:
+        case Op.RI:
+        case Op.RS:
+          break;
+        case Op.MEM:
+          // A load from the frame cannot fail
+          if (op == Op.LW && (code.b(i) == Reg.SP || code.b(i) == Reg.FP))
+            break;
+          return false;
+        default:
+          return false;
+      }
+
+      int d = code.a(i);
+      if (d != Reg.ZERO && p.liveness(code).isLiveOut(i, d))
+        return false;
+      p.remove(code, i);
+      return true;
+    }
+  }
+
+  // move r, r  =>  (nothing)
+  static class SelfMove implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (code.op(i) != Op.MOVE || code.a(i) != code.b(i))
+        return false;
+      p.remove(code, i);
+      return true;
+    }
+  }
+
+  // bne x, y, L1; beq x, y, L2  =>  bne x, y, L1; j L2
+  static class ComplementaryBranch implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      int op = code.op(i);
+      if (Op.format(op) != Op.BRANCH)
+        return false;
+
+      int j = Peephole.next(code, i);
+      if (j == code.size() || code.op(j) != invert(op) || code.a(j) != code.a(i) || code.b(j) != code.b(i))
+        return false;
+      p.replace(code, j, Op.J, 0, 0, 0, code.symbol(j));
+      return true;
+    }
+  }
+
+  // beq x, y, L1; j L2; L1:  =>  bne x, y, L2; L1:
+  static class BranchOverJump implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      int op = code.op(i);
+      if (Op.format(op) != Op.BRANCH)
+        return false;
+
+      int j = Peephole.next(code, i);
+      if (j == code.size() || code.op(j) != Op.J || !Peephole.isLabelledNext(code, j, code.symbol(i)))
+        return false;
+      p.replace(code, i, invert(op), code.a(i), code.b(i), 0, code.symbol(j));
+      p.remove(code, j);
+      return true;
+    }
+  }
+
+  // j L1 (or a branch to L1) where L1: j L2  =>  j L2
+  static class JumpThreading implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      int op = code.op(i);
+      if (op != Op.J && Op.format(op) != Op.BRANCH)
+        return false;
+
+      String target = code.symbol(i);
+      HashSet<String> visited = new HashSet<>();
+      while (true) {
+        if (!visited.add(target))
+          return false;  // A cycle of jumps
+        int j = p.labelIndex(code, target);
+        if (j < 0)
+          break;
+        while (j < code.size() && !Op.isInstruction(code.op(j)) && code.op(j) != Op.TEXT) {
+          j++;
+        }
+        if (j == code.size() || code.op(j) != Op.J)
+          break;
+        target = code.symbol(j);
+      }
+      if (target.equals(code.symbol(i)))
+        return false;
+
+      p.replace(code, i, op, code.a(i), code.b(i), 0, target);
+      return true;
+    }
+  }
+
+  // j L (or a branch to L); L:  =>  L:
+  static class JumpToNext implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      int op = code.op(i);
+      if (op != Op.J && Op.format(op) != Op.BRANCH)
+        return false;
+      if (!Peephole.isLabelledNext(code, i, code.symbol(i)))
+        return false;
+      p.remove(code, i);
+      return true;
+    }
+  }
+
+  // Instructions after j or jr and before the next label are never executed
+  static class UnreachableCode implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (code.op(i) != Op.J && code.op(i) != Op.JR)
+        return false;
+
+      for (int j = i + 1; j < code.size(); j++) {
+        int op = code.op(j);
+        if (op == Op.LABEL || op == Op.TEXT)
+          return false;
+        if (Op.isInstruction(op)) {
+          p.remove(code, j);
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  // A label that nothing refers to is removed
+  static class UnusedLabel implements PeepholeRule {
+    public boolean apply(Peephole p, InstrList code, int i) {
+      if (code.op(i) != Op.LABEL || p.isReferenced(code.symbol(i)))
+        return false;
+      p.remove(code, i);
+      return true;
+    }
+  }
+}
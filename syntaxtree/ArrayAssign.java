@@ -6,6 +6,9 @@ import visitor.TypeVisitor;
 public class ArrayAssign extends Statement {
   public Identifier i;
   public Exp e1,e2;
+  // Whether the index is checked against the length (-fbounds-check), unless
+  // visitor.BoundsCheckVisitor proves it in range
+  public boolean needsCheck = true;
 
   public ArrayAssign(Identifier ai, Exp ae1, Exp ae2) {
     i=ai; e1=ae1; e2=ae2;
@@ -4,6 +4,9 @@ import visitor.TypeVisitor;
 
 public class ArrayLookup extends Exp {
   public Exp e1,e2;
+  // Whether the index is checked against the length (-fbounds-check), unless
+  // visitor.BoundsCheckVisitor proves it in range
+  public boolean needsCheck = true;
   
   public ArrayLookup(Exp ae1, Exp ae2) { 
     e1=ae1; e2=ae2;
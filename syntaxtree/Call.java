@@ -1,11 +1,15 @@
 package syntaxtree;
 import visitor.Visitor;
 import visitor.TypeVisitor;
+import visitor.Method;
 
 public class Call extends Exp {
   public Exp e;
   public Identifier i;
   public ExpList el;
+
+  // Resolved method, annotated by visitor.TypeCheckExpVisitor
+  public Method method;
   
   public Call(Exp ae, Identifier ai, ExpList ael) {
     e=ae; i=ai; el=ael;
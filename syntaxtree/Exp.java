@@ -3,6 +3,14 @@ import visitor.Visitor;
 import visitor.TypeVisitor;
 
 public abstract class Exp {
+  // Static type, annotated by visitor.TypeCheckExpVisitor (null before type checking)
+  public Type type;
+
+  // Number of registers needed to evaluate the expression without spilling,
+  // and whether it contains a call (annotated by visitor.RegisterNeedVisitor)
+  public int need;
+  public boolean hasCall;
+
   public abstract void accept(Visitor v);
   public abstract Type accept(TypeVisitor v);
 }
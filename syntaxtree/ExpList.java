@@ -17,6 +17,10 @@ public class ExpList {
       return (Exp)list.elementAt(i); 
    }
 
+   public void setElementAt(Exp n, int i) {
+      list.setElementAt(n, i);
+   }
+
    public int size() { 
       return list.size(); 
    }
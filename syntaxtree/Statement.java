@@ -3,6 +3,9 @@ import visitor.Visitor;
 import visitor.TypeVisitor;
 
 public abstract class Statement {
+  // Source line where the statement starts (0 if unknown)
+  public int line;
+
   public abstract void accept(Visitor v);
   public abstract Type accept(TypeVisitor v);
 }
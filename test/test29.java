@@ -0,0 +1,56 @@
+// Test
+//   Constant expressions, algebraic identities and 32-bit wraparound
+class test29 {
+    public static void main(String[] a){
+     int x;
+     int y;
+     boolean b;
+     {
+       System.out.println(3 * 4);
+       System.out.println(2147483647 + 1);
+       System.out.println(65536 * 65536);
+       System.out.println(0 - 2147483647 - 1 - 1);
+       System.out.println(46341 * 46341);
+
+       x = 5;
+       System.out.println(x + 0);
+       System.out.println(0 + x);
+       System.out.println(x - 0);
+       System.out.println(x * 1);
+       System.out.println(1 * x);
+       System.out.println(x * 0);
+       System.out.println(((x + 1) + 2) + 3);
+       System.out.println(((x - 1) - 2) + 3);
+       System.out.println(((x * 2) * 3) * 4);
+       System.out.println(10 - (x + 3));
+       System.out.println((x + 2147483647) + 2147483647);
+
+       y = new C().f(x);
+       System.out.println(y * 0);
+       System.out.println(0 * new C().f(y));
+       System.out.println((x * 3) * y);
+       System.out.println((y * 2) * (x * 3));
+
+       b = !true;
+       if (b) System.out.println(1); else System.out.println(0);
+       if (!!(x < 6)) System.out.println(1); else System.out.println(0);
+       if (true && x < 6) System.out.println(1); else System.out.println(0);
+       if (x < 6 && true) System.out.println(1); else System.out.println(0);
+       if (x < 4 && false) System.out.println(1); else System.out.println(0);
+       if (1 < 2) System.out.println(1); else System.out.println(0);
+       if (3 - 1 < 2) System.out.println(1); else System.out.println(0);
+     }
+    }
+}
+
+class C {
+    public int f(int n) {
+        System.out.println(n);
+        return n + 1;
+    }
+
+    public boolean g() {
+        System.out.println(99);
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+// Test
+//   Constant conditions, dead assignments and unread locals
+class test30 {
+    public static void main(String[] a){
+     int x;
+     int unused;
+     {
+       x = 3;
+       unused = x + 4;
+       if (1 < 2)
+         System.out.println(x);
+       else
+         System.out.println(0 - x);
+       if (!true)
+         System.out.println(0);
+       else {
+         System.out.println(new C().f(x));
+       }
+       System.out.println(new C().g(x));
+     }
+    }
+}
+
+class C {
+    int field;
+
+    public int f(int n){
+      int dead;
+      int deadToo;
+      int live;
+      dead = n * 2;
+      deadToo = dead + 1;
+      live = n;
+      if (true && (live < 10)) {
+        live = live + 1;
+      } else {
+        dead = 5;
+      }
+      field = 7;
+      return live;
+    }
+
+    public int g(int n){
+      int result;
+      int sideEffect;
+      result = 0;
+      sideEffect = this.f(n + 10);
+      while (0 < n) {
+        result = result + n;
+        n = n - 1;
+        sideEffect = n;
+      }
+      if (false) {
+        result = 100;
+      } else {
+        System.out.println(field);
+      }
+      return result;
+    }
+}
@@ -0,0 +1,49 @@
+// Test
+//   Short-circuit && (with side effects) and comparisons in conditions
+class test31 {
+    public static void main(String[] a){
+     System.out.println(new C().run(3));
+    }
+}
+
+class C {
+    int calls;
+
+    public boolean check(int v){
+      calls = calls + 1;
+      System.out.println(v);
+      return v < 5;
+    }
+
+    public int run(int n){
+      boolean b;
+      int i;
+      int sum;
+      calls = 0;
+
+      b = false && this.check(1);
+      if (b) System.out.println(0); else System.out.println(1);
+      b = (n < 2) && this.check(2);
+      b = (2 < n) && this.check(3);
+      if (b) System.out.println(1); else System.out.println(0);
+      b = !(n < 3) && this.check(4) && this.check(10) && this.check(11);
+      if (b) System.out.println(1); else System.out.println(0);
+
+      if ((n < 10) && this.check(5)) System.out.println(1); else System.out.println(0);
+      if (!((10 < n) && this.check(6))) System.out.println(1); else System.out.println(0);
+      if (!(this.check(7) && this.check(8))) System.out.println(1); else System.out.println(0);
+
+      i = 0;
+      sum = 0;
+      while (i < 10 && !(sum < 0 - 1) && this.check(i)) {
+        sum = sum + i;
+        i = i + 1;
+      }
+      System.out.println(sum);
+      while (!(n < i)) {
+        n = n + 4;
+      }
+      System.out.println(n);
+      return calls;
+    }
+}
@@ -0,0 +1,54 @@
+// Test
+//   Multiplication by constants (shifts and adds) and array indexing
+class test32 {
+    public static void main(String[] a){
+     System.out.println(new M().run(7));
+    }
+}
+
+class M {
+    public int run(int x){
+      int[] arr;
+      int i;
+      int sum;
+
+      System.out.println(x * 0);
+      System.out.println(x * 1);
+      System.out.println(x * 2);
+      System.out.println(8 * x);
+      System.out.println(x * 3);
+      System.out.println(x * 7);
+      System.out.println(x * 9);
+      System.out.println(x * 10);
+      System.out.println(x * 1024);
+      System.out.println(x * 65535);
+      System.out.println(x * 65536);
+      System.out.println(x * 100000);
+      System.out.println(x * (0 - 1));
+      System.out.println(x * (0 - 4));
+      System.out.println(x * (0 - 6));
+      System.out.println(x * 1073741824);
+      System.out.println(x * (0 - 2147483647 - 1));
+      System.out.println((x + 1) * 5 * 3);
+      System.out.println(this.id(x) * 4 + this.id(3) * 6);
+
+      arr = new int[x * 2];
+      i = 0;
+      while (i < arr.length) {
+        arr[i] = i * 3;
+        i = i + 1;
+      }
+      arr[arr.length - 1] = arr[0] + arr[2] * 4;
+      sum = 0;
+      i = 0;
+      while (i < arr.length) {
+        sum = sum + arr[i];
+        i = i + 1;
+      }
+      return sum;
+    }
+
+    public int id(int v){
+      return v;
+    }
+}
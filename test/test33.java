@@ -0,0 +1,78 @@
+// Test
+//   Array walks in loops (induction variables)
+class test33 {
+    public static void main(String[] a){
+     System.out.println(new W().run(10));
+    }
+}
+
+class W {
+    int[] data;
+    int count;
+
+    public int run(int n){
+      int[] local;
+      int i;
+      int j;
+      int k;
+      int sum;
+
+      data = new int[n];
+      local = new int[n + 2];
+      i = 0;
+      while (i < n) {
+        data[i] = i * i;
+        local[i + 1] = data[i] + 1;
+        i = i + 1;
+      }
+
+      // Decreasing index, neighbours, a nested loop
+      i = n - 1;
+      while (0 < i) {
+        j = i - 1;
+        if (data[i] < data[j] + 5) {
+          k = data[j];
+          data[j] = data[i];
+          data[i] = k;
+        } else {}
+        k = 0;
+        while (k < i) {
+          local[k] = local[k + 1] + data[k];
+          k = k + 2;
+        }
+        i = i - 1;
+      }
+
+      // The array changes inside the loop (a field store and a call)
+      sum = 0;
+      i = 0;
+      while (i < n) {
+        sum = sum + data[i];
+        if (i < 3) data = local; else {}
+        i = i + 1;
+      }
+      i = 0;
+      while (i < n) {
+        sum = sum + data[i] + local[i];
+        count = this.swap(i);
+        i = i + 1;
+      }
+      i = 0;
+      while (i < n) {
+        sum = sum + data[i];
+        local = data;
+        i = i + 3;
+      }
+      return sum + count;
+    }
+
+    public int swap(int i){
+      int[] other;
+      if (i < 5) {
+        other = new int[20];
+        other[i] = i;
+        data = other;
+      } else {}
+      return i;
+    }
+}
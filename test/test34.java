@@ -0,0 +1,67 @@
+// Test
+//   Array accesses whose bounds checks can or cannot be removed
+class test34 {
+    public static void main(String[] a){
+     System.out.println(new R().run(6));
+    }
+}
+
+class R {
+    int[] field;
+
+    public int run(int n){
+      int[] arr;
+      int[] copy;
+      int i;
+      int j;
+      int sum;
+
+      arr = new int[n];
+      field = new int[10];
+      i = 0;
+      while (i < arr.length) {
+        arr[i] = i + 1;
+        i = i + 1;
+      }
+      i = 0;
+      while (i < n) {
+        sum = arr[i] + arr[i];
+        field[i] = sum;
+        i = i + 1;
+      }
+      field[0] = 1;
+      field[9] = field[0] + field[8];
+      copy = arr;
+      sum = 0;
+      j = n - 1;
+      while (0 < j) {
+        sum = sum + copy[j] * arr[j - 1];
+        j = j - 1;
+      }
+      i = 0;
+      while (i < field.length && !(field[i] < 0)) {
+        sum = sum + field[i];
+        i = i + 1;
+      }
+      i = 2;
+      if (i < arr.length) sum = sum + arr[i]; else {}
+      sum = sum + this.refill(arr);
+      i = 0;
+      while (i < field.length) {
+        sum = sum + field[i];
+        i = i + 1;
+      }
+      return sum;
+    }
+
+    public int refill(int[] a){
+      int k;
+      field = new int[3];
+      k = 0;
+      while (k < 3) {
+        field[k] = a[k];
+        k = k + 1;
+      }
+      return k;
+    }
+}
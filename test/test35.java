@@ -0,0 +1,87 @@
+// Inheritance: overriding, inherited fields and dynamic dispatch
+class test35 {
+  public static void main(String[] a) {
+    System.out.println(new Shapes().run());
+  }
+}
+
+class Shapes {
+  public int run() {
+    Shape s;
+    Square q;
+    int total;
+
+    total = 0;
+    s = new Shape();
+    total = total + this.show(s.init(2));
+    s = new Square();
+    total = total + this.show(s.init(3));
+    s = new Rectangle();
+    total = total + this.show(s.init(4));
+
+    q = new Square();
+    s = q.init(5);
+    System.out.println(q.side());
+    System.out.println(q.grow());
+    return total;
+  }
+
+  public int show(Shape s) {
+    System.out.println(s.area());
+    System.out.println(s.sides());
+    return s.area();
+  }
+}
+
+class Shape {
+  int size;
+
+  public Shape init(int n) {
+    size = n;
+    return this;
+  }
+
+  public int area() {
+    return 0;
+  }
+
+  public int sides() {
+    return 0;
+  }
+}
+
+class Square extends Shape {
+  int grown;
+
+  public int area() {
+    return size * size;
+  }
+
+  public int sides() {
+    return 4;
+  }
+
+  public int side() {
+    return size;
+  }
+
+  public int grow() {
+    grown = grown + 1;
+    size = size + grown;
+    return this.area();
+  }
+}
+
+class Rectangle extends Square {
+  int width;
+
+  public Shape init(int n) {
+    size = n;
+    width = n + 1;
+    return this;
+  }
+
+  public int area() {
+    return size * width;
+  }
+}
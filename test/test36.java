@@ -0,0 +1,68 @@
+// Small methods (inlined with -finline): getters, setters, parameters
+// assigned in the callee, nested calls and calls in loops
+class test36 {
+  public static void main(String[] a) {
+    System.out.println(new Counter().run(5));
+  }
+}
+
+class Counter {
+  int count;
+  Counter next;
+
+  public int run(int n) {
+    int i;
+    int x;
+    Counter c;
+
+    count = 0;
+    c = new Counter();
+    x = c.set(3);
+    next = c;
+    i = 0;
+    while (i < n) {
+      x = this.add(x);
+      count = count + c.get();
+      i = this.inc(i);
+    }
+    System.out.println(count);
+    System.out.println(x);
+    System.out.println(this.twice(this.twice(x)));
+    System.out.println(this.sum(n));
+    System.out.println(next.get());
+    x = this.inc(this.get());
+    return x;
+  }
+
+  public int get() {
+    return count;
+  }
+
+  public int set(int v) {
+    count = v;
+    return v;
+  }
+
+  public int inc(int v) {
+    return v + 1;
+  }
+
+  public int add(int v) {
+    v = v + count;
+    return v;
+  }
+
+  public int twice(int v) {
+    return v + v;
+  }
+
+  public int sum(int n) {
+    int s;
+    s = 0;
+    while (0 < n) {
+      s = s + n;
+      n = n - 1;
+    }
+    return s;
+  }
+}
@@ -0,0 +1,115 @@
+// Calls in tail position: self-recursion (with the arguments permuted),
+// calls of other methods with fewer, as many and more arguments, and calls
+// through the vtable
+class test37 {
+  public static void main(String[] a) {
+    System.out.println(new Tail().run());
+  }
+}
+
+class Tail {
+  public int run() {
+    Step s;
+    System.out.println(this.sum(3000, 0));
+    System.out.println(this.gcd(1071, 462));
+    System.out.println(this.rotate(1, 2, 3, 7));
+    System.out.println(this.fewer(5, 6));
+    System.out.println(this.more(5));
+    s = new Step();
+    System.out.println(s.count(10, 0));
+    s = new Skip();
+    System.out.println(s.count(10, 0));
+    return this.even(2001);
+  }
+
+  public int sum(int n, int acc) {
+    int r;
+    if (n < 1)
+      r = acc;
+    else
+      r = this.sum(n - 1, acc + n);
+    return r;
+  }
+
+  public int gcd(int a, int b) {
+    int r;
+    if (b < 1)
+      r = a;
+    else if (a < b)
+      r = 0;
+    else
+      r = 1;
+    if (0 < b) {
+      while (!(a < b))
+        a = a - b;
+      r = this.gcd(b, a);
+    } else {
+    }
+    return r;
+  }
+
+  public int rotate(int x, int y, int z, int n) {
+    int r;
+    if (n < 1)
+      r = x * 100 + y * 10 + z;
+    else
+      r = this.rotate(y, z, x, n - 1);
+    return r;
+  }
+
+  public int fewer(int x, int y) {
+    return this.one(x + y);
+  }
+
+  public int one(int x) {
+    return x * 2;
+  }
+
+  public int more(int x) {
+    return this.three(x, x + 1, x + 2);
+  }
+
+  public int three(int x, int y, int z) {
+    return x * y - z;
+  }
+
+  public int even(int n) {
+    int r;
+    if (n < 1)
+      r = 1;
+    else
+      r = this.odd(n - 1);
+    return r;
+  }
+
+  public int odd(int n) {
+    int r;
+    if (n < 1)
+      r = 0;
+    else
+      r = this.even(n - 1);
+    return r;
+  }
+}
+
+class Step {
+  public int count(int n, int acc) {
+    int r;
+    if (n < 1)
+      r = acc;
+    else
+      r = this.count(n - 1, acc + 1);
+    return r;
+  }
+}
+
+class Skip extends Step {
+  public int count(int n, int acc) {
+    int r;
+    if (n < 1)
+      r = acc;
+    else
+      r = this.count(n - 2, acc + 10);
+    return r;
+  }
+}
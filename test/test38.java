@@ -0,0 +1,85 @@
+// Loop invariants: invariant operands of a loop condition, fields changed
+// in the loop (by an assignment or a call), values read before they are
+// set in the loop or after it, and loads in a loop that never runs
+class test38 {
+  public static void main(String[] a) {
+    System.out.println(new Invariant().run(6));
+  }
+}
+
+class Invariant {
+  int size;
+  int step;
+  int[] data;
+  int[] none;
+
+  public int run(int n) {
+    int i;
+    int s;
+    int t;
+    int x;
+
+    size = n;
+    step = 2;
+    data = new int[n];
+
+    // size - 1 and data.length are invariant
+    i = 0;
+    while (i < size - 1 && i < data.length) {
+      data[i] = i * step + size;
+      i = i + 1;
+    }
+    System.out.println(data[4]);
+
+    // step changes in the loop
+    i = 0;
+    s = 0;
+    while (i < 4) {
+      s = s + step;
+      step = step + 1;
+      i = i + 1;
+    }
+    System.out.println(s);
+
+    // step changes in a call
+    i = 0;
+    s = 0;
+    while (i < 4) {
+      s = s + step * 10;
+      x = this.bump();
+      i = i + 1;
+    }
+    System.out.println(s);
+
+    // t is read before it is set, x is read after the loop
+    i = 0;
+    s = 0;
+    t = 1;
+    x = 0;
+    while (i < 3) {
+      s = s + t;
+      t = 5;
+      if (1 < i)
+        x = size * 3;
+      else {
+      }
+      i = i + 1;
+    }
+    System.out.println(s);
+    System.out.println(x);
+
+    // The loop never runs: none.length must not fault
+    i = 0;
+    while (i < 0) {
+      x = none.length;
+      i = i + 1;
+    }
+    System.out.println(i);
+    return 0;
+  }
+
+  public int bump() {
+    step = step + 1;
+    return step;
+  }
+}
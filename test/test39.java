@@ -0,0 +1,67 @@
+// Repeated computations and loads (reused with -fcse): array elements
+// read again after a store to the same element through another index,
+// fields changed by a call, and values computed before an if
+class test39 {
+  public static void main(String[] a) {
+    System.out.println(new Values().run(6));
+  }
+}
+
+class Values {
+  int[] a;
+  int f;
+
+  public int run(int n) {
+    int i;
+    int j;
+    int x;
+    int y;
+    int t;
+
+    a = new int[n];
+    i = 0;
+    while (i < n) {
+      a[i] = n - i;
+      i = i + 1;
+    }
+
+    // Swap a[j] and a[j + 1] when out of order (the then branch reads
+    // the elements loaded for the condition)
+    j = 0;
+    while (j + 1 < n) {
+      x = a[j];
+      y = a[j + 1];
+      if (y < x) {
+        t = a[j];
+        a[j] = a[j + 1];
+        a[j + 1] = t;
+      } else {
+      }
+      j = j + 1;
+    }
+    System.out.println(a[0] + a[n - 1]);
+
+    // The same element through two indexes
+    i = 2;
+    j = 1 + 1;
+    x = a[i];
+    a[j] = x + 10;
+    System.out.println(a[i]);
+    System.out.println(x + j * i);
+    System.out.println(i * j + x);
+
+    // A store forwarded to the next load, and a field changed by a call
+    f = 7;
+    x = f + f;
+    y = this.bump();
+    System.out.println(f + x + y);
+    a[3] = f;
+    System.out.println(a[3] + a[3]);
+    return a[n - 1] + a[n - 1];
+  }
+
+  public int bump() {
+    f = f + 1;
+    return f;
+  }
+}
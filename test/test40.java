@@ -0,0 +1,78 @@
+// Constants through branches and loops (propagated with -fssa), values
+// swapped in a loop and a counter read after its loop (the copies of the
+// phis, out of SSA form), parameters assigned and unused results
+class test40 {
+  public static void main(String[] a) {
+    System.out.println(new Flow().run(10, 3));
+  }
+}
+
+class Flow {
+  int f;
+
+  public int run(int n, int m) {
+    int x;
+    int y;
+    int t;
+    int i;
+    int old;
+    boolean b;
+
+    // x < 2 always holds: y is 2 on the only path taken
+    x = 1;
+    if (x < 2)
+      y = x + 1;
+    else
+      y = 5;
+    System.out.println(y * 100);
+
+    // Constant in the loop, changed only by a branch never taken
+    i = 0;
+    t = 7;
+    while (i < n) {
+      if (t < 0)
+        t = t + 1;
+      else {
+      }
+      i = i + 1;
+    }
+    System.out.println(t);
+
+    // Swap in a loop: the phis of x and y read each other
+    x = 1;
+    y = 2;
+    i = 0;
+    while (i < m) {
+      t = x;
+      x = y;
+      y = t;
+      i = i + 1;
+    }
+    System.out.println(x * 10 + y);
+
+    // The old value of the counter, live after the loop
+    i = 0;
+    old = 0;
+    while (i < n) {
+      old = i;
+      i = i + 1;
+    }
+    System.out.println(old + i);
+
+    // A parameter assigned, and results not read
+    b = !(m < 3);
+    m = m * 2;
+    t = this.set(m);
+    x = n * 0 + m;
+    if (b && !false)
+      x = x + f;
+    else
+      x = x - 1;
+    return x;
+  }
+
+  public int set(int v) {
+    f = v;
+    return v + 1;
+  }
+}
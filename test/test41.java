@@ -0,0 +1,23 @@
+// Reading an array field that was never assigned (null): the load faults
+// and the exception handler prints "Null pointer exception" (see
+// "make check-null A=41"); nothing after it is printed
+class test41 {
+  public static void main(String[] a) {
+    System.out.println(new Holder().run(3));
+  }
+}
+
+class Holder {
+  int[] data;
+  int[] empty;
+
+  public int run(int n) {
+    data = new int[n];
+    data[0] = 7;
+    System.out.println(data[0]);
+    System.out.println(data.length);
+    System.out.println(empty[0]);
+    System.out.println(99);
+    return empty.length;
+  }
+}
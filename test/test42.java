@@ -0,0 +1,32 @@
+// Calling a method on an object field that was never assigned (null): the
+// call checks its receiver and the handler prints "Null pointer exception"
+// (see "make check-null A=42"); the method is never entered
+class test42 {
+  public static void main(String[] a) {
+    System.out.println(new Node().run(5));
+  }
+}
+
+class Node {
+  Node next;
+  int value;
+
+  public int set(int v) {
+    value = v;
+    System.out.println(v);
+    return v;
+  }
+
+  public Node getNext() {
+    return next;
+  }
+
+  public int run(int v) {
+    int r;
+    next = new Node();
+    r = next.set(v);
+    r = next.getNext().set(v + 1);
+    System.out.println(99);
+    return r;
+  }
+}
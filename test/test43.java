@@ -0,0 +1,83 @@
+// Call sites that see several receiver classes: with -finline-caches each
+// one expects the first instantiated class under its static type (Dog,
+// which inherits speak() from Animal) and the others miss the cache and go
+// through the vtable ("make caches")
+class test43 {
+  public static void main(String[] a) {
+    System.out.println(new Zoo().run(8));
+  }
+}
+
+class Zoo {
+  public Animal pick(int i) {
+    Animal r;
+    if (i < 2)
+      r = new Dog();
+    else if (i < 4)
+      r = new Puppy();
+    else if (i < 6)
+      r = new Cat();
+    else
+      r = new Bird();
+    return r;
+  }
+
+  public int run(int n) {
+    int i;
+    int total;
+    Animal x;
+    Dog d;
+    i = 0;
+    total = 0;
+    while (i < n) {
+      x = this.pick(i);
+      System.out.println(x.speak(i));
+      total = total + x.legs() * 100 + x.speak(i);
+      i = i + 1;
+    }
+
+    // Static type Dog: Dog hits, its subclass Puppy misses
+    d = new Dog();
+    total = total + d.speak(1);
+    d = new Puppy();
+    total = total + d.speak(1);
+    return total;
+  }
+}
+
+class Animal {
+  int calls;
+
+  public int speak(int i) {
+    calls = calls + 1;
+    return i * 10 + calls;
+  }
+
+  public int legs() {
+    return 4;
+  }
+}
+
+class Dog extends Animal {
+  public int fetch() {
+    return 1;
+  }
+}
+
+class Puppy extends Dog {
+  public int speak(int i) {
+    return 1000 + i;
+  }
+}
+
+class Cat extends Animal {
+  public int speak(int i) {
+    return 2000 + i;
+  }
+}
+
+class Bird extends Animal {
+  public int legs() {
+    return 2;
+  }
+}
@@ -0,0 +1,27 @@
+// A condition that SCCP decides in part: x < 2 always holds, v < 5 does
+// not for f(10). Branches are decided before any edge is removed, so the
+// edge of one branch is not read as another's
+class test44 {
+  public static void main(String[] a) {
+    System.out.println(new Cond().run());
+  }
+}
+
+class Cond {
+  public int run() {
+    System.out.println(this.f(10));
+    System.out.println(this.f(3));
+    return 0;
+  }
+
+  public int f(int v) {
+    int x;
+    int r;
+    x = 1;
+    if (x < 2 && v < 5)
+      r = 1;
+    else
+      r = 2;
+    return r;
+  }
+}
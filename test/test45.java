@@ -0,0 +1,37 @@
+// A loop in a branch that SCCP proves is never taken: its blocks are
+// removed whatever their order, and the loop of the other method stays
+class test45 {
+  public static void main(String[] a) {
+    System.out.println(new Dead().run());
+  }
+}
+
+class Dead {
+  public int run() {
+    System.out.println(this.f(3));
+    System.out.println(this.g(3));
+    return 0;
+  }
+
+  public int f(int v) {
+    int x;
+    x = 1;
+    if (x < 0) {
+      while (v < 10)
+        v = v + 1;
+    } else {
+    }
+    return v;
+  }
+
+  public int g(int v) {
+    int x;
+    x = 1;
+    if (0 < x) {
+      while (v < 10)
+        v = v + 1;
+    } else {
+    }
+    return v;
+  }
+}
@@ -0,0 +1,318 @@
+package visitor;
+
+import syntaxtree.*;
+
+import java.util.HashSet;
+
+// Range analysis removing the array bounds checks (-fbounds-check) that
+// cannot fail: it clears ArrayLookup.needsCheck and ArrayAssign.needsCheck.
+//
+// The facts known at each point of a method (see RangeFact): x >= 0,
+// x < T and a.length == T, where T is a variable, a constant or the length
+// of an array. They come from assignments (x = 0, x = y + 1 with y >= 0 and y < T,
+// a = new int[n]), from conditions (while (i < a.length) ...) and from the
+// accesses already checked (after a[i], 0 <= i < a.length). An assignment
+// to x forgets the facts about x, and a call forgets the facts about the
+// fields. An index is in range if it is non-negative and below the length
+// of the array.
+public class BoundsCheckVisitor extends DepthFirstVisitor {
+
+  private HashSet<RangeFact> facts = new HashSet<>();
+  private HashSet<String> locals;  // Locals and parameters of the method
+
+  // Identifier i1,i2;
+  // VarDeclList vl;
+  // Statement s;
+  public void visit(MainClass n) {
+    locals = new HashSet<>();
+    for (int i = 0; i < n.vl.size(); i++) {
+      locals.add(n.vl.elementAt(i).i.s);
+    }
+    facts = new HashSet<>();
+    n.s.accept(this);
+  }
+
+  // Type t;
+  // Identifier i;
+  // FormalList fl;
+  // VarDeclList vl;
+  // StatementList sl;
+  // Exp e;
+  public void visit(MethodDecl n) {
+    locals = new HashSet<>();
+    for (int i = 0; i < n.fl.size(); i++) {
+      locals.add(n.fl.elementAt(i).i.s);
+    }
+    for (int i = 0; i < n.vl.size(); i++) {
+      locals.add(n.vl.elementAt(i).i.s);
+    }
+    facts = new HashSet<>();
+    for (int i = 0; i < n.sl.size(); i++) {
+      n.sl.elementAt(i).accept(this);
+    }
+    n.e.accept(this);
+  }
+
+  // Exp e;
+  // Statement s1,s2;
+  public void visit(If n) {
+    n.e.accept(this);
+    HashSet<RangeFact> afterCondition = new HashSet<>(facts);
+
+    whenTrue(n.e);
+    n.s1.accept(this);
+    HashSet<RangeFact> afterThen = facts;
+
+    facts = new HashSet<>(afterCondition);
+    whenFalse(n.e);
+    n.s2.accept(this);
+    facts.retainAll(afterThen);
+  }
+
+  // Exp e;
+  // Statement s;
+  public void visit(While n) {
+    // The facts at the head of the loop: those holding before the loop and
+    // after the body (iterated until they are stable)
+    HashSet<RangeFact> before = new HashSet<>(facts);
+    HashSet<RangeFact> head = before;
+    while (true) {
+      facts = new HashSet<>(head);
+      n.e.accept(this);
+      HashSet<RangeFact> afterCondition = new HashSet<>(facts);
+
+      whenTrue(n.e);
+      n.s.accept(this);
+      facts.retainAll(before);
+      if (facts.equals(head)) {
+        facts = afterCondition;
+        whenFalse(n.e);
+        return;
+      }
+      head = facts;
+    }
+  }
+
+  // Identifier i;
+  // Exp e;
+  public void visit(Assign n) {
+    n.e.accept(this);
+    assign(n.i.s, n.e);
+  }
+
+  // Identifier i;
+  // Exp e1,e2;
+  public void visit(ArrayAssign n) {
+    // The code generators evaluate e1 and e2 in different orders
+    if (hasCall(n.e1) || hasCall(n.e2))
+      forgetFields();
+    n.e1.accept(this);
+    n.e2.accept(this);
+    n.needsCheck = !inRange(n.i.s, n.e1);
+    checked(n.i.s, n.e1);
+  }
+
+  // Exp e1,e2;
+  public void visit(And n) {
+    n.e1.accept(this);
+    HashSet<RangeFact> afterLeft = new HashSet<>(facts);
+    whenTrue(n.e1);
+    n.e2.accept(this);
+    facts.retainAll(afterLeft);
+  }
+
+  // Exp e1,e2;
+  public void visit(ArrayLookup n) {
+    n.e1.accept(this);
+    n.e2.accept(this);
+    if (n.e1 instanceof IdentifierExp) {
+      String array = ((IdentifierExp) n.e1).s;
+      n.needsCheck = !inRange(array, n.e2);
+      checked(array, n.e2);
+    }
+  }
+
+  // Exp e;
+  // Identifier i;
+  // ExpList el;
+  public void visit(Call n) {
+    // The code generators evaluate the arguments in different orders
+    boolean hasCall = hasCall(n.e);
+    for (int i = 0; i < n.el.size(); i++) {
+      hasCall |= hasCall(n.el.elementAt(i));
+    }
+    if (hasCall)
+      forgetFields();
+
+    super.visit(n);
+    forgetFields();
+  }
+
+  // The facts after x = e (e is evaluated)
+  private void assign(String x, Exp e) {
+    HashSet<RangeFact> gen = new HashSet<>();
+    if (e instanceof IntegerLiteral && ((IntegerLiteral) e).i >= 0 || e instanceof ArrayLength) {
+      gen.add(RangeFact.nonNegative(x));
+    } else if (e instanceof IdentifierExp && !((IdentifierExp) e).s.equals(x)) {
+      // A copy: what is known about y holds for x
+      String y = ((IdentifierExp) e).s;
+      for (RangeFact fact : facts) {
+        if (fact.mentions(y) && !fact.mentions(x))
+          gen.add(fact.replace(y, x));
+      }
+    } else if (isVariablePlusConstant(e)) {
+      Exp e1 = e instanceof Plus ? ((Plus) e).e1 : ((Minus) e).e1;
+      Exp e2 = e instanceof Plus ? ((Plus) e).e2 : ((Minus) e).e2;
+      String y = ((IdentifierExp) e1).s;
+      int c = e instanceof Plus ? ((IntegerLiteral) e2).i : -((IntegerLiteral) e2).i;
+      if (facts.contains(RangeFact.nonNegative(y)) && (c == 0 || c == 1 && hasUpperBound(y)))
+        gen.add(RangeFact.nonNegative(x));  // y < T, so y + 1 does not overflow
+      if (c <= 0 && facts.contains(RangeFact.nonNegative(y))) {
+        for (RangeFact fact : facts) {
+          if (isUpperBound(fact, y) && !fact.mentions(x))
+            gen.add(fact.replace(y, x));
+        }
+      }
+    } else if (e instanceof NewArray) {
+      RangeFact.Term length = bound(((NewArray) e).e);
+      if (length != null && length.kind != RangeFact.Term.LENGTH_OF && !length.mentions(x))
+        gen.add(RangeFact.length(x, length));
+    }
+
+    forget(x);
+    facts.addAll(gen);
+  }
+
+  // Add the facts holding when the condition e is true
+  private void whenTrue(Exp e) {
+    if (e instanceof And) {
+      whenTrue(((And) e).e1);
+      whenTrue(((And) e).e2);
+    } else if (e instanceof Not) {
+      whenFalse(((Not) e).e);
+    } else if (e instanceof LessThan) {
+      Exp e1 = ((LessThan) e).e1;
+      Exp e2 = ((LessThan) e).e2;
+      RangeFact.Term x = term(e1);
+      RangeFact.Term bound = bound(e2);
+      if (x != null && bound != null)
+        facts.add(RangeFact.lessThan(x, bound));
+      // -1 < y
+      if (e1 instanceof IntegerLiteral && ((IntegerLiteral) e1).i >= -1 && e2 instanceof IdentifierExp)
+        facts.add(RangeFact.nonNegative(((IdentifierExp) e2).s));
+    }
+  }
+
+  // Add the facts holding when the condition e is false
+  private void whenFalse(Exp e) {
+    if (e instanceof Not) {
+      whenTrue(((Not) e).e);
+    } else if (e instanceof LessThan) {
+      // e1 >= e2 >= 0
+      Exp e1 = ((LessThan) e).e1;
+      Exp e2 = ((LessThan) e).e2;
+      if (e1 instanceof IdentifierExp && isNonNegative(e2))
+        facts.add(RangeFact.nonNegative(((IdentifierExp) e1).s));
+    }
+  }
+
+  // Whether 0 <= index < array.length
+  private boolean inRange(String array, Exp index) {
+    RangeFact.Term x = term(index);
+    if (x == null || !isNonNegative(index))
+      return false;
+    if (facts.contains(RangeFact.lessThan(x, RangeFact.Term.lengthOf(array))))
+      return true;
+    RangeFact.Term arrayVar = RangeFact.Term.variable(array);
+    for (RangeFact fact : facts) {
+      if (fact.kind == RangeFact.LENGTH && fact.x.equals(arrayVar)) {
+        RangeFact.Term length = fact.bound;
+        if (facts.contains(RangeFact.lessThan(x, length)))
+          return true;
+        if (x.kind == RangeFact.Term.CONSTANT && length.kind == RangeFact.Term.CONSTANT
+            && x.value < length.value)
+          return true;
+      }
+    }
+    return false;
+  }
+
+  // After array[index] (checked or in range)
+  private void checked(String array, Exp index) {
+    RangeFact.Term x = term(index);
+    if (x == null)
+      return;
+    if (index instanceof IdentifierExp)
+      facts.add(RangeFact.nonNegative(x.name));
+    facts.add(RangeFact.lessThan(x, RangeFact.Term.lengthOf(array)));
+  }
+
+  private boolean isNonNegative(Exp e) {
+    if (e instanceof IntegerLiteral)
+      return ((IntegerLiteral) e).i >= 0;
+    if (e instanceof IdentifierExp)
+      return facts.contains(RangeFact.nonNegative(((IdentifierExp) e).s));
+    return e instanceof ArrayLength;
+  }
+
+  // y + c or y - c (c >= 0)
+  private static boolean isVariablePlusConstant(Exp e) {
+    if (e instanceof Plus)
+      return ((Plus) e).e1 instanceof IdentifierExp && ((Plus) e).e2 instanceof IntegerLiteral;
+    return e instanceof Minus && ((Minus) e).e1 instanceof IdentifierExp
+        && ((Minus) e).e2 instanceof IntegerLiteral && ((IntegerLiteral) ((Minus) e).e2).i >= 0;
+  }
+
+  private boolean hasUpperBound(String x) {
+    for (RangeFact fact : facts) {
+      if (isUpperBound(fact, x))
+        return true;
+    }
+    return false;
+  }
+
+  // Whether the fact is x < T
+  private static boolean isUpperBound(RangeFact fact, String x) {
+    return fact.kind == RangeFact.LESS_THAN && fact.x.equals(RangeFact.Term.variable(x));
+  }
+
+  // A variable or constant index, or null
+  private static RangeFact.Term term(Exp e) {
+    if (e instanceof IdentifierExp)
+      return RangeFact.Term.variable(((IdentifierExp) e).s);
+    if (e instanceof IntegerLiteral)
+      return RangeFact.Term.constant(((IntegerLiteral) e).i);
+    return null;
+  }
+
+  // The bound T of a fact x < T for the value of e, or null
+  private static RangeFact.Term bound(Exp e) {
+    if (e instanceof ArrayLength && ((ArrayLength) e).e instanceof IdentifierExp)
+      return RangeFact.Term.lengthOf(((IdentifierExp) ((ArrayLength) e).e).s);
+    return term(e);
+  }
+
+  // Forget the facts about x
+  private void forget(String x) {
+    facts.removeIf(fact -> fact.mentions(x));
+  }
+
+  // Forget the facts about fields (which a call may change)
+  private void forgetFields() {
+    facts.removeIf(fact -> !fact.isLocal(locals));
+  }
+
+  private static boolean hasCall(Exp e) {
+    CallFinder finder = new CallFinder();
+    e.accept(finder);
+    return finder.found;
+  }
+
+  private static class CallFinder extends DepthFirstVisitor {
+    boolean found = false;
+
+    public void visit(Call n) {
+      found = true;
+    }
+  }
+}
@@ -6,29 +6,20 @@ import java.util.ArrayList;
 
 public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
 
-  private SymbolTable symbolTable;
+  private final CompilationContext context;
+  private final SymbolTable symbolTable;
 
-  public BuildSymbolTableVisitor() {
-    symbolTable = new SymbolTable();
+  public BuildSymbolTableVisitor(CompilationContext context) {
+    this.context = context;
+    this.symbolTable = context.getSymbolTable();
   }
 
   public SymbolTable getSymTab() {
     return symbolTable;
   }
 
-  // In global scope => both currClass and currMethod are null
-  //   Contains class declaration
-  // Inside a class (but not in a method) => currMethod is null
-  //   Contains field and method declarations
-  // Inside a method
-  //   Contains declaration of local variables 
-  // These two variables help keep track of the current scope.
-  private Class currClass;
-  private Method currMethod;
-
-  // Note: Because in MiniJava there is no nested scopes and all local 
-  // variables can only be declared at the beginning of a method. This "hack"
-  // uses two variables instead of a stack to track nested level.
+  // The current scope is kept in context.currClass and context.currMethod
+  // (see CompilationContext)
 
 
   // MainClass m;
@@ -42,6 +33,9 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
       n.cl.elementAt(i).accept(this);
     }
 
+    // All classes are known => build the class hierarchy index
+    symbolTable.freeze();
+
     return null;
   }
 
@@ -53,9 +47,9 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
     // The beginLine and beginColumn are no meaning here
 
     symbolTable.addClass(n.i1.toString(), null, -1, -1);
-    currClass = symbolTable.getClass(n.i1.toString());
-    currClass.addMethod("main", new IdentifierType("void"), new FormalList(), 0, 0);
-    currMethod = currClass.getMethod(new ArrayList<>(), "main");
+    context.currClass = symbolTable.getClass(n.i1.toString());
+    context.currClass.addMethod("main", new IdentifierType("void"), new FormalList(), 0, 0);
+    context.currMethod = context.currClass.getMethod(new ArrayList<>(), "main");
 
     for (int i = 0; i < n.vl.size(); i++) {
       n.vl.elementAt(i).accept(this);
@@ -63,7 +57,7 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
 
     n.s.accept(this);
 
-    currMethod = null;
+    context.currMethod = null;
 
     return null;
   }
@@ -76,11 +70,11 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
 
     if (!symbolTable.addClass(id, null, 0, 0)) {
       Class conflictedClass = symbolTable.getClass(id);
-      System.err.printf("%s: class Redeclaration (%s,%s; %s,%s)%n", id, conflictedClass.getBeginLine(), conflictedClass.getBeginColumn(), 0, 0);
+      context.err.printf("%s: class Redeclaration (%s,%s; %s,%s)%n", id, conflictedClass.getBeginLine(), conflictedClass.getBeginColumn(), 0, 0);
     }
 
     // Entering a new class scope (no need to explicitly leave a class scope)
-    currClass = symbolTable.getClass(id);
+    context.currClass = symbolTable.getClass(id);
 
     // Process field declaration
     for (int i = 0; i < n.vl.size(); i++) {
@@ -103,11 +97,11 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
 
     if (!symbolTable.addClass(id, n.j.toString(), 0, 0)) {
       Class conflictedClass = symbolTable.getClass(id);
-      System.err.printf("%s: class Redeclaration (%s,%s; %s,%s)%n", id, conflictedClass.getBeginLine(), conflictedClass.getBeginColumn(), 0, 0);
+      context.err.printf("%s: class Redeclaration (%s,%s; %s,%s)%n", id, conflictedClass.getBeginLine(), conflictedClass.getBeginColumn(), 0, 0);
     }
 
     // Entering a new class scope (no need to explicitly leave a class scope)
-    currClass = symbolTable.getClass(id);
+    context.currClass = symbolTable.getClass(id);
 
     for (int i = 0; i < n.vl.size(); i++) {
       n.vl.elementAt(i).accept(this);
@@ -127,26 +121,26 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
     String id = n.i.toString();
 
     // Not inside a method => a field declaration
-    if (currMethod == null) {
+    if (context.currMethod == null) {
       // Add a field
 
-      if (!currClass.addVar(id, t, 0, 0)) {
-        Variable conflictedVar = currClass.getVar(id);
-        System.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedVar.getBeginLine(), conflictedVar.getBeginColumn(), conflictedVar.getScopingMethod().getInternalId(), 0, 0);
+      if (!context.currClass.addVar(id, t, 0, 0)) {
+        Variable conflictedVar = context.currClass.getVar(id);
+        context.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedVar.getBeginLine(), conflictedVar.getBeginColumn(), conflictedVar.getScopingMethod().getInternalId(), 0, 0);
       }
     } else {
       // Add a local variable
 
-      for (Variable conflictedParam : currMethod.params) {
+      for (Variable conflictedParam : context.currMethod.params) {
         if (conflictedParam.getId().equals(id)) {
-          System.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedParam.getBeginLine(), conflictedParam.getBeginColumn(), conflictedParam.getScopingMethod().getInternalId(), 0, 0);
+          context.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedParam.getBeginLine(), conflictedParam.getBeginColumn(), conflictedParam.getScopingMethod().getInternalId(), 0, 0);
           return null;
         }
       }
 
-      if (!currMethod.addVar(id, t, 0, 0)) {
-        Variable conflictedVar = currMethod.getVar(id);
-        System.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedVar.getBeginLine(), conflictedVar.getBeginColumn(), conflictedVar.getScopingMethod().getInternalId(), 0, 0);
+      if (!context.currMethod.addVar(id, t, 0, 0)) {
+        Variable conflictedVar = context.currMethod.getVar(id);
+        context.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedVar.getBeginLine(), conflictedVar.getBeginColumn(), conflictedVar.getScopingMethod().getInternalId(), 0, 0);
       }
     }
 
@@ -170,13 +164,13 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
       paramTypes.add(n.fl.elementAt(i).t);
     }
 
-    if (!currClass.addMethod(id, t, n.fl, 0, 0)) {
-      Method conflictedMethod = currClass.getMethod(paramTypes, id);
-      System.err.printf("%s: method Redeclaration (%s,%s; %s,%s)%n", id, conflictedMethod.getBeginLine(), conflictedMethod.getBeginColumn(), 0, 0);
+    if (!context.currClass.addMethod(id, t, n.fl, 0, 0)) {
+      Method conflictedMethod = context.currClass.getMethod(paramTypes, id);
+      context.err.printf("%s: method Redeclaration (%s,%s; %s,%s)%n", id, conflictedMethod.getBeginLine(), conflictedMethod.getBeginColumn(), 0, 0);
     }
 
     // Entering a method scope 
-    currMethod = currClass.getMethod(paramTypes, id);
+    context.currMethod = context.currClass.getMethod(paramTypes, id);
 
     for (int i = 0; i < n.fl.size(); i++) {
       n.fl.elementAt(i).accept(this);
@@ -191,7 +185,7 @@ public class BuildSymbolTableVisitor extends TypeDepthFirstVisitor {
     n.e.accept(this);
 
     // Leaving a method scope (return to class scope)
-    currMethod = null;
+    context.currMethod = null;
     return null;
   }
 
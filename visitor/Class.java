@@ -0,0 +1,323 @@
+package visitor;
+
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+
+// Store all properties that describe a class
+class Class {
+
+  private final int beginLine;
+  private final int beginColumn;
+  private final int internalId;
+  protected String id;      // Class name
+  protected HashMap<MethodSignature, Method> methods;    // Declared methods by exact signature
+  private HashMap<Integer, ArrayList<Method>> overloads;  // Declared methods by name id
+  private HashMap<MethodSignature, Method> resolved;      // Cache of resolveMethod()
+  protected Hashtable<String, Variable> fields;
+  protected String parent;  // Superclass's name  (null if there is no superclass)
+  protected Type type;      // An instance of Type that represents this class
+
+  private final SymbolTable symbolTable;
+
+  // Class hierarchy index, filled in by SymbolTable.freeze()
+  private Class superClass;
+  private int preorder = -1;
+  private int lastDescendant = -1;
+  private Hashtable<String, Variable> visibleFields;  // Own and inherited fields
+
+  // Object layout, also filled in by freeze(): word 0 points to the vtable,
+  // then come the inherited fields and the fields of this class
+  private int numOfFields;                        // Own and inherited fields
+  private HashMap<String, Integer> fieldOffsets;  // Of the visible fields
+  private ArrayList<Method> vtable;               // Indexed by Method.getVtableIndex()
+
+  private boolean instantiated = false;  // The program has a "new" of the class
+
+  // Model a class named "id" that extend a class name "p"
+  // "p" is null if class "id" does has extend any class
+  public Class(String id, String p, int beginLine, int beginColumn, SymbolTable symbolTable) {
+    this.id = id;
+    this.parent = p;
+    this.type = new IdentifierType(id);
+    this.methods = new HashMap<MethodSignature, Method>();
+    this.overloads = new HashMap<Integer, ArrayList<Method>>();
+    this.resolved = new HashMap<MethodSignature, Method>();
+    this.fields = new Hashtable<String, Variable>();
+    this.beginLine = beginLine;
+    this.beginColumn = beginColumn;
+    this.symbolTable = symbolTable;
+    this.internalId = symbolTable.getContext().newClassId();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  // Add a method defined in the current class by registering
+  // its name along with its return type.
+  // The other properties (parameters, local variables) of the method
+  // will be added later
+  // 
+  // Return false if there is a name conflict (among all method names only)
+  public boolean addMethod(String id, Type type, FormalList fl, int beginLine, int beginColumn) {
+    symbolTable.getContext().restartVariableIds();
+
+    ArrayList<Type> paramTypes = new ArrayList<>();
+    for (int i = 0; i < fl.size(); i++) {
+      paramTypes.add(fl.elementAt(i).t);
+    }
+
+    if (containsMethod(paramTypes, id))
+      return false;
+    else {
+      Method method = new Method(id, type, fl, this, beginLine, beginColumn);
+      methods.put(method.getSignature(), method);
+
+      ArrayList<Method> sameName = overloads.get(method.getSignature().nameId);
+      if (sameName == null) {
+        sameName = new ArrayList<Method>();
+        overloads.put(method.getSignature().nameId, sameName);
+      }
+      sameName.add(method);
+
+      return true;
+    }
+  }
+
+  // Return the method declared in this class with exactly the specified
+  // parameter types
+  public Method getMethod(ArrayList<Type> paramTypes, String id) {
+    return methods.get(symbolTable.getSignature(id, paramTypes));
+  }
+
+  // Resolve a call to method "id" with arguments of the specified types
+  // against the methods declared in this class and in its ancestors.
+  //
+  // As in Java, the most specific applicable method is chosen (a method with
+  // the same signature in a subclass overrides the inherited one). Return
+  // null if there is no applicable method, or if the call is ambiguous.
+  // The result is cached once the symbol table is frozen.
+  public Method resolveMethod(ArrayList<Type> argTypes, String id) {
+    MethodSignature call = symbolTable.getSignature(id, argTypes);
+
+    if (!symbolTable.isFrozen())
+      return findMostSpecificMethod(call);
+
+    Method method = resolved.get(call);
+    if (method == null && !resolved.containsKey(call)) {
+      method = findMostSpecificMethod(call);
+      resolved.put(call, method);
+    }
+    return method;
+  }
+
+  private Method findMostSpecificMethod(MethodSignature call) {
+    // Collect the applicable methods, skipping overridden ones
+    ArrayList<Method> applicable = new ArrayList<>();
+    for (Class c = this; c != null; c = c.getParentClass()) {
+      ArrayList<Method> sameName = c.overloads.get(call.nameId);
+      if (sameName == null)
+        continue;
+
+      for (Method m : sameName) {
+        if (!symbolTable.isApplicable(m.getSignature(), call))
+          continue;
+
+        boolean overridden = false;
+        for (Method other : applicable) {
+          if (other.getSignature().equals(m.getSignature()))
+            overridden = true;
+        }
+        if (!overridden)
+          applicable.add(m);
+      }
+    }
+
+    // Pick the one that is more specific than all others
+    for (Method m : applicable) {
+      boolean mostSpecific = true;
+      for (Method other : applicable) {
+        if (!symbolTable.isApplicable(other.getSignature(), m.getSignature()))
+          mostSpecific = false;
+      }
+      if (mostSpecific)
+        return m;
+    }
+
+    if (!applicable.isEmpty()) {
+      symbolTable.getContext().err.printf("%s: Ambiguous method call in class %s%n", applicable.get(0).getId(), id);
+    }
+    return null;
+  }
+
+  // Add a field
+  // Return false if there is a name conflict (among all fields only)
+  public boolean addVar(String id, Type type, int beginLine, int beginColumn) {
+    if (fields.containsKey(id))
+      return false;
+    else {
+      Variable var = new Variable(id, type, this, null, beginLine, beginColumn);
+      fields.put(id, var);
+
+      return true;
+    }
+  }
+
+  // Return a field with the specified name 
+  public Variable getVar(String id) {
+    if (containsVar(id))
+      return (Variable) fields.get(id);
+    else
+      return null;
+  }
+
+  public boolean containsVar(String id) {
+    return fields.containsKey(id);
+  }
+
+  public boolean containsMethod(ArrayList<Type> paramTypes, String id) {
+    return this.getMethod(paramTypes, id) != null;
+  }
+
+  SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  public String getParentId() {
+    return parent;
+  }
+
+  // Return the superclass (null if there is no superclass)
+  public Class getParentClass() {
+    if (symbolTable.isFrozen())
+      return superClass;
+
+    return parent == null ? null : symbolTable.getClass(parent);
+  }
+
+  Class getSuperClass() {
+    return superClass;
+  }
+
+  void setSuperClass(Class superClass) {
+    this.superClass = superClass;
+  }
+
+  int getPreorder() {
+    return preorder;
+  }
+
+  void setPreorder(int preorder) {
+    this.preorder = preorder;
+  }
+
+  int getLastDescendant() {
+    return lastDescendant;
+  }
+
+  void setLastDescendant(int lastDescendant) {
+    this.lastDescendant = lastDescendant;
+  }
+
+  // Merge the fields of this class over the (already flattened) fields of
+  // its superclass, and lay out the object and the vtable: the fields and
+  // the methods of this class come after the inherited ones, and a method
+  // overriding an inherited one takes its vtable slot
+  void flattenMembers() {
+    if (superClass == null) {
+      visibleFields = new Hashtable<String, Variable>();
+      fieldOffsets = new HashMap<String, Integer>();
+      numOfFields = 0;
+      vtable = new ArrayList<Method>();
+    } else {
+      visibleFields = new Hashtable<String, Variable>(superClass.visibleFields);
+      fieldOffsets = new HashMap<String, Integer>(superClass.fieldOffsets);
+      numOfFields = superClass.numOfFields;
+      vtable = new ArrayList<Method>(superClass.vtable);
+    }
+
+    visibleFields.putAll(fields);
+
+    // In the order of declaration
+    ArrayList<Variable> ownFields = new ArrayList<>(fields.values());
+    ownFields.sort((a, b) -> a.getInternalId() - b.getInternalId());
+    for (Variable field : ownFields) {
+      numOfFields++;
+      fieldOffsets.put(field.getId(), numOfFields * 4);
+    }
+
+    ArrayList<Method> ownMethods = new ArrayList<>(methods.values());
+    ownMethods.sort((a, b) -> a.getInternalId() - b.getInternalId());
+    for (Method method : ownMethods) {
+      int index = vtable.size();
+      for (int i = 0; i < vtable.size(); i++) {
+        if (vtable.get(i).getSignature().equals(method.getSignature()))
+          index = i;
+      }
+      method.setVtableIndex(index);
+      if (index == vtable.size())
+        vtable.add(method);
+      else
+        vtable.set(index, method);
+    }
+  }
+
+  // The number of fields of an object of this class (own and inherited)
+  public int getNumOfFields() {
+    return numOfFields;
+  }
+
+  // The offset of a visible field in the object
+  public int getFieldOffset(String id) {
+    return fieldOffsets.get(id);
+  }
+
+  public boolean isInstantiated() {
+    return instantiated;
+  }
+
+  void setInstantiated() {
+    instantiated = true;
+  }
+
+  // The methods of an object of this class, by vtable slot
+  public ArrayList<Method> getVtable() {
+    return vtable;
+  }
+
+  // Return a field declared in this class or inherited from its ancestors
+  public Variable getVisibleVar(String id) {
+    if (visibleFields != null)
+      return visibleFields.get(id);
+
+    for (Class c = this; c != null; c = c.getParentClass()) {
+      if (c.containsVar(id))
+        return c.getVar(id);
+    }
+    return null;
+  }
+
+  public int getBeginLine() {
+    return beginLine;
+  }
+
+  public int getBeginColumn() {
+    return beginColumn;
+  }
+
+  public int getInternalId() {
+    return internalId;
+  }
+
+  // 0-based, dense over all classes of the symbol table
+  public int getDenseId() {
+    return internalId - 1;
+  }
+} // Class
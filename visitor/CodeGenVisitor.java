@@ -1,42 +1,74 @@
 package visitor;
 
+import mips.InstrList;
+import mips.Multiply;
 import syntaxtree.*;
 
-import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static mips.Reg.*;
 
 public class CodeGenVisitor extends DepthFirstVisitor {
 
-  static Class currClass;
-  static Method currMethod;
-  static SymbolTable symbolTable;
-  PrintWriter out;
+  protected final CompilationContext context;
+  protected final SymbolTable symbolTable;
+
+  // One instruction list per routine, in output order
+  private final List<InstrList> code = new ArrayList<>();
+  protected InstrList asm;  // The routine being generated
+
+  // -fframe-temps: temporaries get fixed frame slots instead of being pushed
+  private final boolean frameTemps;
+  // -fbounds-check: array indexes are checked against the length
+  private final boolean boundsCheck;
+  // -fdevirtualize: calls with only one implementation are direct
+  private final boolean devirtualize;
+  // -finline-caches: the other calls test for the expected class first
+  private final boolean inlineCaches;
+  // -ftail-calls: "return e.i(el)" reuses the frame
+  private final boolean tailCalls;
+  // The assignments r = e.i(el) run right before "return r" (tail calls)
+  private final HashSet<Assign> tailAssigns = new HashSet<>();
+  private int numOfLocals;  // Local variables of the routine being generated
+  private int numOfTemps;   // Temporaries in use (with frameTemps)
+  private int frameSize;    // Bytes below $fp in the frame of the method
+
+  public CodeGenVisitor(CompilationContext context) {
+    this.context = context;
+    this.symbolTable = context.getSymbolTable();
+    this.frameTemps = context.getOptions().frameTemps;
+    this.boundsCheck = context.getOptions().boundsCheck;
+    this.devirtualize = context.getOptions().devirtualize;
+    this.inlineCaches = context.getOptions().inlineCaches;
+    this.tailCalls = context.getOptions().tailCalls;
+  }
 
-  public CodeGenVisitor(SymbolTable s, PrintWriter out) {
-    symbolTable = s;
-    this.out = out;
+  // The generated code (after visiting the Program)
+  public List<InstrList> getCode() {
+    return code;
+  }
+
+  // Start generating the routine "name"
+  private void begin(String name) {
+    asm = new InstrList(name);
+    code.add(asm);
   }
 
   // MainClass m;
   // ClassDeclList cl;
   public void visit(Program n) {
     // Data segment 
-    out.println(
-      ".data\n" +
-        "newline: .asciiz \"\\n\"\n" +    // to be used by cgen for "System.out.println()"
-        "msg_index_out_of_bound_exception: .asciiz \"Index out of bound exception\\n\"\n" +
-        "msg_null_pointer_exception: .asciiz \"Null pointer exception\\n\"\n" +
-        "\n" +
-        ".text\n"
-    );
+    code.add(cgen_data());
 
     n.m.accept(this);
 
-    out.println(  // Code to terminate the program
-      "# exit\n" +
-        "li $v0, 10\n" +
-        "syscall\n"
-    );
+    // Code to terminate the program
+    asm.comment("exit");
+    asm.li(V0, 10);
+    asm.syscall();
+    asm.blank();
 
     // Code for all methods
     for (int i = 0; i < n.cl.size(); i++) {
@@ -44,7 +76,7 @@ public class CodeGenVisitor extends DepthFirstVisitor {
     }
 
     // Code for some utility functions 
-    cgen_supporting_functions();
+    code.add(cgen_supporting_functions());
   }
 
   // Identifier i1,i2;
@@ -53,58 +85,60 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(MainClass n) {
     String i1 = n.i1.toString();
 
-    currClass = symbolTable.getClass(i1);
-    currMethod = currClass.getMethod(new ArrayList<>(), "main");   // This is a hack (treat main() as instance method.)
+    context.currClass = symbolTable.getClass(i1);
+    context.currMethod = context.currClass.getMethod(new ArrayList<>(), "main");   // This is a hack (treat main() as instance method.)
 
     // Can ignore the parameter of main()
 
-    // Info about local variables are kept in "currMethod"
+    begin("main");
+
+    // Info about local variables are kept in "context.currMethod"
     for (int i = 0; i < n.vl.size(); i++) {
       n.vl.elementAt(i).accept(this);
     }
 
     // Generate code to reserve space for local variables in stack
-    // Optionally, generate code to reserve space for temps
+    // (local k is at -4k($fp), as in a method frame), and for the temps
+    // with -fframe-temps
+    numOfLocals = context.currMethod.vars.size();
+    numOfTemps = 0;
+    int frameSize = numOfLocals + maxTemps(n.s);
+    if (frameSize > 0) {
+      asm.move(FP, SP);
+      asm.addiu(SP, SP, -(1 + frameSize) * 4);
+    }
 
-    n.s.accept(this);
+    cgen(n.s);
   }
 
   // Identifier i;
   // VarDeclList vl;
   // MethodDeclList ml;
   public void visit(ClassDeclSimple n) {
-    currClass = symbolTable.getClass(n.i.s);
-
-    int numOfFields = currClass.fields.size();
-
-    // _alloc_Foo
-    // $v0 = object address
-
-    out.print("" +
-      "_alloc_" + currClass.getId() + ":\n" +
-
-      "li $a0, " + (1 + numOfFields) * 4 + "\n" +
-      "li $v0, 9\n" +
-      "syscall\n" +
+    cgenClass(n.i.s, n.ml);
+  }
 
-      // Store size
-      "sw $a0, 0($v0)\n");
+  // Identifier i;
+  // Identifier j;
+  // VarDeclList vl;
+  // MethodDeclList ml;
+  public void visit(ClassDeclExtends n) {
+    cgenClass(n.i.s, n.ml);
+  }
 
-    // Initialize fields
-    out.print("li $t0, 0\n");
-    for (int i = 0; i < numOfFields; i++) {
-      out.print("sw $t0, " + (i * 4 + 4) + "($v0)\n");
-    }
+  // cgen: the vtable, the allocator and the methods of class "id"
+  private void cgenClass(String id, MethodDeclList ml) {
+    context.currClass = symbolTable.getClass(id);
 
-    // Return
-    out.print("" +
-      "jr $ra\n\n");
+    // _vtable_Foo, _alloc_Foo
+    code.add(cgen_vtable(context.currClass));
+    code.add(cgen_alloc(context.currClass));
 
-    for (int i = 0; i < n.ml.size(); i++) {
-      n.ml.elementAt(i).accept(this);
+    for (int i = 0; i < ml.size(); i++) {
+      ml.elementAt(i).accept(this);
     }
 
-    currClass = null;
+    context.currClass = null;
   }
 
   // Type t;
@@ -121,15 +155,25 @@ public class CodeGenVisitor extends DepthFirstVisitor {
     for (int i = 0; i < n.fl.size(); i++) {
       paramTypes.add(n.fl.elementAt(i).t);
     }
-    currMethod = currClass.getMethod(paramTypes, id);
-
-    out.print("" +
-      "_fun_" + currMethod.getUniqueId() + ":\n" +
-      "move $fp, $sp\n" +
-      "sw $ra, 0($sp)\n" +
-      "addiu $sp, $sp, -4\n");
+    context.currMethod = context.currClass.getMethod(paramTypes, id);
+
+    begin("_fun_" + context.currMethod.getUniqueId());
+    asm.label("_fun_" + context.currMethod.getUniqueId());
+    // Frame: ..., arguments, 0($fp) = $ra, -4k($fp) = local k, temps
+    numOfLocals = context.currMethod.vars.size();
+    numOfTemps = 0;
+    frameSize = (1 + numOfLocals + maxTemps(n)) * 4;
+    asm.move(FP, SP);
+    asm.sw(RA, 0, FP);
+    asm.addiu(SP, SP, -frameSize);
+    tailAssigns.clear();
+    if (tailCalls) {
+      asm.label("_body_" + context.currMethod.getUniqueId());
+      if (n.e instanceof IdentifierExp && n.sl.size() > 0)
+        findTailAssigns(n.sl.elementAt(n.sl.size() - 1), ((IdentifierExp) n.e).s);
+    }
 
-    out.print("# cgen(body)\n");
+    asm.comment("cgen(body)");
 
     // vl
     for (int i = 0; i < n.vl.size(); i++) {
@@ -138,80 +182,85 @@ public class CodeGenVisitor extends DepthFirstVisitor {
 
     // sl
     for (int i = 0; i < n.sl.size(); i++) {
-      n.sl.elementAt(i).accept(this);
+      cgen(n.sl.elementAt(i));
     }
 
     // return
+    if (tailCalls && n.e instanceof Call && tailCall((Call) n.e)) {
+      asm.comment("cgen(body) end");
+      asm.blank();
+      return;
+    }
     n.e.accept(this);
-    out.print("move $v0, $a0\n");
+    asm.move(V0, A0);
 
-    out.print("# cgen(body) end\n");
+    asm.comment("cgen(body) end");
 
     // The first one is the object
-    int numOfArguments = 1 + currMethod.params.size(); // With object itselft as the first argument
-    out.print("" +
-      "lw $ra, 4($sp)\n" +
-      "addiu $sp, $sp, " + (numOfArguments * 4 + 8) + "\n" +
-      "lw $fp, 0($sp)\n" +
-      "jr $ra\n\n");
+    int numOfArguments = 1 + context.currMethod.params.size(); // With object itselft as the first argument
+    asm.lw(RA, 0, FP);
+    asm.addiu(SP, FP, numOfArguments * 4 + 4);
+    asm.lw(FP, 0, SP);
+    asm.jr(RA);
+    asm.blank();
   }
 
-  private static int numOfIf = 0;
+  // StatementList sl;
+  // cgen: { sl }
+  public void visit(Block n) {
+    for (int i = 0; i < n.sl.size(); i++) {
+      cgen(n.sl.elementAt(i));
+    }
+  }
 
   // Exp e;
   // Statement s1,s2;
   // cgen: if (e) s1 else s2
   public void visit(If n) {
-    n.e.accept(this);
-
-    String trueBranchName = "_true_" + (numOfIf);
+    int numOfIf = context.newLabelNumber("if");
     String falseBranchName = "_false_" + (numOfIf);
     String endIfBranchName = "_end_if_" + (numOfIf);
-    numOfIf++;
 
-    out.print("" +
-      "# public void visit(If n)\n" +
-      "bne $a0, $0, " + trueBranchName + " \n" +
-      "beq $a0, $0, " + falseBranchName + " \n\n");
+    asm.comment("public void visit(If n)");
+    branch(n.e, falseBranchName, false);
+    asm.blank();
 
-    out.print("" +
-      "# true branch\n" +
-      trueBranchName + ":\n");
-    n.s1.accept(this);
-    out.print("j " + endIfBranchName + "\n\n");
+    asm.comment("true branch");
+    cgen(n.s1);
+    asm.j(endIfBranchName);
+    asm.blank();
 
-    out.println("" +
-      "# false branch\n" +
-      falseBranchName + ":\n");
-    n.s2.accept(this);
-    out.print("j " + endIfBranchName + "\n\n");
+    asm.comment("false branch");
+    asm.label(falseBranchName);
+    asm.blank();
+    cgen(n.s2);
+    asm.blank();
 
-    out.print(endIfBranchName + ":\n\n");
+    asm.label(endIfBranchName);
+    asm.blank();
   }
 
-  private static int numOfWhile = 0;
-
   // Exp e;
   // Statement s;
   // cgen: while (e) s;
+  // (the condition is tested at the bottom, one branch per iteration)
   public void visit(While n) {
+    int numOfWhile = context.newLabelNumber("while");
     String whileBranchName = "_while_" + (numOfWhile);
-    String endWhileBranchName = "_end_while_" + (numOfWhile);
-    numOfWhile++;
+    String conditionBranchName = "_while_cond_" + (numOfWhile);
 
-    out.print("" +
-      "# public void visit(While n)\n" +
-      whileBranchName + ":\n");
+    asm.comment("public void visit(While n)");
+    asm.j(conditionBranchName);
+    asm.label(whileBranchName);
 
-    n.e.accept(this);
-    out.print("beq $a0, $0, " + endWhileBranchName + " # while condition\n");
+    cgen(n.s);
 
-    n.s.accept(this);
-    out.print("j " + whileBranchName + " # while jump\n");
+    asm.comment("while condition");
+    asm.label(conditionBranchName);
+    branch(n.e, whileBranchName, true);
 
-    out.print(endWhileBranchName + ":\n");
-
-    out.print("# public void visit(While n) end\n\n");
+    asm.comment("public void visit(While n) end");
+    asm.blank();
   }
 
   // Exp e;
@@ -219,108 +268,101 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(Print n) {
     n.e.accept(this);
 
-    out.print("jal _print_int\n");
+    asm.jal("_print_int");
   }
 
   // Identifier i;
   // Exp e;
   // cgen: i = e
   public void visit(Assign n) {
-    out.print("" +
-      "# public void visit(Assign n)\n");
+    asm.comment("public void visit(Assign n)");
+    if (tailAssigns.contains(n) && tailCall((Call) n.e))
+      return;
 
-    if (currMethod.containsParam(n.i.s) || currMethod.containsVar(n.i.s)) {
+    if (context.currMethod.containsParam(n.i.s) || context.currMethod.containsVar(n.i.s)) {
       int internalId = getVarInternalId(n.i.s);
 
       // Evaluate the assigning value
       n.e.accept(this);
 
-      out.print("sw $a0, " + (internalId) * 4 + "($fp)\n");
+      asm.sw(A0, internalId * 4, FP);
     } else {
       n.e.accept(this);
 
-      out.print("" +
-        "lw $t0, " + (currMethod.params.size() * 4 + 4) + "($fp)\n" +
-        "sw $a0, " + (currClass.getVar(n.i.s).getInternalId() * 4) + "($t0)\n");
+      asm.lw(T0, context.currMethod.params.size() * 4 + 4, FP);
+      asm.sw(A0, context.currClass.getFieldOffset(n.i.s), T0);
     }
 
-    out.print("" +
-      "# public void visit(Assign n) end\n\n");
+    asm.comment("public void visit(Assign n) end");
+    asm.blank();
   }
 
   // Identifier i;
   // Exp e1,e2;
   // cgen: i[e1] = e2
   public void visit(ArrayAssign n) {
-    out.print("# public void visit(ArrayAssign n)\n");
+    asm.comment("public void visit(ArrayAssign n)");
 
-    // Evaluate the assigning value
+    // Evaluate the assigning value (kept in the stack while evaluating e1)
     n.e2.accept(this);
-    out.print("move $a2, $a0 # Store assigning value in $a2\n");
+    reserveTemps(1);
+    storeTemp(A0, 1);
 
     // Calculate the relative address
     n.e1.accept(this);
-    out.print("" +
-      "addi $a0, $a0, 1 # $a0 is the calculated index\n" +
-
-      "li $t1, 4\n" +
-      "mul $t1, $t1, $a0 # multiply 4 as words and store in $t1\n");
+    asm.comment("Load assigning value in $a2");
+    loadTemp(A2, 1);
+    releaseTemps(1);
+    asm.comment("$a0 is the index, multiply 4 as words and store in $t1");
+    asm.sll(T1, A0, 2);
 
-    if (currMethod.containsParam(n.i.s) || currMethod.containsVar(n.i.s)) {
+    if (context.currMethod.containsParam(n.i.s) || context.currMethod.containsVar(n.i.s)) {
       int internalId = getVarInternalId(n.i.s);
 
       // Save
-      out.print("" +
-        "lw $a1, " + (internalId) * 4 + "($fp) # base array address\n" +
-        "add $t0, $a1, $t1 # calculate the actual address\n" +
-
-        "sw $a2, 0($t0) # save value\n");
+      asm.comment("base array address");
+      asm.lw(A1, internalId * 4, FP);
     } else {
-      out.print("" +
-        "lw $t0, " + (currMethod.params.size() * 4 + 4) + "($fp)\n" +
-        "lw $a1, " + (currClass.getVar(n.i.s).getInternalId() * 4) + "($t0) # base array address\n" +
-        "add $t0, $a1, $t1 # calculate the actual address\n" +
-
-        "sw $a2, 0($t0) # save value\n");
+      asm.lw(T0, context.currMethod.params.size() * 4 + 4, FP);
+      asm.comment("base array address");
+      asm.lw(A1, context.currClass.getFieldOffset(n.i.s), T0);
     }
 
-    out.print("# public void visit(ArrayAssign n) end\n\n");
+    checkIndex(A1, A0, T2, n.needsCheck);
+
+    asm.comment("calculate the actual address and save value (after the length)");
+    asm.add(T0, A1, T1);
+    asm.sw(A2, 4, T0);
+
+    asm.comment("public void visit(ArrayAssign n) end");
+    asm.blank();
   }
 
   // Exp e1,e2;
   // cgen: e1 && e2
+  // (e2 is only evaluated if e1 is true)
   public void visit(And n) {
+    String endAndName = "_end_and_" + context.newLabelNumber("and");
+
     n.e1.accept(this);
 
-    out.print("" +
-      "# public void visit(And n)\n" +
-      "addiu $sp, $sp, -4\n" +
-      "sw $a0, 4($sp)\n");
+    asm.comment("public void visit(And n)");
+    asm.beq(A0, ZERO, endAndName);
 
     n.e2.accept(this);
 
-    out.print("" +
-      "lw $t0, 4($sp)\n" +
-      "and $a0, $t0, $a0\n" +
-      "addiu $sp, $sp, 4\n\n");
+    asm.label(endAndName);
+    asm.blank();
   }
 
   // Exp e1,e2;
   // cgen: e1 < e2
   public void visit(LessThan n) {
-    n.e1.accept(this);
-
-    out.print("" +
-      "# public void visit(LessThan n)\n" +
-      "addiu $sp, $sp, -4\n" +
-      "sw $a0, 4($sp)\n");
+    int[] r = compare(n.e1, n.e2);
 
-    n.e2.accept(this);
-
-    out.print("" +
-      "lw $t0, 4($sp)\n" +
-      "slt $a0, $t0, $a0\n" +
-      "addiu $sp, $sp, 4\n\n");
+    asm.comment("public void visit(LessThan n)");
+    asm.slt(A0, r[0], r[1]);
+    asm.blank();
   }
 
   // Exp e1,e2;
@@ -328,17 +370,16 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(Plus n) {
     n.e1.accept(this);
 
-    out.print("" +
-      "# public void visit(Plus n)\n" +
-      "addiu $sp, $sp, -4\n" +
-      "sw $a0, 4($sp)\n");
+    asm.comment("public void visit(Plus n)");
+    reserveTemps(1);
+    storeTemp(A0, 1);
 
     n.e2.accept(this);
 
-    out.print("" +
-      "lw $t0, 4($sp)\n" +
-      "add $a0, $t0, $a0\n" +
-      "addiu $sp, $sp, 4\n\n");
+    loadTemp(T0, 1);
+    asm.addu(A0, T0, A0);
+    releaseTemps(1);
+    asm.blank();
   }
 
   // Exp e1,e2;
@@ -346,55 +387,76 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(Minus n) {
     n.e1.accept(this);
 
-    out.print("" +
-      "# public void visit(Minus n)\n" +
-      "addiu $sp, $sp, -4\n" +
-      "sw $a0, 4($sp)\n");
+    asm.comment("public void visit(Minus n)");
+    reserveTemps(1);
+    storeTemp(A0, 1);
 
     n.e2.accept(this);
 
-    out.print("" +
-      "lw $t0, 4($sp)\n" +
-      "sub $a0, $t0, $a0\n" +
-      "addiu $sp, $sp, 4\n\n");
+    loadTemp(T0, 1);
+    asm.subu(A0, T0, A0);
+    releaseTemps(1);
+    asm.blank();
   }
 
   // Exp e1,e2;
   // cgen: e1 * e2
   public void visit(Times n) {
+    // A constant operand: shifts and adds instead of mul (see mips.Multiply)
+    if (n.e2 instanceof IntegerLiteral) {
+      multiplyByConstant(n.e1, ((IntegerLiteral) n.e2).i);
+      return;
+    }
+    if (n.e1 instanceof IntegerLiteral) {
+      multiplyByConstant(n.e2, ((IntegerLiteral) n.e1).i);
+      return;
+    }
+
     n.e1.accept(this);
 
-    out.print("" +
-      "# public void visit(Times n)\n" +
-      "addiu $sp, $sp, -4\n" +
-      "sw $a0, 4($sp)\n");
+    asm.comment("public void visit(Times n)");
+    reserveTemps(1);
+    storeTemp(A0, 1);
 
     n.e2.accept(this);
 
-    out.print("" +
-      "lw $t0, 4($sp)\n" +
-      "mul $a0, $t0, $a0\n" +
-      "addiu $sp, $sp, 4\n\n");
+    loadTemp(T0, 1);
+    asm.mul(A0, T0, A0);
+    releaseTemps(1);
+    asm.blank();
+  }
+
+  // cgen: e * c
+  private void multiplyByConstant(Exp e, int c) {
+    e.accept(this);
+
+    asm.comment("public void visit(Times n)");
+    Multiply.byConstant(asm, A0, A0, c, T0);
+    asm.blank();
   }
 
   // Exp e1,e2;
   // cgen: e1[e2]
   public void visit(ArrayLookup n) {
-    // $a1 is the base address
+    // The base address (kept in the stack while evaluating e2)
     n.e1.accept(this);
-    out.print("" +
-      "move $a1, $a0\n");
+    reserveTemps(1);
+    storeTemp(A0, 1);
 
     // $a0 is the index
     n.e2.accept(this);
 
-    out.print("" +
-      "# public void visit(ArrayLookup n)\n" +
-      "addi $a0, $a0, 1 # $a0 is the calculated index\n" +
-      "li $t1, 4\n" +
-      "mul $t1, $t1, $a0 # multiply 4 as words\n" +
-      "add $t0, $a1, $t1\n" +
-      "lw $a0, 0($t0) # load value\n\n");
+    asm.comment("public void visit(ArrayLookup n)");
+    asm.comment("$a1 is the base address");
+    loadTemp(A1, 1);
+    releaseTemps(1);
+    checkIndex(A1, A0, T1, n.needsCheck);
+    asm.comment("$a0 is the index, multiply 4 as words");
+    asm.sll(T1, A0, 2);
+    asm.add(T0, A1, T1);
+    asm.comment("load value (after the length)");
+    asm.lw(A0, 4, T0);
+    asm.blank();
   }
 
   // Exp e;
@@ -402,12 +464,11 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(ArrayLength n) {
     // $a1 is the base address
     n.e.accept(this);
-    out.print("" +
-      "move $a1, $a0\n");
+    asm.move(A1, A0);
 
-    out.print("" +
-      "# public void visit(ArrayLength n)\n" +
-      "lw $a0, 0($a1)\n\n");
+    asm.comment("public void visit(ArrayLength n)");
+    asm.lw(A0, 0, A1);
+    asm.blank();
   }
 
   // Exp e;
@@ -415,40 +476,143 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   // ExpList el;
   // cgen: e.i(el)
   public void visit(Call n) {
-    ArrayList<Type> paramTypes = new ArrayList<>();
-    for (int i = 0; i < n.el.size(); i++) {
-      Exp param = n.el.elementAt(i);
-      paramTypes.add(getExpType(param));
+    // Resolved by TypeCheckExpVisitor
+    Method method = n.method;
+    Method direct = directTarget(n);
+
+    asm.comment("public void visit(Call n)");
+    if (frameTemps) {
+      callWithFrameTemps(n);
+      return;
     }
-
-    Class clazz = symbolTable.getClass(((IdentifierType) getExpType(n.e)).s);
-    Method method = clazz.getMethod(paramTypes, n.i.s);
-
-    out.print("" +
-      "# public void visit(Call n)\n" +
-      "sw $fp, 0($sp)\n" +
-      "addiu $sp, $sp, -4\n"
-    );
+    asm.sw(FP, 0, SP);
+    asm.addiu(SP, SP, -4);
 
     // Get object address in $a0
     n.e.accept(this);
-    out.print("" +
-      "sw $a0, 0($sp) # get object address\n" +
-      "addiu $sp, $sp, -4\n");
+    if (direct != null)
+      nullCheck(n.e, A0);
+    asm.comment("get object address");
+    asm.sw(A0, 0, SP);
+    asm.addiu(SP, SP, -4);
 
     // Reverse order
     for (int i = n.el.size() - 1; i >= 0; i--) {
       n.el.elementAt(i).accept(this);
 
-      out.print("" +
-        "sw $a0, 0($sp) # formal " + i + "\n" +
-        "addiu $sp, $sp, -4\n");
+      asm.sw(A0, 0, SP);
+      asm.addiu(SP, SP, -4);
+    }
+
+    if (direct != null)
+      asm.jal("_fun_" + direct.getUniqueId());
+    else
+      callVirtual(n, false);
+    asm.move(A0, V0);
+    asm.comment("public void visit(Call n) end");
+    asm.blank();
+  }
+
+  // cgen: e.i(el), the caller's $fp, the object and the arguments stored
+  // in the temps where the callee expects them (above its $fp)
+  private void callWithFrameTemps(Call n) {
+    Method direct = directTarget(n);
+    int base = numOfTemps;
+    reserveTemps(1);
+    storeTemp(FP, 1);
+
+    n.e.accept(this);
+    if (direct != null)
+      nullCheck(n.e, A0);
+    reserveTemps(1);
+    storeTemp(A0, 1);
+
+    for (int i = n.el.size() - 1; i >= 0; i--) {
+      n.el.elementAt(i).accept(this);
+      reserveTemps(1);
+      storeTemp(A0, 1);
+    }
+
+    // The callee's $fp (= $sp) is the word below the first argument.
+    // It leaves $sp at the saved $fp, below the temps still in use.
+    asm.addiu(SP, FP, tempOffset(numOfTemps) - 4);
+    numOfTemps = base;
+
+    if (direct != null)
+      asm.jal("_fun_" + direct.getUniqueId());
+    else
+      callVirtual(n, false);
+    asm.move(A0, V0);
+    asm.comment("public void visit(Call n) end");
+    asm.blank();
+  }
+
+  // Collect the assignments r = e.i(el) to the local or parameter r that
+  // are the last statement run (from s) before "return r"
+  private void findTailAssigns(Statement s, String r) {
+    if (s instanceof Assign) {
+      Assign assign = (Assign) s;
+      if (assign.i.s.equals(r) && assign.e instanceof Call
+          && (context.currMethod.containsParam(r) || context.currMethod.containsVar(r)))
+        tailAssigns.add(assign);
+    } else if (s instanceof If) {
+      findTailAssigns(((If) s).s1, r);
+      findTailAssigns(((If) s).s2, r);
+    } else if (s instanceof Block) {
+      StatementList sl = ((Block) s).sl;
+      if (sl.size() > 0)
+        findTailAssigns(sl.elementAt(sl.size() - 1), r);
+    }
+  }
+
+  // cgen: return e.i(el), or r = e.i(el) right before "return r"
+  // (-ftail-calls), in the frame of the method: the object and the arguments replace its own (the callee's frame starts
+  // where this one did, below the caller's $fp), then the callee is jumped
+  // to with the $ra of the method. A call of the method itself jumps back
+  // to its body. Return false (generating nothing) if the callee takes
+  // more arguments than the method.
+  private boolean tailCall(Call n) {
+    Method direct = directTarget(n);
+    int numOfParams = context.currMethod.params.size();
+    int numOfArgs = n.el.size();
+    if (numOfArgs > numOfParams)
+      return false;
+
+    asm.comment("tail call");
+    int base = numOfTemps;
+    n.e.accept(this);
+    if (direct != null)
+      nullCheck(n.e, A0);
+    reserveTemps(1);
+    storeTemp(A0, 1);
+    for (int i = numOfArgs - 1; i >= 0; i--) {
+      n.el.elementAt(i).accept(this);
+      reserveTemps(1);
+      storeTemp(A0, 1);
+    }
+
+    // Argument k at 4k($fp), shifted up when there are fewer; the object
+    // stays below the caller's $fp
+    int shift = (numOfParams - numOfArgs) * 4;
+    for (int k = 1; k <= numOfArgs + 1; k++) {
+      loadTemp(T0, k);
+      asm.sw(T0, shift + 4 * k, FP);
     }
+    numOfTemps = base;
 
-    out.print("" +
-      "jal " + "_fun_" + method.getUniqueId() + "\n" +
-      "move $a0, $v0\n" +
-      "# public void visit(Call n) end\n\n");
+    if (direct == context.currMethod) {
+      if (!frameTemps)
+        asm.addiu(SP, FP, -frameSize);
+      asm.j("_body_" + direct.getUniqueId());
+      return true;
+    }
+    asm.lw(RA, 0, FP);
+    asm.addiu(SP, FP, shift);
+    if (direct != null)
+      asm.j("_fun_" + direct.getUniqueId());
+    else
+      callVirtual(n, true);
+    return true;
   }
 
   // Exp e;
@@ -456,10 +620,9 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(NewArray n) {
     n.e.accept(this);
 
-    out.print("" +
-      "# public void visit(NewArray n)\n" +
-      "jal _alloc_int_array\n" +
-      "move $a0, $v0\n");
+    asm.comment("public void visit(NewArray n)");
+    asm.jal("_alloc_int_array");
+    asm.move(A0, V0);
   }
 
   // Identifier i;
@@ -467,9 +630,8 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(NewObject n) {
     Class newObjectClass = symbolTable.getClass(n.i.s);
 
-    out.print("" +
-      "jal _alloc_" + newObjectClass.getId() + "\n" +
-      "move $a0, $v0\n");
+    asm.jal("_alloc_" + newObjectClass.getId());
+    asm.move(A0, V0);
   }
 
   // Exp e;
@@ -477,53 +639,120 @@ public class CodeGenVisitor extends DepthFirstVisitor {
   public void visit(Not n) {
     n.e.accept(this);
 
-    out.print("" +
-      "# public void visit(Not n)\n" +
-      "li $t0, 1\n" +
-      "not $a0, $a0\n" +
-      "and $a0, $a0, $t0\n");
+    asm.comment("public void visit(Not n)");
+    asm.li(T0, 1);
+    asm.not(A0, A0);
+    asm.and(A0, A0, T0);
   }
 
   // cgen: this
   public void visit(This n) {
+    asm.comment("public void visit(This n)");
+    asm.lw(A0, context.currMethod.params.size() * 4 + 4, FP);
   }
 
   // int i;
   // cgen: Load immediate the value of n.i
   public void visit(IntegerLiteral n) {
-    out.print("" +
-      "# public void visit(IntegerLiteral n)\n" +
-      "li $a0, " + n.i + "\n");
+    asm.comment("public void visit(IntegerLiteral n)");
+    asm.li(A0, n.i);
   }
 
   // cgen: Load immeidate the value of "true"
   public void visit(True n) {
-    out.print("" +
-      "# public void visit(True n)\n" +
-      "li $a0, 1\n");
+    asm.comment("public void visit(True n)");
+    asm.li(A0, 1);
   }
 
   // cgen: Load immeidate the value of "false"
   public void visit(False n) {
-    out.print("" +
-      "# public void visit(False n)\n" +
-      "li $a0, 0\n");
+    asm.comment("public void visit(False n)");
+    asm.li(A0, 0);
   }
 
   // String s;
   // cgen: Load the value of the variable n.s (which can be a local variable, parameter, or field)
   public void visit(IdentifierExp n) {
-    if (currMethod.containsParam(n.s) || currMethod.containsVar(n.s)) {
+    asm.comment("public void visit(IdentifierExp n)");
+    if (context.currMethod.containsParam(n.s) || context.currMethod.containsVar(n.s)) {
       int internalId = getVarInternalId(n.s);
-      out.print("lw $a0, " + (internalId * 4) + "($fp) # public void visit(IdentifierExp n)\n");
+      asm.lw(A0, internalId * 4, FP);
     } else {
-      out.print("lw $t0, " + (currMethod.params.size() * 4 + 4) + "($fp) # public void visit(IdentifierExp n)\n");
-      out.print("lw $a0, " + (currClass.getVar(n.s).getInternalId() * 4) + "($t0)\n");
+      asm.lw(T0, context.currMethod.params.size() * 4 + 4, FP);
+      asm.lw(A0, context.currClass.getFieldOffset(n.s), T0);
     }
   }
 
-  private void cgen_supporting_functions() {
-    out.println("" +
+  // The data segment (the first routine of every program)
+  static InstrList cgen_data() {
+    InstrList asm = new InstrList("data");
+    asm.text(
+      ".data\n" +
+        "newline: .asciiz \"\\n\"\n" +    // to be used by cgen for "System.out.println()"
+        "msg_index_out_of_bound_exception: .asciiz \"Index out of bound exception\\n\"\n" +
+        "msg_null_pointer_exception: .asciiz \"Null pointer exception\\n\"\n" +
+        "msg_runtime_exception: .asciiz \"Runtime exception\\n\"\n" +
+        "\n" +
+        ".text\n\n"
+    );
+    return asm;
+  }
+
+  // _vtable_Foo: the addresses of the methods of Foo (own and inherited),
+  // in the order of Method.getVtableIndex()
+  static InstrList cgen_vtable(Class c) {
+    InstrList asm = new InstrList("_vtable_" + c.getId());
+    asm.text(".data\n");
+    asm.label("_vtable_" + c.getId());
+    for (Method m : c.getVtable()) {
+      asm.word("_fun_" + m.getUniqueId());
+    }
+    asm.text(".text\n\n");
+    return asm;
+  }
+
+  // _alloc_Foo
+  // $v0 = object address
+  static InstrList cgen_alloc(Class c) {
+    int numOfFields = c.getNumOfFields();
+
+    InstrList asm = new InstrList("_alloc_" + c.getId());
+    asm.label("_alloc_" + c.getId());
+
+    asm.li(A0, (1 + numOfFields) * 4);
+    asm.li(V0, 9);
+    asm.syscall();
+
+    // Store the vtable
+    asm.la(T0, "_vtable_" + c.getId());
+    asm.sw(T0, 0, V0);
+
+    // Initialize fields (own and inherited)
+    for (int i = 0; i < numOfFields; i++) {
+      asm.sw(ZERO, i * 4 + 4, V0);
+    }
+
+    // Return
+    asm.jr(RA);
+    asm.blank();
+    return asm;
+  }
+
+  // _print_int, _alloc_int_array and the exception handlers.
+  //
+  // Accesses through null are not checked: an array access (or a.length)
+  // loads from a small address, and MARS raises an address error that the
+  // kernel handler at 0x80000180 turns into _null_pointer_exception. So
+  // does a call through the vtable of a null object; only the direct calls,
+  // which do not touch the object, check it (see nullCheck()).
+  //
+  // An element is at 4 + 4 * index from the array, so null[i] is below
+  // 0x00400000 only for i < 0xFFFFF. Without -fbounds-check (which loads
+  // the length at offset 0 first), a larger index is a "Runtime exception",
+  // or no fault at all once the address reaches the data segment.
+  static InstrList cgen_supporting_functions() {
+    InstrList asm = new InstrList("runtime");
+    asm.text("" +
       "_print_int:      # System.out.println(int)\n" +
 
       "li $v0, 1      # System service = 1\n" +
@@ -533,30 +762,58 @@ public class CodeGenVisitor extends DepthFirstVisitor {
       "la $a0, newline\n" +
       "syscall\n" +
 
-      "jr $ra\n"
+      "jr $ra\n\n"
     );
 
-    out.println("" +
+    asm.text("" +
       "_null_pointer_exception:\n" +
       "la $a0, msg_null_pointer_exception\n" +
       "li $a1, 23\n" +
       "li $v0, 4\n" +
       "syscall\n" +
       "li $v0, 10\n" +
-      "syscall\n"
+      "syscall\n\n"
     );
 
-    out.println("" +
+    asm.text("" +
+      "_runtime_exception:\n" +
+      "la $a0, msg_runtime_exception\n" +
+      "li $v0, 4\n" +
+      "syscall\n" +
+      "li $v0, 10\n" +
+      "syscall\n\n"
+    );
+
+    asm.text("" +
+      ".ktext 0x80000180  # Exception handler\n" +
+      "mfc0 $k0, $13      # Cause\n" +
+      "srl $k0, $k0, 2\n" +
+      "andi $k0, $k0, 31  # Exception code: 4 (load) or 5 (store) for an address error\n" +
+      "addi $k0, $k0, -4\n" +
+      "sltiu $k0, $k0, 2\n" +
+      "mfc0 $k1, $8       # BadVAddr: below the text segment (0x00400000) through null\n" +
+      "srl $k1, $k1, 22\n" +
+      "sltiu $k1, $k1, 1\n" +
+      "and $k0, $k0, $k1\n" +
+      "la $k1, _null_pointer_exception\n" +
+      "bne $k0, $0, _exception_handler_end\n" +
+      "la $k1, _runtime_exception\n" +
+      "_exception_handler_end:\n" +
+      "jr $k1\n" +
+      ".text\n\n"
+    );
+
+    asm.text("" +
       "_array_index_out_of_bound_exception:\n" +
       "la $a0, msg_index_out_of_bound_exception\n" +
       "li $a1, 29\n" +
       "li $v0, 4\n" +
       "syscall\n" +
       "li $v0, 10\n" +
-      "syscall\n"
+      "syscall\n\n"
     );
 
-    out.println("" +
+    asm.text("" +
       "_alloc_int_array: # new int [$a0]\n" +
       "addi $a2, $a0, 0  # Save length in $a2\n" +
       "addi $a0, $a0, 1  # One more word to store the length\n" +
@@ -576,28 +833,229 @@ public class CodeGenVisitor extends DepthFirstVisitor {
       "" +
       "_alloc_int_array_loop_end:\n" +
       "\n" +
-      "jr $ra\n"
+      "jr $ra\n\n"
     );
+    return asm;
+  }
+
+  // The method that a call runs whatever the class of the receiver (with
+  // -fdevirtualize, by class hierarchy analysis), or null if it must be
+  // found in the vtable
+  protected Method directTarget(Call n) {
+    if (!devirtualize)
+      return null;
+    return symbolTable.getOnlyImplementation(n.method, n.e.type);
+  }
+
+  // cgen: jalr to the slot of the method in the vtable of the object,
+  // stored below the arguments at $sp. Loading the vtable of a null object
+  // faults (see cgen_supporting_functions()).
+  //
+  // With -finline-caches, the vtable is first compared with the one of the
+  // class the call site expects (see SymbolTable.getCachedClass); on a hit
+  // the method of that class is called with jal, and the slot is only
+  // loaded on a miss.
+  //
+  // A tail call (see tailCall()) jumps to the slot instead, without the
+  // cache: a hit would save no more than the load of the slot.
+  private void callVirtual(Call n, boolean tail) {
+    int slot = n.method.getVtableIndex();
+    asm.lw(T0, (n.el.size() + 1) * 4, SP);
+    asm.lw(T0, 0, T0);
+
+    Class cached = inlineCaches && !tail ? symbolTable.getCachedClass(n.e.type) : null;
+    if (cached == null) {
+      asm.lw(T0, slot * 4, T0);
+      if (tail)
+        asm.jr(T0);
+      else
+        asm.jalr(T0);
+      return;
+    }
+
+    int numOfCache = context.newLabelNumber("ic");
+    String hitName = "_ic_hit_" + numOfCache;
+    String endName = "_ic_end_" + numOfCache;
+    asm.la(T1, "_vtable_" + cached.getId());
+    asm.beq(T0, T1, hitName);
+    asm.lw(T0, slot * 4, T0);
+    asm.jalr(T0);
+    asm.j(endName);
+    asm.label(hitName);
+    asm.jal("_fun_" + cached.getVtable().get(slot).getUniqueId());
+    asm.label(endName);
+  }
+
+  // cgen: go to _null_pointer_exception if the receiver "e" (in register
+  // "reg") is null; "this" and new objects are never null
+  protected void nullCheck(Exp e, int reg) {
+    if (!(e instanceof This || e instanceof NewObject))
+      asm.beq(reg, ZERO, "_null_pointer_exception");
+  }
+
+  // cgen: branch to "label" if the condition e evaluates to "when", fall
+  // through otherwise. && and ! only direct the branches, and e1 < e2
+  // compares its operands with blt/bge instead of computing a 0/1 value.
+  protected void branch(Exp e, String label, boolean when) {
+    if (e instanceof And) {
+      And and = (And) e;
+      if (when) {
+        String skipName = "_skip_and_" + context.newLabelNumber("and");
+        branch(and.e1, skipName, false);
+        branch(and.e2, label, true);
+        asm.label(skipName);
+      } else {
+        branch(and.e1, label, false);
+        branch(and.e2, label, false);
+      }
+    } else if (e instanceof Not) {
+      branch(((Not) e).e, label, !when);
+    } else if (e instanceof LessThan) {
+      int[] r = compare(((LessThan) e).e1, ((LessThan) e).e2);
+      if (when)
+        asm.blt(r[0], r[1], label);
+      else
+        asm.bge(r[0], r[1], label);
+    } else if (e instanceof True || e instanceof False) {
+      if (e instanceof True == when)
+        asm.j(label);
+    } else {
+      e.accept(this);
+      if (when)
+        asm.bne(A0, ZERO, label);
+      else
+        asm.beq(A0, ZERO, label);
+    }
+  }
+
+  // Evaluate the operands of a comparison and return the registers holding
+  // them. A constant or a local variable on either side is loaded after the
+  // other operand instead of keeping a value in a temporary (evaluating an
+  // expression cannot change a local variable).
+  protected int[] compare(Exp e1, Exp e2) {
+    if (isSimple(e1) && !isSimple(e2)) {
+      e2.accept(this);
+      loadSimple(T0, e1);
+      return new int[] { T0, A0 };
+    }
+    e1.accept(this);
+    if (isSimple(e2)) {
+      loadSimple(T0, e2);
+      return new int[] { A0, T0 };
+    }
+
+    reserveTemps(1);
+    storeTemp(A0, 1);
+    e2.accept(this);
+    loadTemp(T0, 1);
+    releaseTemps(1);
+    return new int[] { T0, A0 };
+  }
+
+  // cgen: if (index < 0 || index >= base.length) report the exception
+  // (one unsigned comparison, with -fbounds-check unless the index is known
+  // to be in range)
+  protected void checkIndex(int base, int index, int scratch, boolean needsCheck) {
+    if (!boundsCheck || !needsCheck)
+      return;
+    asm.lw(scratch, 0, base);
+    asm.bgeu(index, scratch, "_array_index_out_of_bound_exception");
+  }
+
+  // Whether e is a constant or a local variable (or parameter)
+  private boolean isSimple(Exp e) {
+    if (e instanceof IntegerLiteral)
+      return true;
+    if (!(e instanceof IdentifierExp))
+      return false;
+    String s = ((IdentifierExp) e).s;
+    return context.currMethod.containsParam(s) || context.currMethod.containsVar(s);
+  }
+
+  private void loadSimple(int reg, Exp e) {
+    if (e instanceof IntegerLiteral)
+      asm.li(reg, ((IntegerLiteral) e).i);
+    else
+      asm.lw(reg, getVarInternalId(((IdentifierExp) e).s) * 4, FP);
+  }
+
+  // Temporaries, counted from 1 (the one reserved last). Without
+  // -fframe-temps they are pushed on the stack; with it, the k-th
+  // temporary in use has the fixed slot -4(numOfLocals + k)($fp), and the
+  // frame has room for as many as TempDepthVisitor counts.
+
+  protected void reserveTemps(int count) {
+    if (frameTemps)
+      numOfTemps += count;
+    else
+      asm.addiu(SP, SP, -4 * count);
+  }
+
+  protected void releaseTemps(int count) {
+    if (frameTemps)
+      numOfTemps -= count;
+    else
+      asm.addiu(SP, SP, 4 * count);
+  }
+
+  protected void storeTemp(int reg, int i) {
+    if (frameTemps)
+      asm.sw(reg, tempOffset(numOfTemps - i + 1), FP);
+    else
+      asm.sw(reg, 4 * i, SP);
+  }
+
+  protected void loadTemp(int reg, int i) {
+    if (frameTemps)
+      asm.lw(reg, tempOffset(numOfTemps - i + 1), FP);
+    else
+      asm.lw(reg, 4 * i, SP);
+  }
+
+  private int tempOffset(int k) {
+    return -4 * (numOfLocals + k);
+  }
+
+  // Number of frame slots for the temps of a method
+  private int maxTemps(MethodDecl n) {
+    if (!frameTemps)
+      return 0;
+    TempDepthVisitor depth = new TempDepthVisitor();
+    n.accept(depth);
+    return depth.getMaxDepth();
+  }
+
+  // Number of frame slots for the temps of the main statement
+  private int maxTemps(Statement s) {
+    if (!frameTemps)
+      return 0;
+    TempDepthVisitor depth = new TempDepthVisitor();
+    s.accept(depth);
+    return depth.getMaxDepth();
   }
 
-  private Type getExpType(Exp e) {
-    return e.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable));
+  // cgen(s), tagging its instructions with the source line of s
+  private void cgen(Statement s) {
+    int prevLine = asm.setLine(s.line);
+    s.accept(this);
+    asm.setLine(prevLine);
   }
 
-  private int getVarInternalId(String s) {
+  protected int getVarInternalId(String s) {
     Variable var = null;
     int internalId = 0;
 
-    if (currMethod.containsVar(s)) {
-      var = currMethod.getVar(s);
-      internalId = var.getInternalId() * -1;
-    } else if (currMethod.containsParam(s)) {
-      var = currMethod.getParam(s);
+    if (context.currMethod.containsVar(s)) {
+      var = context.currMethod.getVar(s);
+      // Locals are numbered after the parameters
+      internalId = (var.getInternalId() - context.currMethod.params.size()) * -1;
+    } else if (context.currMethod.containsParam(s)) {
+      var = context.currMethod.getParam(s);
       internalId = var.getInternalId();
-    } else if (currClass.containsVar(s)) {
+    } else if (context.currClass.containsVar(s)) {
       // TODO
     } else {
-      System.err.println("Uncaught getVarInternalId(String s)");
+      context.err.println("Uncaught getVarInternalId(String s)");
     }
 
     return internalId;
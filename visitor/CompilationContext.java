@@ -0,0 +1,96 @@
+package visitor;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+
+// State of the compilation of one program: the symbol table, the counters
+// that number its entries, the label generators and the current scope.
+//
+// Every visitor of a compilation shares the same context, and nothing is
+// kept in static fields, so independent programs can be compiled
+// concurrently (each with its own context) and get the same output as when
+// compiled alone.
+public class CompilationContext {
+
+  private final SymbolTable symbolTable;
+  private final Options options = new Options();
+
+  // Where error messages are printed (System.out and System.err by default)
+  PrintStream out = System.out;
+  PrintStream err = System.err;
+
+  // Counters of the internal ids of the symbol table entries. Method ids
+  // restart in every class, and variable ids restart in every class and
+  // in every method.
+  private int classIdCounter = 0;
+  private int methodIdCounter = 0;
+  private int variableIdCounter = 0;
+
+  // Number of labels generated so far, by kind of label ("if", "while", ...)
+  private final HashMap<String, Integer> labelCounters = new HashMap<>();
+
+  // In global scope => both currClass and currMethod are null
+  //   Contains class declaration
+  // Inside a class (but not in a method) => currMethod is null
+  //   Contains field and method declarations
+  // Inside a method
+  //   Contains declaration of local variables
+  // These two variables help keep track of the current scope.
+  //
+  // Note: Because in MiniJava there is no nested scopes and all local
+  // variables can only be declared at the beginning of a method. This "hack"
+  // uses two variables instead of a stack to track nested level.
+  Class currClass;
+  Method currMethod;
+
+  public CompilationContext() {
+    symbolTable = new SymbolTable(this);
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  public Options getOptions() {
+    return options;
+  }
+
+  // Print the error messages of this compilation to "out" and "err" instead
+  public void setDiagnostics(PrintStream out, PrintStream err) {
+    this.out = out;
+    this.err = err;
+  }
+
+  int newClassId() {
+    return ++classIdCounter;
+  }
+
+  int newMethodId() {
+    return ++methodIdCounter;
+  }
+
+  int newVariableId() {
+    return ++variableIdCounter;
+  }
+
+  // Restart the numbering of the methods and variables (for a new class)
+  void restartMemberIds() {
+    methodIdCounter = 0;
+    variableIdCounter = 0;
+  }
+
+  // Restart the numbering of the variables (for a new method)
+  void restartVariableIds() {
+    variableIdCounter = 0;
+  }
+
+  // Return a new number for a label of the specified kind, counting from 0
+  int newLabelNumber(String kind) {
+    Integer number = labelCounters.get(kind);
+    if (number == null)
+      number = 0;
+
+    labelCounters.put(kind, number + 1);
+    return number;
+  }
+}
@@ -0,0 +1,17 @@
+package visitor;
+
+// Thrown when the compilation of a program has to stop because of an error.
+// The error message has already been printed to the diagnostics of the
+// CompilationContext; "status" is the exit status of the compiler.
+public class CompilationException extends RuntimeException {
+
+  private final int status;
+
+  public CompilationException(int status) {
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
@@ -0,0 +1,296 @@
+package visitor;
+
+import syntaxtree.*;
+
+// Constant folding and algebraic simplification of the expressions of a
+// type checked program (-fconstant-folding). Every expression is replaced
+// by a simpler one with the same value and side effects:
+//
+//   3 * 4  =>  12          !true  =>  false        1 < 2  =>  true
+//   x + 0, x - 0, x * 1  =>  x          x * 0  =>  0  (x without calls)
+//   false && e  =>  false    true && e, e && true  =>  e
+//   !!e  =>  e
+//
+// Constants are moved to the right of + and *, x - c becomes x + (-c), and
+// constant operands are reassociated: (x + 1) + 2  =>  x + 3,
+// (x * 2) * 3  =>  x * 6. Arithmetic wraps around at 32 bits, as in Java.
+public class ConstantFoldingVisitor extends DepthFirstVisitor {
+
+  // The simplified version of the last visited expression
+  private Exp result;
+
+  // The simplified version of e
+  public Exp fold(Exp e) {
+    e.accept(this);
+    return result;
+  }
+
+  // Type t;
+  // Identifier i;
+  // FormalList fl;
+  // VarDeclList vl;
+  // StatementList sl;
+  // Exp e;
+  public void visit(MethodDecl n) {
+    for (int i = 0; i < n.sl.size(); i++) {
+      n.sl.elementAt(i).accept(this);
+    }
+    n.e = fold(n.e);
+  }
+
+  // Exp e;
+  // Statement s1,s2;
+  public void visit(If n) {
+    n.e = fold(n.e);
+    n.s1.accept(this);
+    n.s2.accept(this);
+  }
+
+  // Exp e;
+  // Statement s;
+  public void visit(While n) {
+    n.e = fold(n.e);
+    n.s.accept(this);
+  }
+
+  // Exp e;
+  public void visit(Print n) {
+    n.e = fold(n.e);
+  }
+
+  // Identifier i;
+  // Exp e;
+  public void visit(Assign n) {
+    n.e = fold(n.e);
+  }
+
+  // Identifier i;
+  // Exp e1,e2;
+  public void visit(ArrayAssign n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(And n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+
+    if (n.e1 instanceof False || n.e1 instanceof True)
+      result = n.e1 instanceof True ? n.e2 : n.e1;
+    else if (n.e2 instanceof True)
+      result = n.e1;
+    else if (n.e2 instanceof False && isPure(n.e1))
+      result = n.e2;
+    else
+      result = n;
+  }
+
+  // Exp e1,e2;
+  public void visit(LessThan n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+
+    if (isInt(n.e1) && isInt(n.e2))
+      result = bool(value(n.e1) < value(n.e2), n);
+    else
+      result = n;
+  }
+
+  // Exp e1,e2;
+  public void visit(Plus n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+    result = plus(n);
+  }
+
+  // Exp e1,e2;
+  public void visit(Minus n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+
+    if (isInt(n.e1) && isInt(n.e2)) {
+      result = literal(value(n.e1) - value(n.e2), n);
+    } else if (isInt(n.e2)) {
+      // x - c  =>  x + (-c)
+      Plus plus = new Plus(n.e1, literal(-value(n.e2), n.e2));
+      plus.type = n.type;
+      result = plus(plus);
+    } else if (isInt(n.e1) && n.e2 instanceof Plus && isInt(((Plus) n.e2).e2)) {
+      // c1 - (x + c2)  =>  (c1 - c2) - x
+      Plus plus = (Plus) n.e2;
+      n.e1 = literal(value(n.e1) - value(plus.e2), n.e1);
+      n.e2 = plus.e1;
+      result = n;
+    } else {
+      result = n;
+    }
+  }
+
+  // Exp e1,e2;
+  public void visit(Times n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+
+    if (isInt(n.e1) && isInt(n.e2)) {
+      result = literal(value(n.e1) * value(n.e2), n);
+      return;
+    }
+    if (isInt(n.e1))
+      swap(n);
+
+    if (n.e1 instanceof Times && isInt(((Times) n.e1).e2) && isInt(n.e2)) {
+      // (x * c1) * c2  =>  x * (c1 * c2)
+      Times inner = (Times) n.e1;
+      n.e1 = inner.e1;
+      n.e2 = literal(value(inner.e2) * value(n.e2), n.e2);
+    }
+
+    if (isInt(n.e2) && value(n.e2) == 1)
+      result = n.e1;
+    else if (isInt(n.e2) && value(n.e2) == 0 && isPure(n.e1))
+      result = n.e2;
+    else
+      result = n;
+  }
+
+  // Exp e1,e2;
+  public void visit(ArrayLookup n) {
+    n.e1 = fold(n.e1);
+    n.e2 = fold(n.e2);
+    result = n;
+  }
+
+  // Exp e;
+  public void visit(ArrayLength n) {
+    n.e = fold(n.e);
+    result = n;
+  }
+
+  // Exp e;
+  // Identifier i;
+  // ExpList el;
+  public void visit(Call n) {
+    n.e = fold(n.e);
+    for (int i = 0; i < n.el.size(); i++) {
+      n.el.setElementAt(fold(n.el.elementAt(i)), i);
+    }
+    result = n;
+  }
+
+  // Exp e;
+  public void visit(NewArray n) {
+    n.e = fold(n.e);
+    result = n;
+  }
+
+  // Exp e;
+  public void visit(Not n) {
+    n.e = fold(n.e);
+
+    if (n.e instanceof True || n.e instanceof False)
+      result = bool(n.e instanceof False, n);
+    else if (n.e instanceof Not)
+      result = ((Not) n.e).e;
+    else
+      result = n;
+  }
+
+  public void visit(NewObject n) {
+    result = n;
+  }
+
+  public void visit(IntegerLiteral n) {
+    result = n;
+  }
+
+  public void visit(True n) {
+    result = n;
+  }
+
+  public void visit(False n) {
+    result = n;
+  }
+
+  public void visit(IdentifierExp n) {
+    result = n;
+  }
+
+  public void visit(This n) {
+    result = n;
+  }
+
+  // Simplify e1 + e2 (whose operands are simplified)
+  private Exp plus(Plus n) {
+    if (isInt(n.e1) && isInt(n.e2))
+      return literal(value(n.e1) + value(n.e2), n);
+    if (isInt(n.e1))
+      swap(n);
+
+    if (n.e1 instanceof Plus && isInt(((Plus) n.e1).e2) && isInt(n.e2)) {
+      // (x + c1) + c2  =>  x + (c1 + c2)
+      Plus inner = (Plus) n.e1;
+      n.e1 = inner.e1;
+      n.e2 = literal(value(inner.e2) + value(n.e2), n.e2);
+    }
+
+    if (isInt(n.e2) && value(n.e2) == 0)
+      return n.e1;
+    return n;
+  }
+
+  private static void swap(Plus n) {
+    Exp e = n.e1;
+    n.e1 = n.e2;
+    n.e2 = e;
+  }
+
+  private static void swap(Times n) {
+    Exp e = n.e1;
+    n.e1 = n.e2;
+    n.e2 = e;
+  }
+
+  // Whether evaluating e has no effect other than computing its value
+  // (no call, allocation or access that may fail)
+  static boolean isPure(Exp e) {
+    if (e instanceof IntegerLiteral || e instanceof True || e instanceof False
+        || e instanceof IdentifierExp || e instanceof This)
+      return true;
+    if (e instanceof Plus)
+      return isPure(((Plus) e).e1) && isPure(((Plus) e).e2);
+    if (e instanceof Minus)
+      return isPure(((Minus) e).e1) && isPure(((Minus) e).e2);
+    if (e instanceof Times)
+      return isPure(((Times) e).e1) && isPure(((Times) e).e2);
+    if (e instanceof LessThan)
+      return isPure(((LessThan) e).e1) && isPure(((LessThan) e).e2);
+    if (e instanceof And)
+      return isPure(((And) e).e1) && isPure(((And) e).e2);
+    if (e instanceof Not)
+      return isPure(((Not) e).e);
+    return false;
+  }
+
+  private static boolean isInt(Exp e) {
+    return e instanceof IntegerLiteral;
+  }
+
+  private static int value(Exp e) {
+    return ((IntegerLiteral) e).i;
+  }
+
+  // An integer literal replacing "e"
+  private static Exp literal(int value, Exp e) {
+    IntegerLiteral literal = new IntegerLiteral(value);
+    literal.type = e.type;
+    return literal;
+  }
+
+  // A boolean literal replacing "e"
+  private static Exp bool(boolean value, Exp e) {
+    Exp literal = value ? new True() : new False();
+    literal.type = e.type;
+    return literal;
+  }
+}
@@ -0,0 +1,238 @@
+package visitor;
+
+import syntaxtree.*;
+
+import java.util.HashSet;
+
+// Dead and unreachable code elimination on the AST (-fdead-code), best run
+// after ConstantFoldingVisitor:
+//
+//   if (true) s1 else s2  =>  s1          if (false) s1 else s2  =>  s2
+//   while (false) s  =>  (nothing)
+//
+// Statements after a loop that never ends (while (true), or an if whose
+// branches both never end) are removed, nested blocks are flattened, and
+// so are assignments to local variables that are never read (when the
+// assigned value has no side effect), together with the declarations of
+// such variables.
+public class DeadCodeVisitor extends DepthFirstVisitor {
+
+  // The simplified version of the last visited statement
+  private Statement result;
+
+  // The simplified version of s
+  public Statement simplify(Statement s) {
+    s.accept(this);
+    return result;
+  }
+
+  // Identifier i1,i2;
+  // VarDeclList vl;
+  // Statement s;
+  public void visit(MainClass n) {
+    StatementList sl = new StatementList();
+    sl.addElement(simplify(n.s));
+    Block body = new Block(simplify(sl));
+    body.line = n.s.line;
+    n.vl = removeDeadLocals(n.vl, body, null);
+    n.s = simplify(body);
+  }
+
+  // Type t;
+  // Identifier i;
+  // FormalList fl;
+  // VarDeclList vl;
+  // StatementList sl;
+  // Exp e;
+  public void visit(MethodDecl n) {
+    Block body = new Block(simplify(n.sl));
+    n.vl = removeDeadLocals(n.vl, body, n.e);
+    n.sl = simplify(body.sl);
+  }
+
+  // StatementList sl;
+  public void visit(Block n) {
+    n.sl = simplify(n.sl);
+    result = n;
+  }
+
+  // Exp e;
+  // Statement s1,s2;
+  public void visit(If n) {
+    n.s1 = simplify(n.s1);
+    n.s2 = simplify(n.s2);
+
+    if (n.e instanceof True)
+      result = n.s1;
+    else if (n.e instanceof False)
+      result = n.s2;
+    else
+      result = n;
+  }
+
+  // Exp e;
+  // Statement s;
+  public void visit(While n) {
+    if (n.e instanceof False) {
+      result = empty(n);
+    } else {
+      n.s = simplify(n.s);
+      result = n;
+    }
+  }
+
+  public void visit(Print n) {
+    result = n;
+  }
+
+  public void visit(Assign n) {
+    result = n;
+  }
+
+  public void visit(ArrayAssign n) {
+    result = n;
+  }
+
+  // The simplified statements of "sl": nested blocks are flattened, empty
+  // ones dropped, and nothing is kept after a statement that never ends
+  private StatementList simplify(StatementList sl) {
+    StatementList simplified = new StatementList();
+    for (int i = 0; i < sl.size(); i++) {
+      Statement s = simplify(sl.elementAt(i));
+      if (s instanceof Block) {
+        StatementList nested = ((Block) s).sl;
+        for (int j = 0; j < nested.size(); j++) {
+          simplified.addElement(nested.elementAt(j));
+        }
+      } else {
+        simplified.addElement(s);
+      }
+      if (!canComplete(s))
+        break;
+    }
+    return simplified;
+  }
+
+  // Whether execution can continue after s
+  private static boolean canComplete(Statement s) {
+    if (s instanceof While)
+      return !(((While) s).e instanceof True);
+    if (s instanceof If)
+      return canComplete(((If) s).s1) || canComplete(((If) s).s2);
+    if (s instanceof Block) {
+      StatementList sl = ((Block) s).sl;
+      for (int i = 0; i < sl.size(); i++) {
+        if (!canComplete(sl.elementAt(i)))
+          return false;
+      }
+    }
+    return true;
+  }
+
+  // Remove the assignments to the locals in "vl" that are never read (in
+  // "body" or "ret") and whose value has no side effect, until there is
+  // none. Return the locals still used.
+  private VarDeclList removeDeadLocals(VarDeclList vl, Block body, Exp ret) {
+    HashSet<String> locals = new HashSet<>();
+    for (int i = 0; i < vl.size(); i++) {
+      locals.add(vl.elementAt(i).i.s);
+    }
+
+    boolean changed = true;
+    HashSet<String> read = null;
+    while (changed) {
+      ReadVariables reads = new ReadVariables();
+      body.accept(reads);
+      if (ret != null)
+        ret.accept(reads);
+      read = reads.names;
+
+      DeadAssignments dead = new DeadAssignments(locals, read);
+      body.accept(dead);
+      changed = dead.changed;
+    }
+
+    // Locals that are neither read nor assigned any more
+    AssignedVariables assigned = new AssignedVariables();
+    body.accept(assigned);
+    VarDeclList used = new VarDeclList();
+    for (int i = 0; i < vl.size(); i++) {
+      String id = vl.elementAt(i).i.s;
+      if (read.contains(id) || assigned.names.contains(id))
+        used.addElement(vl.elementAt(i));
+    }
+    return used;
+  }
+
+  private static Block empty(Statement s) {
+    Block block = new Block(new StatementList());
+    block.line = s.line;
+    return block;
+  }
+
+  // The names of the variables read (including the arrays assigned to)
+  private static class ReadVariables extends DepthFirstVisitor {
+    final HashSet<String> names = new HashSet<>();
+
+    public void visit(IdentifierExp n) {
+      names.add(n.s);
+    }
+
+    public void visit(ArrayAssign n) {
+      names.add(n.i.s);
+      super.visit(n);
+    }
+  }
+
+  // The names of the variables assigned to
+  private static class AssignedVariables extends DepthFirstVisitor {
+    final HashSet<String> names = new HashSet<>();
+
+    public void visit(Assign n) {
+      names.add(n.i.s);
+    }
+  }
+
+  // Replace the assignments to the unread locals by empty blocks
+  private static class DeadAssignments extends DepthFirstVisitor {
+    private final HashSet<String> locals;
+    private final HashSet<String> read;
+    boolean changed = false;
+
+    DeadAssignments(HashSet<String> locals, HashSet<String> read) {
+      this.locals = locals;
+      this.read = read;
+    }
+
+    public void visit(Block n) {
+      StatementList sl = new StatementList();
+      for (int i = 0; i < n.sl.size(); i++) {
+        sl.addElement(live(n.sl.elementAt(i)));
+      }
+      n.sl = sl;
+    }
+
+    public void visit(If n) {
+      n.s1 = live(n.s1);
+      n.s2 = live(n.s2);
+    }
+
+    public void visit(While n) {
+      n.s = live(n.s);
+    }
+
+    private Statement live(Statement s) {
+      if (s instanceof Assign) {
+        Assign assign = (Assign) s;
+        String id = assign.i.s;
+        if (locals.contains(id) && !read.contains(id) && ConstantFoldingVisitor.isPure(assign.e)) {
+          changed = true;
+          return empty(s);
+        }
+        return s;
+      }
+      s.accept(this);
+      return s;
+    }
+  }
+}
@@ -0,0 +1,537 @@
+package visitor;
+
+import ir.ConstantPropagation;
+import ir.CopyPropagation;
+import ir.DeadCode;
+import ir.Function;
+import ir.InductionVariables;
+import ir.Inliner;
+import ir.Instr;
+import ir.LoopInvariants;
+import ir.MipsGen;
+import ir.Ssa;
+import ir.TailCalls;
+import ir.ValueNumbering;
+import mips.InstrList;
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static ir.Instr.NONE;
+
+// Lower the program to the IR (package ir), one Function per method, for
+// the optimizing code generator (-fregalloc). Locals and parameters are
+// virtual registers; fields are loads and stores through the object.
+//
+// Unlike CodeGenVisitor, the arguments of a call and the operands of an
+// array assignment are evaluated from left to right, as in Java.
+public class IrGenVisitor extends DepthFirstVisitor {
+
+  private final CompilationContext context;
+  private final SymbolTable symbolTable;
+
+  private final List<Function> functions = new ArrayList<>();
+  private final List<InstrList> allocators = new ArrayList<>();
+
+  private Function function;  // The function being generated
+  private ir.Block block;     // The block being generated
+  private HashMap<String, Integer> vars;  // Register of each local and parameter
+  private int object;         // Register of "this"
+  private int line;           // Source line of the statement being generated
+
+  // The register holding the value of the last visited expression
+  private int result;
+  // The register the value of the expression being visited should be put
+  // in (NONE to use a new one)
+  private int target = NONE;
+
+  public IrGenVisitor(CompilationContext context) {
+    this.context = context;
+    this.symbolTable = context.getSymbolTable();
+  }
+
+  // The functions, the main program first (after visiting the Program)
+  public List<Function> getFunctions() {
+    return functions;
+  }
+
+  // The MIPS code of the program: the data segment, the functions, the
+  // allocators of the classes and the runtime routines
+  public List<InstrList> getCode() {
+    List<InstrList> code = new ArrayList<>();
+    code.add(CodeGenVisitor.cgen_data());
+    if (context.getOptions().inline)
+      Inliner.run(functions);
+    for (Function f : functions) {
+      optimize(f);
+      code.add(MipsGen.generate(f));
+    }
+    code.addAll(allocators);
+    code.add(CodeGenVisitor.cgen_supporting_functions());
+    return code;
+  }
+
+  // Identifier i1,i2;
+  // VarDeclList vl;
+  // Statement s;
+  public void visit(MainClass n) {
+    context.currClass = symbolTable.getClass(n.i1.toString());
+    context.currMethod = context.currClass.getMethod(new ArrayList<>(), "main");
+
+    begin(new Function("main", 0, true));
+    object = NONE;
+    for (int i = 0; i < n.vl.size(); i++) {
+      vars.put(n.vl.elementAt(i).i.s, function.newReg());
+    }
+
+    cgen(n.s);
+    emit(Instr.exit());
+  }
+
+  // Identifier i;
+  // VarDeclList vl;
+  // MethodDeclList ml;
+  public void visit(ClassDeclSimple n) {
+    cgenClass(n.i.s, n.ml);
+  }
+
+  // Identifier i;
+  // Identifier j;
+  // VarDeclList vl;
+  // MethodDeclList ml;
+  public void visit(ClassDeclExtends n) {
+    cgenClass(n.i.s, n.ml);
+  }
+
+  private void cgenClass(String id, MethodDeclList ml) {
+    context.currClass = symbolTable.getClass(id);
+    allocators.add(CodeGenVisitor.cgen_vtable(context.currClass));
+    allocators.add(CodeGenVisitor.cgen_alloc(context.currClass));
+
+    for (int i = 0; i < ml.size(); i++) {
+      ml.elementAt(i).accept(this);
+    }
+
+    context.currClass = null;
+  }
+
+  // Type t;
+  // Identifier i;
+  // FormalList fl;
+  // VarDeclList vl;
+  // StatementList sl;
+  // Exp e;
+  // cgen: t i(fl) { vl sl return e; }
+  public void visit(MethodDecl n) {
+    ArrayList<Type> paramTypes = new ArrayList<>();
+    for (int i = 0; i < n.fl.size(); i++) {
+      paramTypes.add(n.fl.elementAt(i).t);
+    }
+    context.currMethod = context.currClass.getMethod(paramTypes, n.i.toString());
+
+    begin(new Function("_fun_" + context.currMethod.getUniqueId(), n.fl.size(), false));
+    int[] params = function.getParams();
+    object = params[0];
+    for (int i = 0; i < n.fl.size(); i++) {
+      vars.put(n.fl.elementAt(i).i.s, params[i + 1]);
+    }
+    for (int i = 0; i < n.vl.size(); i++) {
+      vars.put(n.vl.elementAt(i).i.s, function.newReg());
+    }
+
+    for (int i = 0; i < n.sl.size(); i++) {
+      cgen(n.sl.elementAt(i));
+    }
+
+    emit(Instr.ret(eval(n.e)));
+  }
+
+  // StatementList sl;
+  // cgen: { sl }
+  public void visit(Block n) {
+    for (int i = 0; i < n.sl.size(); i++) {
+      cgen(n.sl.elementAt(i));
+    }
+  }
+
+  // Exp e;
+  // Statement s1,s2;
+  // cgen: if (e) s1 else s2
+  public void visit(If n) {
+    ir.Block trueBranch = function.newBlock();
+    ir.Block falseBranch = function.newBlock();
+    ir.Block endIf = function.newBlock();
+
+    branch(n.e, trueBranch, falseBranch);
+
+    start(trueBranch);
+    cgen(n.s1);
+    emit(Instr.jump(endIf));
+
+    start(falseBranch);
+    cgen(n.s2);
+    emit(Instr.jump(endIf));
+
+    start(endIf);
+  }
+
+  // Exp e;
+  // Statement s;
+  // cgen: while (e) s;
+  // (the condition is tested after the body, one branch per iteration)
+  public void visit(While n) {
+    ir.Block body = function.newBlock();
+    ir.Block condition = function.newBlock();
+    ir.Block endWhile = function.newBlock();
+
+    emit(Instr.jump(condition));
+
+    start(body);
+    cgen(n.s);
+    emit(Instr.jump(condition));
+
+    start(condition);
+    branch(n.e, body, endWhile);
+
+    start(endWhile);
+  }
+
+  // Exp e;
+  // cgen: System.out.println(e)
+  public void visit(Print n) {
+    emit(Instr.runtime(NONE, "_print_int", eval(n.e)));
+  }
+
+  // Identifier i;
+  // Exp e;
+  // cgen: i = e
+  public void visit(Assign n) {
+    Integer var = vars.get(n.i.s);
+    if (var != null) {
+      int value = eval(n.e, var);
+      if (value != var)
+        emit(Instr.move(var, value));
+    } else {
+      emit(Instr.store(object, fieldOffset(n.i.s), eval(n.e)));
+    }
+  }
+
+  // Identifier i;
+  // Exp e1,e2;
+  // cgen: i[e1] = e2
+  public void visit(ArrayAssign n) {
+    Integer var = vars.get(n.i.s);
+    int base;
+    if (var != null) {
+      base = var;
+    } else {
+      base = function.newReg();
+      emit(Instr.load(base, object, fieldOffset(n.i.s)));
+    }
+    int index = eval(n.e1);
+    int value = eval(n.e2);
+
+    checkIndex(base, index, n.needsCheck);
+    emit(Instr.store(elementAddress(base, index), 4, value));
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 && e2
+  // (e2 is only evaluated if e1 is true)
+  public void visit(And n) {
+    ir.Block rightOperand = function.newBlock();
+    ir.Block endAnd = function.newBlock();
+
+    int value = function.newReg();
+    int left = eval(n.e1, value);
+    if (left != value)
+      emit(Instr.move(value, left));
+    emit(Instr.branchImm(Instr.NE, value, 0, rightOperand, endAnd));
+
+    start(rightOperand);
+    int right = eval(n.e2, value);
+    if (right != value)
+      emit(Instr.move(value, right));
+    emit(Instr.jump(endAnd));
+
+    start(endAnd);
+    copy(value);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 < e2
+  public void visit(LessThan n) {
+    binary(Instr.LT, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 + e2
+  public void visit(Plus n) {
+    binary(Instr.ADD, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 - e2
+  public void visit(Minus n) {
+    binary(Instr.SUB, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 * e2
+  public void visit(Times n) {
+    binary(Instr.MUL, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1[e2]
+  public void visit(ArrayLookup n) {
+    int dst = dst();
+    int base = eval(n.e1);
+    int index = eval(n.e2);
+    checkIndex(base, index, n.needsCheck);
+    emit(Instr.load(dst, elementAddress(base, index), 4));
+    result = dst;
+  }
+
+  // Exp e;
+  // cgen: e.length
+  public void visit(ArrayLength n) {
+    int dst = dst();
+    emit(Instr.load(dst, eval(n.e), 0));
+    result = dst;
+  }
+
+  // Exp e;
+  // Identifier i;
+  // ExpList el;
+  // cgen: e.i(el)
+  public void visit(Call n) {
+    int dst = dst();
+    int[] args = new int[1 + n.el.size()];
+    args[0] = eval(n.e);
+    for (int i = 0; i < n.el.size(); i++) {
+      args[i + 1] = eval(n.el.elementAt(i));
+    }
+    Method direct = context.getOptions().devirtualize
+        ? symbolTable.getOnlyImplementation(n.method, n.e.type) : null;
+    if (direct != null && !(n.e instanceof This || n.e instanceof NewObject))
+      emit(Instr.nullCheck(args[0]));  // Right before the call (see ir.Inliner)
+    int slot = n.method.getVtableIndex();
+    Class cached = context.getOptions().inlineCaches ? symbolTable.getCachedClass(n.e.type) : null;
+    if (direct != null)
+      emit(Instr.call(dst, "_fun_" + direct.getUniqueId(), args));
+    else if (cached != null)
+      emit(Instr.callCached(dst, "_vtable_" + cached.getId(),
+          "_fun_" + cached.getVtable().get(slot).getUniqueId(), slot * 4, args));
+    else
+      emit(Instr.callVirtual(dst, slot * 4, args));
+    result = dst;
+  }
+
+  // Exp e;
+  // cgen: new int [e]
+  public void visit(NewArray n) {
+    int dst = dst();
+    emit(Instr.runtime(dst, "_alloc_int_array", eval(n.e)));
+    result = dst;
+  }
+
+  // Identifier i;
+  // cgen: new n
+  public void visit(NewObject n) {
+    int dst = dst();
+    emit(Instr.runtime(dst, "_alloc_" + symbolTable.getClass(n.i.s).getId(), NONE));
+    result = dst;
+  }
+
+  // Exp e;
+  // cgen: !e
+  public void visit(Not n) {
+    int dst = dst();
+    emit(new Instr(Instr.NOT, dst, new int[] { eval(n.e) }));
+    result = dst;
+  }
+
+  // cgen: this
+  public void visit(This n) {
+    copy(object);
+  }
+
+  // int i;
+  // cgen: Load immediate the value of n.i
+  public void visit(IntegerLiteral n) {
+    constant(n.i);
+  }
+
+  // cgen: Load immeidate the value of "true"
+  public void visit(True n) {
+    constant(1);
+  }
+
+  // cgen: Load immeidate the value of "false"
+  public void visit(False n) {
+    constant(0);
+  }
+
+  // String s;
+  // cgen: The value of the variable n.s (which can be a local variable, parameter, or field)
+  public void visit(IdentifierExp n) {
+    Integer var = vars.get(n.s);
+    if (var != null) {
+      copy(var);
+    } else {
+      int dst = dst();
+      emit(Instr.load(dst, object, fieldOffset(n.s)));
+      result = dst;
+    }
+  }
+
+  // Run the IR optimizations turned on
+  private void optimize(Function f) {
+    if (context.getOptions().tailCalls)
+      TailCalls.run(f);
+    if (context.getOptions().ssa) {
+      Ssa ssa = Ssa.build(f);
+      ConstantPropagation.run(ssa);
+      CopyPropagation.run(ssa);
+      DeadCode.run(ssa);
+      ssa.destruct();
+    }
+    if (context.getOptions().loopInvariants)
+      LoopInvariants.run(f);
+    if (context.getOptions().inductionVariables)
+      InductionVariables.run(f);
+    if (context.getOptions().cse)
+      ValueNumbering.run(f);
+  }
+
+  // Start generating "f"
+  private void begin(Function f) {
+    function = f;
+    functions.add(f);
+    vars = new HashMap<>();
+    line = 0;
+    start(f.newBlock());
+  }
+
+  // Append "b" to the function and generate the next instructions in it
+  private void start(ir.Block b) {
+    function.addBlock(b);
+    block = b;
+  }
+
+  private void emit(Instr instr) {
+    instr.line = line;
+    block.add(instr);
+  }
+
+  // cgen(s), tagging its instructions with the source line of s
+  private void cgen(Statement s) {
+    int prevLine = line;
+    line = s.line;
+    s.accept(this);
+    line = prevLine;
+  }
+
+  // Branch to "ifTrue" if the condition e is true and to "ifFalse"
+  // otherwise. && and ! only direct the branches, and e1 < e2 compares its
+  // operands instead of computing a 0/1 value.
+  private void branch(Exp e, ir.Block ifTrue, ir.Block ifFalse) {
+    if (e instanceof And) {
+      ir.Block rightOperand = function.newBlock();
+      branch(((And) e).e1, rightOperand, ifFalse);
+      start(rightOperand);
+      branch(((And) e).e2, ifTrue, ifFalse);
+    } else if (e instanceof Not) {
+      branch(((Not) e).e, ifFalse, ifTrue);
+    } else if (e instanceof LessThan) {
+      Exp e1 = ((LessThan) e).e1;
+      Exp e2 = ((LessThan) e).e2;
+      int src1 = eval(e1);
+      if (e2 instanceof IntegerLiteral)
+        emit(Instr.branchImm(Instr.LESS, src1, ((IntegerLiteral) e2).i, ifTrue, ifFalse));
+      else
+        emit(Instr.branch(Instr.LESS, src1, eval(e2), ifTrue, ifFalse));
+    } else if (e instanceof True) {
+      emit(Instr.jump(ifTrue));
+    } else if (e instanceof False) {
+      emit(Instr.jump(ifFalse));
+    } else {
+      emit(Instr.branchImm(Instr.NE, eval(e), 0, ifTrue, ifFalse));
+    }
+  }
+
+  // The register holding the value of e
+  private int eval(Exp e) {
+    return eval(e, NONE);
+  }
+
+  // The register holding the value of e, preferably "target"
+  private int eval(Exp e, int target) {
+    int prevTarget = this.target;
+    this.target = target;
+    e.accept(this);
+    this.target = prevTarget;
+    return result;
+  }
+
+  // The register to put the value of the expression being visited in
+  private int dst() {
+    return target != NONE ? target : function.newReg();
+  }
+
+  private void binary(int op, Exp e1, Exp e2) {
+    int dst = dst();
+    int src1 = eval(e1);
+    if (e2 instanceof IntegerLiteral && op != Instr.AND) {
+      // A constant operand (on the right after constant folding)
+      emit(Instr.binaryImm(op, dst, src1, ((IntegerLiteral) e2).i));
+    } else {
+      int src2 = eval(e2);
+      emit(Instr.binary(op, dst, src1, src2));
+    }
+    result = dst;
+  }
+
+  private void constant(int value) {
+    int dst = dst();
+    emit(Instr.constant(dst, value));
+    result = dst;
+  }
+
+  // The value of an existing register (copied to the target, if any)
+  private void copy(int reg) {
+    if (target != NONE && target != reg) {
+      emit(Instr.move(target, reg));
+      result = target;
+    } else {
+      result = reg;
+    }
+  }
+
+  // Check 0 <= index < base.length (with -fbounds-check, unless the index
+  // is known to be in range)
+  private void checkIndex(int base, int index, boolean needsCheck) {
+    if (!context.getOptions().boundsCheck || !needsCheck)
+      return;
+    int length = function.newReg();
+    emit(Instr.load(length, base, 0));
+    emit(Instr.check(index, length));
+  }
+
+  // The register holding base + 4 * index (the address of element index,
+  // minus the word holding the length)
+  private int elementAddress(int base, int index) {
+    int offset = function.newReg();
+    emit(Instr.binaryImm(Instr.SLL, offset, index, 2));
+    int address = function.newReg();
+    emit(Instr.binary(Instr.ADD, address, base, offset));
+    return address;
+  }
+
+  private int fieldOffset(String id) {
+    return context.currClass.getFieldOffset(id);
+  }
+}
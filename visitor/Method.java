@@ -0,0 +1,177 @@
+package visitor;
+
+import syntaxtree.*;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+// Store all properties that describe a method
+public class Method {
+
+  private final int internalId;
+  private final Class scopingClass;
+  private final int beginLine;
+  private final int beginColumn;
+  protected String id;  // Method name
+  protected Type type;  // Return type
+  protected Vector<Variable> params;          // Formal parameters
+  protected Hashtable<String, Variable> vars; // Local variables
+  private final MethodSignature signature;
+  private int vtableIndex = -1;  // Set by SymbolTable.freeze()
+
+  public Method(String id, Type type, FormalList fl, Class scopingClass, int beginLine, int beginColumn) {
+    this.scopingClass = scopingClass;
+    this.internalId = scopingClass.getSymbolTable().getContext().newMethodId();
+    this.beginLine = beginLine;
+    this.beginColumn = beginColumn;
+    this.id = id;
+    this.type = type;
+    this.params = new Vector<Variable>();
+    this.vars = new Hashtable<String, Variable>();
+
+    if (fl != null)
+      for (int i = 0; i < fl.size(); i++) {
+        Formal formal = fl.elementAt(i);
+
+        if (!this.addParam(formal.i.s, formal.t, 0, 0)) {
+          Variable conflictedParam = this.getParam(id);
+          scopingClass.getSymbolTable().getContext().err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedParam.getBeginLine(), conflictedParam.getBeginColumn(), conflictedParam.getScopingMethod().getInternalId(), 0, 0);
+        }
+      }
+
+    ArrayList<Type> paramTypes = new ArrayList<>();
+    for (Variable param : params) {
+      paramTypes.add(param.getType());
+    }
+    this.signature = scopingClass.getSymbolTable().getSignature(id, paramTypes);
+  }
+
+  // y
+  public String getId() {
+    return id;
+  }
+
+  // X_y(int x, int y)
+  public String getUniqueId() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(scopingClass.getId()).append("__").append(id).append("_");
+    builder.append(getParamsAsString());
+    builder.append("_");
+
+    return builder.toString();
+  }
+
+  MethodSignature getSignature() {
+    return signature;
+  }
+
+  // The slot of the method in the vtables of its class and subclasses
+  public int getVtableIndex() {
+    return vtableIndex;
+  }
+
+  void setVtableIndex(int vtableIndex) {
+    this.vtableIndex = vtableIndex;
+  }
+
+  public String getParamsAsString() {
+    StringBuilder builder = new StringBuilder();
+
+    for (int i = 0, paramsSize = params.size(); i < paramsSize; i++) {
+      Variable var = params.get(i);
+
+      builder.append(var.getType());
+      builder.append("_");
+      builder.append(var.getId());
+
+      if (i != paramsSize - 1) {
+        builder.append("__");
+      }
+    }
+
+    return builder.toString();
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  // Add a formal parameter
+  // Return false if there is a name conflict
+  public boolean addParam(String id, Type type, int beginLine, int beginColumn) {
+    if (containsParam(id))
+      return false;
+    else {
+      Variable var = new Variable(id, type, scopingClass, this, beginLine, beginColumn);
+      params.addElement(var);
+
+      return true;
+    }
+  }
+
+  public Enumeration getParams() {
+    return params.elements();
+  }
+
+  // Return a formal parameter by position (i=0 means 1st parameter)
+  public Variable getParamAt(int i) {
+    if (i < params.size())
+      return (Variable) params.elementAt(i);
+    else
+      return null;
+  }
+
+  // Add a local variable
+  // Return false if there is a name conflict
+  public boolean addVar(String id, Type type, int beginLine, int beginColumn) {
+    if (vars.containsKey(id))
+      return false;
+    else {
+      Variable var = new Variable(id, type, scopingClass, this, beginLine, beginColumn);
+      vars.put(id, var);
+
+      return true;
+    }
+  }
+
+  public boolean containsVar(String id) {
+    return vars.containsKey(id);
+  }
+
+  public boolean containsParam(String id) {
+    for (int i = 0; i < params.size(); i++)
+      if (((Variable) params.elementAt(i)).id.equals(id))
+        return true;
+    return false;
+  }
+
+  public Variable getVar(String id) {
+    if (containsVar(id))
+      return (Variable) vars.get(id);
+    else
+      return null;
+  }
+
+  // Return a formal parameter by name
+  public Variable getParam(String id) {
+    for (int i = 0; i < params.size(); i++)
+      if (((Variable) params.elementAt(i)).id.equals(id))
+        return (Variable) (params.elementAt(i));
+
+    return null;
+  }
+
+  public int getBeginLine() {
+    return beginLine;
+  }
+
+  public int getBeginColumn() {
+    return beginColumn;
+  }
+
+  public int getInternalId() {
+    return internalId;
+  }
+} // Method
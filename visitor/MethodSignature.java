@@ -0,0 +1,32 @@
+package visitor;
+
+import java.util.Arrays;
+
+// Key for looking up a method: the interned method name and the type ids of
+// the parameters (or of the arguments of a call), see SymbolTable.getTypeId()
+final class MethodSignature {
+
+  final int nameId;
+  final int[] typeIds;
+  private final int hashCode;
+
+  MethodSignature(int nameId, int[] typeIds) {
+    this.nameId = nameId;
+    this.typeIds = typeIds;
+    this.hashCode = 31 * nameId + Arrays.hashCode(typeIds);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof MethodSignature)) return false;
+
+    MethodSignature other = (MethodSignature) o;
+    return nameId == other.nameId && hashCode == other.hashCode && Arrays.equals(typeIds, other.typeIds);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+}
@@ -0,0 +1,168 @@
+package visitor;
+
+// Optional code generation features, off by default (see Main for the
+// command line flags)
+public class Options {
+
+  // -fpeephole: Run the peephole optimizer (mips.Peephole) on the generated code
+  public boolean peephole = false;
+
+  // -fregalloc: Generate code through the IR (visitor.IrGenVisitor), with
+  // values in registers allocated by linear scan (ir.LinearScan)
+  public boolean regAlloc = false;
+
+  // -fsethi-ullman: Evaluate expressions into a pool of registers, in
+  // Sethi-Ullman order (visitor.SethiUllmanCodeGenVisitor)
+  public boolean sethiUllman = false;
+
+  // -fframe-temps: Give the temporaries of CodeGenVisitor fixed slots in the
+  // frame instead of pushing them (see visitor.TempDepthVisitor)
+  public boolean frameTemps = false;
+
+  // -fconstant-folding: Fold constant expressions and simplify algebraic
+  // identities (visitor.ConstantFoldingVisitor)
+  public boolean constantFolding = false;
+
+  // -fdead-code: Remove unreachable statements, branches with a constant
+  // condition and assignments to unread locals (visitor.DeadCodeVisitor)
+  public boolean deadCode = false;
+
+  // -finduction-variables: Walk arrays with pointers advanced with the loop
+  // counters (ir.InductionVariables, with -fregalloc)
+  public boolean inductionVariables = false;
+
+  // -fbounds-check: Check array indexes, except where
+  // visitor.BoundsCheckVisitor proves them in range. Without it, an access
+  // through a null array is only reported as such for an index below
+  // 0xFFFFF (see CodeGenVisitor.cgen_supporting_functions)
+  public boolean boundsCheck = false;
+
+  // -fdevirtualize: Call a method directly (jal) instead of through the
+  // vtable when only one implementation can be reached (see
+  // SymbolTable.getOnlyImplementation)
+  public boolean devirtualize = false;
+
+  // -finline-caches: Guard the calls left to the vtable with a test of the
+  // class of the object, and call the expected method directly when it
+  // matches (see SymbolTable.getCachedClass)
+  public boolean inlineCaches = false;
+
+  // -finline: Inline small methods at their direct call sites (ir.Inliner,
+  // with -fregalloc; see -fdevirtualize)
+  public boolean inline = false;
+
+  // -ftail-calls: Reuse the frame for the call in "return e.m(...)", and
+  // turn direct self-recursion into a loop (see ir.TailCalls)
+  public boolean tailCalls = false;
+
+  // -floop-invariants: Move the invariant computations and loads of loops
+  // before them (ir.LoopInvariants, with -fregalloc)
+  public boolean loopInvariants = false;
+
+  // -fcse: Compute a value only once per extended basic block (ALU
+  // operations and loads, see ir.ValueNumbering, with -fregalloc)
+  public boolean cse = false;
+
+  // -fssa: Optimize the IR in SSA form: sparse conditional constant
+  // propagation, copy propagation and dead code elimination (ir.Ssa, with
+  // -fregalloc)
+  public boolean ssa = false;
+
+  // Turn on the feature named by a command line flag (or the features of
+  // an optimization level, see level()).
+  // Return false if there is no such flag.
+  public boolean set(String flag) {
+    switch (flag) {
+      case "-O0":
+        level(0);
+        return true;
+      case "-O1":
+        level(1);
+        return true;
+      case "-O2":
+        level(2);
+        return true;
+      case "-fpeephole":
+        peephole = true;
+        return true;
+      case "-fregalloc":
+        regAlloc = true;
+        return true;
+      case "-fsethi-ullman":
+        sethiUllman = true;
+        return true;
+      case "-fframe-temps":
+        frameTemps = true;
+        return true;
+      case "-fconstant-folding":
+        constantFolding = true;
+        return true;
+      case "-fdead-code":
+        deadCode = true;
+        return true;
+      case "-finduction-variables":
+        inductionVariables = true;
+        return true;
+      case "-fbounds-check":
+        boundsCheck = true;
+        return true;
+      case "-fdevirtualize":
+        devirtualize = true;
+        return true;
+      case "-finline-caches":
+        inlineCaches = true;
+        return true;
+      case "-finline":
+        inline = true;
+        return true;
+      case "-ftail-calls":
+        tailCalls = true;
+        return true;
+      case "-floop-invariants":
+        loopInvariants = true;
+        return true;
+      case "-fcse":
+        cse = true;
+        return true;
+      case "-fssa":
+        ssa = true;
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // Set the optimizations to those of a level (the -f flags after it add
+  // to them):
+  //   -O0  none: the stack code of CodeGenVisitor
+  //   -O1  the IR with registers (-fregalloc), optimized in SSA form
+  //        (-fssa), folding and dead code on the AST, peephole optimizer,
+  //        direct calls (-fdevirtualize)
+  //   -O2  -O1, and the passes that take longer or make the code larger:
+  //        -finline, -ftail-calls, -floop-invariants,
+  //        -finduction-variables, -fcse
+  // -fbounds-check is not an optimization: it is kept as given.
+  //
+  // The levels differ in the order of evaluation of call arguments: the
+  // stack code of -O0 (CodeGenVisitor, like -fsethi-ullman and
+  // -fframe-temps) evaluates them from right to left, the IR of -O1 and
+  // -O2 (IrGenVisitor) from left to right, as Java does. A program whose
+  // arguments have side effects (calls that print or assign fields) may
+  // print differently at -O0.
+  private void level(int level) {
+    regAlloc = level >= 1;
+    ssa = level >= 1;
+    constantFolding = level >= 1;
+    deadCode = level >= 1;
+    peephole = level >= 1;
+    devirtualize = level >= 1;
+    inline = level >= 2;
+    tailCalls = level >= 2;
+    loopInvariants = level >= 2;
+    inductionVariables = level >= 2;
+    cse = level >= 2;
+    sethiUllman = false;
+    frameTemps = false;
+    inlineCaches = false;
+  }
+}
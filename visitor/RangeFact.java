@@ -0,0 +1,132 @@
+package visitor;
+
+import java.util.HashSet;
+import java.util.Objects;
+
+// A fact of BoundsCheckVisitor about variables (locals, parameters and
+// fields) and constants:
+//
+//   nonNegative(x)     x >= 0
+//   lessThan(x, T)     x < T, where x is a variable or a constant index
+//   length(a, T)       a.length == T
+//
+// where T is a Term: a variable, a constant or the length of an array.
+final class RangeFact {
+
+  static final int NON_NEGATIVE = 0;
+  static final int LESS_THAN = 1;
+  static final int LENGTH = 2;
+
+  final int kind;
+  final Term x;
+  final Term bound;  // null for NON_NEGATIVE
+  private final int hashCode;
+
+  private RangeFact(int kind, Term x, Term bound) {
+    this.kind = kind;
+    this.x = x;
+    this.bound = bound;
+    this.hashCode = 31 * (31 * kind + x.hashCode()) + Objects.hashCode(bound);
+  }
+
+  static RangeFact nonNegative(String x) {
+    return new RangeFact(NON_NEGATIVE, Term.variable(x), null);
+  }
+
+  static RangeFact lessThan(Term x, Term bound) {
+    return new RangeFact(LESS_THAN, x, bound);
+  }
+
+  static RangeFact length(String array, Term length) {
+    return new RangeFact(LENGTH, Term.variable(array), length);
+  }
+
+  // Whether the fact is about the variable v
+  boolean mentions(String v) {
+    return x.mentions(v) || bound != null && bound.mentions(v);
+  }
+
+  // The fact with the variable y replaced by v
+  RangeFact replace(String y, String v) {
+    return new RangeFact(kind, x.replace(y, v), bound == null ? null : bound.replace(y, v));
+  }
+
+  // Whether the fact is only about constants and the variables in "locals"
+  boolean isLocal(HashSet<String> locals) {
+    return x.isLocal(locals) && (bound == null || bound.isLocal(locals));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof RangeFact)) return false;
+
+    RangeFact other = (RangeFact) o;
+    return kind == other.kind && hashCode == other.hashCode && x.equals(other.x)
+        && Objects.equals(bound, other.bound);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  // A variable, a constant, or the length of an array (variable)
+  static final class Term {
+
+    static final int VARIABLE = 0;
+    static final int CONSTANT = 1;
+    static final int LENGTH_OF = 2;
+
+    final int kind;
+    final String name;  // null for CONSTANT
+    final int value;  // 0 unless CONSTANT
+    private final int hashCode;
+
+    private Term(int kind, String name, int value) {
+      this.kind = kind;
+      this.name = name;
+      this.value = value;
+      this.hashCode = 31 * (31 * kind + Objects.hashCode(name)) + value;
+    }
+
+    static Term variable(String name) {
+      return new Term(VARIABLE, name, 0);
+    }
+
+    static Term constant(int value) {
+      return new Term(CONSTANT, null, value);
+    }
+
+    static Term lengthOf(String array) {
+      return new Term(LENGTH_OF, array, 0);
+    }
+
+    boolean mentions(String v) {
+      return kind != CONSTANT && name.equals(v);
+    }
+
+    Term replace(String y, String v) {
+      return mentions(y) ? new Term(kind, v, value) : this;
+    }
+
+    boolean isLocal(HashSet<String> locals) {
+      return kind == CONSTANT || locals.contains(name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Term)) return false;
+
+      Term other = (Term) o;
+      return kind == other.kind && hashCode == other.hashCode && value == other.value
+          && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
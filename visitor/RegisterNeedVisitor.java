@@ -0,0 +1,121 @@
+package visitor;
+
+import syntaxtree.*;
+
+// Annotate every expression with the number of registers needed to
+// evaluate it without spilling (Exp.need, the Sethi-Ullman number) and
+// with whether it contains a call (Exp.hasCall).
+//
+// A leaf needs one register. A binary operator needs the larger need of
+// its operands, or one more if they are equal. A call, new int[e] and
+// new C() need one register for their result: their operands are
+// evaluated after the registers in use were saved.
+public class RegisterNeedVisitor extends DepthFirstVisitor {
+
+  // Exp e1,e2;
+  public void visit(And n) {
+    super.visit(n);
+    // e1 is tested before evaluating e2 in the same register
+    n.need = Math.max(n.e1.need, n.e2.need);
+    n.hasCall = n.e1.hasCall || n.e2.hasCall;
+  }
+
+  // Exp e1,e2;
+  public void visit(LessThan n) {
+    super.visit(n);
+    binary(n, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(Plus n) {
+    super.visit(n);
+    binary(n, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(Minus n) {
+    super.visit(n);
+    binary(n, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(Times n) {
+    super.visit(n);
+    binary(n, n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(ArrayLookup n) {
+    super.visit(n);
+    binary(n, n.e1, n.e2);
+  }
+
+  // Exp e;
+  public void visit(ArrayLength n) {
+    super.visit(n);
+    n.need = n.e.need;
+    n.hasCall = n.e.hasCall;
+  }
+
+  // Exp e;
+  public void visit(Not n) {
+    super.visit(n);
+    n.need = n.e.need;
+    n.hasCall = n.e.hasCall;
+  }
+
+  // Exp e;
+  // Identifier i;
+  // ExpList el;
+  public void visit(Call n) {
+    super.visit(n);
+    call(n);
+  }
+
+  // Exp e;
+  public void visit(NewArray n) {
+    super.visit(n);
+    call(n);
+  }
+
+  // Identifier i;
+  public void visit(NewObject n) {
+    call(n);
+  }
+
+  public void visit(IntegerLiteral n) {
+    leaf(n);
+  }
+
+  public void visit(True n) {
+    leaf(n);
+  }
+
+  public void visit(False n) {
+    leaf(n);
+  }
+
+  // String s;
+  public void visit(IdentifierExp n) {
+    leaf(n);
+  }
+
+  public void visit(This n) {
+    leaf(n);
+  }
+
+  private static void binary(Exp n, Exp e1, Exp e2) {
+    n.need = e1.need == e2.need ? e1.need + 1 : Math.max(e1.need, e2.need);
+    n.hasCall = e1.hasCall || e2.hasCall;
+  }
+
+  private static void call(Exp n) {
+    n.need = 1;
+    n.hasCall = true;
+  }
+
+  private static void leaf(Exp n) {
+    n.need = 1;
+    n.hasCall = false;
+  }
+}
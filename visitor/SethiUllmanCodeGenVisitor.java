@@ -0,0 +1,230 @@
+package visitor;
+
+import mips.Multiply;
+import syntaxtree.*;
+
+import static mips.Reg.*;
+
+// CodeGenVisitor that evaluates expressions into a pool of registers
+// instead of pushing every intermediate value (-fsethi-ullman).
+//
+// An expression evaluated at depth d puts its value in POOL[d]; the
+// registers below d hold values still needed. The operand that needs more
+// registers (Exp.need, see RegisterNeedVisitor) is evaluated first, unless
+// one of the operands contains a call (to keep the order of side effects).
+// Temporaries (see CodeGenVisitor.reserveTemps) are only used when the pool
+// runs out, and to save the registers in use around calls. A statement evaluates its expressions at depth 0,
+// so they end up in $a0 as in CodeGenVisitor.
+public class SethiUllmanCodeGenVisitor extends CodeGenVisitor {
+
+  private static final int[] POOL = { A0, T0, T1, T2, T3, T4, T5, T6, T7 };
+
+  private int depth = 0;
+
+  public SethiUllmanCodeGenVisitor(CompilationContext context) {
+    super(context);
+  }
+
+  // MainClass m;
+  // ClassDeclList cl;
+  public void visit(Program n) {
+    n.accept(new RegisterNeedVisitor());
+    super.visit(n);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 && e2
+  // (e2 is only evaluated if e1 is true)
+  public void visit(And n) {
+    String endAndName = "_end_and_" + context.newLabelNumber("and");
+    gen(n.e1, depth);
+    asm.beq(dest(), ZERO, endAndName);
+    gen(n.e2, depth);
+    asm.label(endAndName);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 < e2
+  public void visit(LessThan n) {
+    int[] r = operands(n.e1, n.e2);
+    asm.slt(dest(), r[0], r[1]);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 + e2
+  public void visit(Plus n) {
+    int[] r = operands(n.e1, n.e2);
+    asm.addu(dest(), r[0], r[1]);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 - e2
+  public void visit(Minus n) {
+    int[] r = operands(n.e1, n.e2);
+    asm.subu(dest(), r[0], r[1]);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1 * e2
+  public void visit(Times n) {
+    if (n.e2 instanceof IntegerLiteral) {
+      gen(n.e1, depth);
+      Multiply.byConstant(asm, dest(), dest(), ((IntegerLiteral) n.e2).i, V1);
+      return;
+    }
+    if (n.e1 instanceof IntegerLiteral) {
+      gen(n.e2, depth);
+      Multiply.byConstant(asm, dest(), dest(), ((IntegerLiteral) n.e1).i, V1);
+      return;
+    }
+    int[] r = operands(n.e1, n.e2);
+    asm.mul(dest(), r[0], r[1]);
+  }
+
+  // Exp e1,e2;
+  // cgen: e1[e2]
+  public void visit(ArrayLookup n) {
+    int[] r = operands(n.e1, n.e2);
+    checkIndex(r[0], r[1], A3, n.needsCheck);
+    asm.sll(r[1], r[1], 2);
+    asm.add(dest(), r[0], r[1]);
+    asm.lw(dest(), 4, dest());
+  }
+
+  // Exp e;
+  // cgen: e.length
+  public void visit(ArrayLength n) {
+    gen(n.e, depth);
+    asm.lw(dest(), 0, dest());
+  }
+
+  // Exp e;
+  // cgen: !e
+  public void visit(Not n) {
+    gen(n.e, depth);
+    asm.xori(dest(), dest(), 1);
+  }
+
+  // Exp e;
+  // Identifier i;
+  // ExpList el;
+  // cgen: e.i(el)
+  public void visit(Call n) {
+    int d = save();
+    super.visit(n);
+    restore(d);
+  }
+
+  // Exp e;
+  // cgen: new int [e]
+  public void visit(NewArray n) {
+    int d = save();
+    super.visit(n);
+    restore(d);
+  }
+
+  // Identifier i;
+  // cgen: new n
+  public void visit(NewObject n) {
+    int d = save();
+    super.visit(n);
+    restore(d);
+  }
+
+  // cgen: this
+  public void visit(This n) {
+    asm.lw(dest(), context.currMethod.params.size() * 4 + 4, FP);
+  }
+
+  // int i;
+  public void visit(IntegerLiteral n) {
+    asm.li(dest(), n.i);
+  }
+
+  public void visit(True n) {
+    asm.li(dest(), 1);
+  }
+
+  public void visit(False n) {
+    asm.li(dest(), 0);
+  }
+
+  // String s;
+  public void visit(IdentifierExp n) {
+    if (context.currMethod.containsParam(n.s) || context.currMethod.containsVar(n.s)) {
+      asm.lw(dest(), getVarInternalId(n.s) * 4, FP);
+    } else {
+      asm.lw(dest(), context.currMethod.params.size() * 4 + 4, FP);
+      asm.lw(dest(), context.currClass.getFieldOffset(n.s), dest());
+    }
+  }
+
+  // Evaluate the operands of a comparison into registers
+  protected int[] compare(Exp e1, Exp e2) {
+    return operands(e1, e2);
+  }
+
+  // The register holding the value of the expression being visited
+  private int dest() {
+    return POOL[depth];
+  }
+
+  // Evaluate e into POOL[d]
+  private void gen(Exp e, int d) {
+    int prevDepth = depth;
+    depth = d;
+    e.accept(this);
+    depth = prevDepth;
+  }
+
+  // Evaluate e1 and e2 and return the registers holding their values
+  // (dest() is one of them)
+  private int[] operands(Exp e1, Exp e2) {
+    int d = depth;
+    if (d + 1 == POOL.length) {
+      // Out of registers: keep e1 in the stack while evaluating e2
+      gen(e1, d);
+      reserveTemps(1);
+      storeTemp(POOL[d], 1);
+      gen(e2, d);
+      loadTemp(V1, 1);
+      releaseTemps(1);
+      return new int[] { V1, POOL[d] };
+    }
+    if (e2.need > e1.need && !e1.hasCall && !e2.hasCall) {
+      gen(e2, d);
+      gen(e1, d + 1);
+      return new int[] { POOL[d + 1], POOL[d] };
+    }
+    gen(e1, d);
+    gen(e2, d + 1);
+    return new int[] { POOL[d], POOL[d + 1] };
+  }
+
+  // Save the registers in use (below the current depth) before a call and
+  // evaluate its operands from depth 0, leaving the result in $a0.
+  // Return the depth to restore.
+  private int save() {
+    int d = depth;
+    if (d > 0) {
+      reserveTemps(d);
+      for (int i = 0; i < d; i++) {
+        storeTemp(POOL[i], i + 1);
+      }
+    }
+    depth = 0;
+    return d;
+  }
+
+  // Move the result of a call to its register and reload the saved ones
+  private void restore(int d) {
+    depth = d;
+    if (d > 0) {
+      asm.move(dest(), A0);
+      for (int i = 0; i < d; i++) {
+        loadTemp(POOL[i], i + 1);
+      }
+      releaseTemps(d);
+    }
+  }
+}
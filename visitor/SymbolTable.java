@@ -2,549 +2,354 @@ package visitor;
 
 import syntaxtree.*;
 
-import java.util.*;
-
-import static visitor.SymbolTable.autoIncrementalClassId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
 
 // The global Symbol Table that maps class name to Class
 class SymbolTable {
 
-  static int autoIncrementalClassId = 0;
-  static int autoIncrementalMethodId = 0;
-  static int autoIncrementalVariableId = 0;
-
+  private final CompilationContext context;
   private Hashtable<String, Class> hashtable;
-
-  public SymbolTable() {
-    autoIncrementalClassId = 0;
-    autoIncrementalMethodId = 0;
-    autoIncrementalVariableId = 0;
+  private ArrayList<Class> classes;  // Indexed by Class.getDenseId()
+  private boolean frozen;
+
+  // Type ids (see getTypeId()): the primitive types are predefined and the
+  // class names are interned on first use
+  static final int UNKNOWN_TYPE_ID = -1;
+  static final int INT_TYPE_ID = 0;
+  static final int BOOLEAN_TYPE_ID = 1;
+  static final int INT_ARRAY_TYPE_ID = 2;
+  static final int FIRST_CLASS_TYPE_ID = 3;
+
+  private HashMap<String, Integer> classTypeIds;
+  private ArrayList<String> classTypeNames;  // Indexed by (type id - FIRST_CLASS_TYPE_ID)
+  private Class[] classesByTypeId;           // Built by freeze()
+  private Class[] classesByPreorder;         // Built by freeze()
+  private HashMap<String, Integer> methodNameIds;
+
+  public SymbolTable(CompilationContext context) {
+    this.context = context;
     hashtable = new Hashtable<String, Class>();
+    classes = new ArrayList<Class>();
+    classTypeIds = new HashMap<String, Integer>();
+    classTypeNames = new ArrayList<String>();
+    methodNameIds = new HashMap<String, Integer>();
   }
 
   // Register the class name and map it to a new class (with its supperclass)
   // Return false if there is a name conflicts. Otherwise return true.
   public boolean addClass(String id, String parent, int beginLine, int beginColumn) {
-    autoIncrementalMethodId = 0;
-    autoIncrementalVariableId = 0;
+    context.restartMemberIds();
 
     if (containsClass(id))
       return false;
-    else
-      hashtable.put(id, new Class(id, parent, beginLine, beginColumn, this));
+    else {
+      Class c = new Class(id, parent, beginLine, beginColumn, this);
+      hashtable.put(id, c);
+      classes.add(c);
+    }
     return true;
   }
 
-  // Return the Class that previously mapped to the specified name.
-  // Return null if the specified is not found.
-  public Class getClass(String id) {
-    if (containsClass(id))
-      return (Class) hashtable.get(id);
-    else
-      return null;
-  }
-
-  public boolean containsClass(String id) {
-    return hashtable.containsKey(id);
-  }
-
-  // Given a variable "id" that is used in method "m" inside class "c", 
-  // return the type of the variable. It returns null if the variable
-  // is not yet defined.
-  // If "m" is null, check only fields in class "c" or in its ancestors.
-  // If "c" is null, check only the variables declared in "m".
-  public Type getVarType(Method m, Class c, String id) {
-
-    if (m != null) {
-      // Check if the variable is one of the local variables
-      if (m.getVar(id) != null) {
-        return m.getVar(id).getType();
+  // Freeze the class hierarchy once all classes have been declared.
+  //
+  // Superclass names are resolved to Class references, and the classes are
+  // numbered in depth-first order of the "extends" tree, so that the
+  // subclasses of a class occupy the contiguous range
+  // [preorder, lastDescendant]. This turns isSubclassOf() into an interval
+  // test. The fields visible in each class (its own and inherited ones) are
+  // flattened into one table as well.
+  public void freeze() {
+    int numOfClasses = classes.size();
+
+    // Resolve the superclasses
+    ArrayList<ArrayList<Class>> children = new ArrayList<>(numOfClasses);
+    for (int i = 0; i < numOfClasses; i++) {
+      children.add(new ArrayList<Class>());
+    }
+    for (Class c : classes) {
+      Class superClass = c.getParentId() == null ? null : getClass(c.getParentId());
+      if (c.getParentId() != null && superClass == null) {
+        context.err.printf("%s: Unknown superclass %s%n", c.getId(), c.getParentId());
       }
 
-      // Check if the variable is one of the formal parameters
-      if (m.getParam(id) != null) {
-        return m.getParam(id).getType();
+      c.setSuperClass(superClass);
+      if (superClass != null) {
+        children.get(superClass.getDenseId()).add(c);
       }
     }
 
-    // Try to resolve the name against fields in class
-    while (c != null) {
-      // Check if the variables is one of the fields in the current class
-      if (c.getVar(id) != null) {
-        return c.getVar(id).getType();  // Found!
-      } else // Try its superclass (and their superclasses)
-        if (c.getParentId() == null) {
-          c = null;
-        } else {
-          c = getClass(c.getParentId());
+    // Number the classes in depth-first order, starting from the roots. A
+    // class that is still unnumbered afterwards is part of an inheritance
+    // cycle, which is broken at that class.
+    int[] nextChild = new int[numOfClasses];
+    int counter = 0;
+    for (int pass = 0; pass < 2; pass++) {
+      for (Class root : classes) {
+        if (root.getPreorder() >= 0 || (pass == 0 && root.getSuperClass() != null))
+          continue;
+
+        if (root.getSuperClass() != null) {
+          context.err.printf("%s: Cyclic inheritance%n", root.getId());
+          root.setSuperClass(null);
         }
-    }
-
-    return null;
-  }
-
-  // Return the declared method defined in the class named "classId"
-  // (or in one of its ancestors)
-  public Method getMethod(ArrayList<Type> paramTypes, String id, String classId) {
-    Class c = getClass(classId);
 
-    if (c == null) {
-      return null;
-    }
-
-    // Try to find the declared method along the class hierarchy
-    while (c != null) {
-      if (c.getMethod(paramTypes, id) != null) {
-        return c.getMethod(paramTypes, id);   // Found!
-      } else if (c.getParentId() == null) {
-        c = null;
-      } else {
-        c = getClass(c.getParentId());
+        ArrayList<Class> stack = new ArrayList<>();
+        root.setPreorder(counter++);
+        stack.add(root);
+
+        while (!stack.isEmpty()) {
+          Class c = stack.get(stack.size() - 1);
+          ArrayList<Class> subclasses = children.get(c.getDenseId());
+
+          if (nextChild[c.getDenseId()] < subclasses.size()) {
+            Class subclass = subclasses.get(nextChild[c.getDenseId()]++);
+            if (subclass.getPreorder() < 0) {
+              subclass.setPreorder(counter++);
+              stack.add(subclass);
+            }
+          } else {
+            c.setLastDescendant(counter - 1);
+            stack.remove(stack.size() - 1);
+          }
+        }
       }
     }
 
-    return null;
-  }
-
-  public ArrayList<Class> getParentClasses(String classId) {
-    ArrayList<Class> parentClasses = new ArrayList<>();
-
-    Class c = getClass(classId);
-    while (c != null) {
-      if (c.getParentId() == null)
-        break;
-
-      c = getClass(c.getParentId());
-      parentClasses.add(c);
+    // Flatten the visible fields and the vtables, superclasses first
+    classesByPreorder = new Class[numOfClasses];
+    for (Class c : classes) {
+      classesByPreorder[c.getPreorder()] = c;
+    }
+    for (Class c : classesByPreorder) {
+      c.flattenMembers();
     }
 
-    return parentClasses;
-  }
-
-  // Utility method to check if t1 is compatible with t2
-  // or if t1 is a subclass of t2
-  // Note: This method can be placed in another class
-  public boolean compareTypes(Type t1, Type t2) {
-    if (t1 == null || t2 == null) return false;
-
-    // Exact Type
-    if (t1 instanceof IntegerType && t2 instanceof IntegerType)
-      return true;
-    if (t1 instanceof BooleanType && t2 instanceof BooleanType)
-      return true;
-    if (t1 instanceof IntArrayType && t2 instanceof IntArrayType)
-      return true;
-    if (t1 instanceof IdentifierType && t2 instanceof IdentifierType) {
-      IdentifierType i1 = (IdentifierType) t1;
-      IdentifierType i2 = (IdentifierType) t2;
-
-      Class c = getClass(i2.s);
-      while (c != null) {
-        // If two classes has the same name
-        if (i1.s.equals(c.getId()))
-          return true;
-        else { // Check the next class along the class heirachy
-
-          if (c.getParentId() == null)
-            return false;
-
-          c = getClass(c.getParentId());
-        }
-      }
+    classesByTypeId = new Class[classTypeNames.size()];
+    for (int i = 0; i < classesByTypeId.length; i++) {
+      classesByTypeId[i] = getClass(classTypeNames.get(i));
     }
 
-    return false;
+    frozen = true;
   }
 
-} // SymbolTable
-
-// Store all properties that describe a class
-class Class {
-
-  private final int beginLine;
-  private final int beginColumn;
-  private final int internalId = ++autoIncrementalClassId;
-  protected String id;      // Class name
-  protected Hashtable<String, Method> methods;
-  protected Hashtable<String, Variable> fields;
-  protected String parent;  // Superclass's name  (null if there is no superclass)
-  protected Type type;      // An instance of Type that represents this class
-
-  private final SymbolTable symbolTable;
-
-  // Model a class named "id" that extend a class name "p"
-  // "p" is null if class "id" does has extend any class
-  public Class(String id, String p, int beginLine, int beginColumn, SymbolTable symbolTable) {
-    this.id = id;
-    this.parent = p;
-    this.type = new IdentifierType(id);
-    this.methods = new Hashtable<String, Method>();
-    this.fields = new Hashtable<String, Variable>();
-    this.beginLine = beginLine;
-    this.beginColumn = beginColumn;
-    this.symbolTable = symbolTable;
+  public CompilationContext getContext() {
+    return context;
   }
 
-  public String getId() {
-    return id;
+  public boolean isFrozen() {
+    return frozen;
   }
 
-  public Type getType() {
-    return type;
+  // Return the class with the specified dense id (see Class.getDenseId())
+  public Class getClass(int denseId) {
+    return classes.get(denseId);
   }
 
-  // Add a method defined in the current class by registering
-  // its name along with its return type.
-  // The other properties (parameters, local variables) of the method
-  // will be added later
-  // 
-  // Return false if there is a name conflict (among all method names only)
-  public boolean addMethod(String id, Type type, FormalList fl, int beginLine, int beginColumn) {
-    SymbolTable.autoIncrementalVariableId = 0;
-
-    ArrayList<Type> paramTypes = new ArrayList<>();
-    for (int i = 0; i < fl.size(); i++) {
-      paramTypes.add(fl.elementAt(i).t);
-    }
-
-    if (containsMethod(paramTypes, id))
-      return false;
-    else {
-      Method method = new Method(id, type, fl, this, beginLine, beginColumn);
-      methods.put(String.format("%s(%s)", method.getId(), method.getParamTypesAsString()), method);
-
-      return true;
-    }
+  public int getNumOfClasses() {
+    return classes.size();
   }
 
-  // Return the method representation for the specified method
-  public Method getMethod(ArrayList<Type> paramTypes, String id) {
-    MultiValueMap<String, String> parentTypesMap = new MultiValueMap<>();
-
-    StringBuilder builder = new StringBuilder();
-    for (int i = 0, paramsSize = paramTypes.size(); i < paramsSize; i++) {
-      // Build param types string
-      Type paramType = paramTypes.get(i);
-      builder.append(" ").append(paramTypes.get(i)).append(" ");
-      if (i != paramsSize - 1) {
-        builder.append(",");
-      }
-
-      // Store parent classes of the current param type
-      ArrayList<Class> parentClasses = symbolTable.getParentClasses(paramType.toString());
-      for (Class c : parentClasses) {
-        parentTypesMap.putValue(paramType.toString(), c.getId());
-      }
-    }
-
-    String methodKey = String.format("%s(%s)", id, builder.toString());
-    Method method = methods.get(methodKey); // Perfect match method
-
-    if (method != null) return method;
-
-    // Method with base classes
-    for (String paramType : parentTypesMap.getKeys()) {
-      Set<String> parentTypes = parentTypesMap.getValues(paramType);
-
-      for (String parentTypeId : parentTypes) {
-        methodKey = String.format("%s(%s)", id, builder.toString().replaceAll(" " + paramType + " ", " " + parentTypeId + " "));
-        method = methods.get(methodKey);
-
-        if (method == null) continue;
-
-        return method;
+  // Return an integer that identifies the type. Two types have the same id
+  // if and only if they denote the same type.
+  public int getTypeId(Type t) {
+    if (t instanceof IntegerType)
+      return INT_TYPE_ID;
+    if (t instanceof BooleanType)
+      return BOOLEAN_TYPE_ID;
+    if (t instanceof IntArrayType)
+      return INT_ARRAY_TYPE_ID;
+    if (t instanceof IdentifierType) {
+      String name = ((IdentifierType) t).s;
+      Integer typeId = classTypeIds.get(name);
+      if (typeId == null) {
+        typeId = FIRST_CLASS_TYPE_ID + classTypeNames.size();
+        classTypeIds.put(name, typeId);
+        classTypeNames.add(name);
       }
+      return typeId;
     }
 
-    return null;
+    return UNKNOWN_TYPE_ID;
   }
 
-  // Add a field
-  // Return false if there is a name conflict (among all fields only)
-  public boolean addVar(String id, Type type, int beginLine, int beginColumn) {
-    if (fields.containsKey(id))
-      return false;
-    else {
-      Variable var = new Variable(id, type, this, null, beginLine, beginColumn);
-      fields.put(id, var);
-
-      return true;
-    }
-  }
-
-  // Return a field with the specified name 
-  public Variable getVar(String id) {
-    if (containsVar(id))
-      return (Variable) fields.get(id);
-    else
+  // Return the class denoted by a type id (null if it is not a declared class)
+  public Class getClassOfTypeId(int typeId) {
+    int i = typeId - FIRST_CLASS_TYPE_ID;
+    if (i < 0)
       return null;
+    if (classesByTypeId != null && i < classesByTypeId.length)
+      return classesByTypeId[i];
+    return getClass(classTypeNames.get(i));
   }
 
-  public boolean containsVar(String id) {
-    return fields.containsKey(id);
-  }
-
-  public boolean containsMethod(ArrayList<Type> paramTypes, String id) {
-    return this.getMethod(paramTypes, id) != null;
-  }
-
-  public String getParentId() {
-    return parent;
-  }
-
-  public int getBeginLine() {
-    return beginLine;
-  }
-
-  public int getBeginColumn() {
-    return beginColumn;
-  }
-
-  public int getInternalId() {
-    return internalId;
-  }
-} // Class
-
-// Store all properties that describe a variable
-class Variable {
-
-  private final int internalId = ++SymbolTable.autoIncrementalVariableId;
-  private final Class scopingClass;
-  private final Method scopingMethod;
-  private final int beginLine;
-  private final int beginColumn;
-  protected String id;
-  protected Type type;
-
-  public Variable(String id, Type type, Class scopingClass, Method scopingMethod, int beginLine, int beginColumn) {
-    this.id = id;
-    this.type = type;
-    this.scopingClass = scopingClass;
-    this.scopingMethod = scopingMethod;
-    this.beginLine = beginLine;
-    this.beginColumn = beginColumn;
-  }
-
-  public String getId() {
-    return id;
-  }
-
-  public String getUniqueId() {
-    if (scopingMethod == null) {
-      return scopingClass.getId() + "_" + id;
-    } else {
-      return scopingClass.getId() + "_" + scopingMethod.getId() + "_" + id;
+  public int getNameId(String name) {
+    Integer nameId = methodNameIds.get(name);
+    if (nameId == null) {
+      nameId = methodNameIds.size();
+      methodNameIds.put(name, nameId);
     }
+    return nameId;
   }
 
-  public int getBeginLine() {
-    return beginLine;
-  }
-
-  public int getBeginColumn() {
-    return beginColumn;
-  }
-
-  public Type getType() {
-    return type;
-  }
-
-  public int getInternalId() {
-    return internalId;
+  public MethodSignature getSignature(String id, List<Type> types) {
+    int[] typeIds = new int[types.size()];
+    for (int i = 0; i < typeIds.length; i++) {
+      typeIds[i] = getTypeId(types.get(i));
+    }
+    return new MethodSignature(getNameId(id), typeIds);
   }
 
-  public Method getScopingMethod() {
-    return scopingMethod;
-  }
-} // Variable
-
-// Store all properties that describe a variable
-class Method {
-
-  private final int internalId = ++SymbolTable.autoIncrementalMethodId;
-  private final Class scopingClass;
-  private final int beginLine;
-  private final int beginColumn;
-  protected String id;  // Method name
-  protected Type type;  // Return type
-  protected Vector<Variable> params;          // Formal parameters
-  protected Hashtable<String, Variable> vars; // Local variables
-
-  public Method(String id, Type type, FormalList fl, Class scopingClass, int beginLine, int beginColumn) {
-    this.scopingClass = scopingClass;
-    this.beginLine = beginLine;
-    this.beginColumn = beginColumn;
-    this.id = id;
-    this.type = type;
-    this.params = new Vector<Variable>();
-    this.vars = new Hashtable<String, Variable>();
-
-    if (fl != null)
-      for (int i = 0; i < fl.size(); i++) {
-        Formal formal = fl.elementAt(i);
-
-        if (!this.addParam(formal.i.s, formal.t, 0, 0)) {
-          Variable conflictedParam = this.getParam(id);
-          System.err.printf("%s: Redeclaration (%s,%s:%s; %s,%s)%n", id, conflictedParam.getBeginLine(), conflictedParam.getBeginColumn(), conflictedParam.getScopingMethod().getInternalId(), 0, 0);
-        }
-      }
-  }
+  // Return true if a value of type "t1" can be assigned to type "t2"
+  public boolean isSubtype(int t1, int t2) {
+    if (t1 == UNKNOWN_TYPE_ID || t2 == UNKNOWN_TYPE_ID)
+      return false;
+    if (t1 == t2)
+      return true;
+    if (t1 < FIRST_CLASS_TYPE_ID || t2 < FIRST_CLASS_TYPE_ID)
+      return false;
 
-  // y
-  public String getId() {
-    return id;
+    return isSubclassOf(getClassOfTypeId(t1), getClassOfTypeId(t2));
   }
 
-  // X_y(int x, int y)
-  public String getUniqueId() {
-    StringBuilder builder = new StringBuilder();
-    builder.append(scopingClass.getId()).append("__").append(id).append("_");
-    builder.append(getParamsAsString());
-    builder.append("_");
+  // Return true if a method with signature "method" can be invoked by "call"
+  // (same name and arity, and every argument is a subtype of the parameter)
+  public boolean isApplicable(MethodSignature method, MethodSignature call) {
+    if (method.nameId != call.nameId || method.typeIds.length != call.typeIds.length)
+      return false;
 
-    return builder.toString();
+    for (int i = 0; i < method.typeIds.length; i++) {
+      if (!isSubtype(call.typeIds[i], method.typeIds[i]))
+        return false;
+    }
+    return true;
   }
 
-  public String getParamTypesAsString() {
-    StringBuilder builder = new StringBuilder();
-
-    for (int i = 0, paramsSize = params.size(); i < paramsSize; i++) {
-      Variable var = params.get(i);
+  // Return true if "c" is "d" or one of its subclasses
+  public boolean isSubclassOf(Class c, Class d) {
+    if (c == null || d == null) return false;
 
-      builder.append(" ");
-      builder.append(var.getType());
-      builder.append(" ");
+    if (frozen)
+      return d.getPreorder() <= c.getPreorder() && c.getPreorder() <= d.getLastDescendant();
 
-      if (i != paramsSize - 1) {
-        builder.append(",");
-      }
+    for (; c != null; c = c.getParentClass()) {
+      if (c == d) return true;
     }
-
-    return builder.toString();
+    return false;
   }
 
-  public String getParamsAsString() {
-    StringBuilder builder = new StringBuilder();
-
-    for (int i = 0, paramsSize = params.size(); i < paramsSize; i++) {
-      Variable var = params.get(i);
-
-      builder.append(var.getType());
-      builder.append("_");
-      builder.append(var.getId());
+  // Class hierarchy analysis: the only method that a call of "m" on an
+  // object of static type "receiver" can run, or null if the subclasses of
+  // "receiver" have several implementations of it
+  public Method getOnlyImplementation(Method m, Type receiver) {
+    Class c = receiver instanceof IdentifierType ? getClass(((IdentifierType) receiver).s) : null;
+    if (c == null || !frozen)
+      return null;
 
-      if (i != paramsSize - 1) {
-        builder.append("__");
-      }
+    Method only = null;
+    for (int i = c.getPreorder(); i <= c.getLastDescendant(); i++) {
+      Method implementation = classesByPreorder[i].getVtable().get(m.getVtableIndex());
+      if (only != null && implementation != only)
+        return null;
+      only = implementation;
     }
-
-    return builder.toString();
-  }
-
-  public Type getType() {
-    return type;
+    return only;
   }
 
-  // Add a formal parameter
-  // Return false if there is a name conflict
-  public boolean addParam(String id, Type type, int beginLine, int beginColumn) {
-    if (containsParam(id))
-      return false;
-    else {
-      Variable var = new Variable(id, type, scopingClass, this, beginLine, beginColumn);
-      params.addElement(var);
+  // The class an inline cache for a call on an object of static type
+  // "receiver" expects: the first subclass of "receiver" (in preorder) that
+  // the program instantiates, or "receiver" itself if there is none
+  public Class getCachedClass(Type receiver) {
+    Class c = receiver instanceof IdentifierType ? getClass(((IdentifierType) receiver).s) : null;
+    if (c == null || !frozen)
+      return null;
 
-      return true;
+    for (int i = c.getPreorder(); i <= c.getLastDescendant(); i++) {
+      if (classesByPreorder[i].isInstantiated())
+        return classesByPreorder[i];
     }
+    return c;
   }
 
-  public Enumeration getParams() {
-    return params.elements();
-  }
-
-  // Return a formal parameter by position (i=0 means 1st parameter)
-  public Variable getParamAt(int i) {
-    if (i < params.size())
-      return (Variable) params.elementAt(i);
+  // Return the Class that previously mapped to the specified name.
+  // Return null if the specified is not found.
+  public Class getClass(String id) {
+    if (containsClass(id))
+      return (Class) hashtable.get(id);
     else
       return null;
   }
 
-  // Add a local variable
-  // Return false if there is a name conflict
-  public boolean addVar(String id, Type type, int beginLine, int beginColumn) {
-    if (vars.containsKey(id))
-      return false;
-    else {
-      Variable var = new Variable(id, type, scopingClass, this, beginLine, beginColumn);
-      vars.put(id, var);
-
-      return true;
-    }
+  public boolean containsClass(String id) {
+    return hashtable.containsKey(id);
   }
 
-  public boolean containsVar(String id) {
-    return vars.containsKey(id);
-  }
+  // Given a variable "id" that is used in method "m" inside class "c", 
+  // return the type of the variable. It returns null if the variable
+  // is not yet defined.
+  // If "m" is null, check only fields in class "c" or in its ancestors.
+  // If "c" is null, check only the variables declared in "m".
+  public Type getVarType(Method m, Class c, String id) {
 
-  public boolean containsParam(String id) {
-    for (int i = 0; i < params.size(); i++)
-      if (((Variable) params.elementAt(i)).id.equals(id))
-        return true;
-    return false;
-  }
+    if (m != null) {
+      // Check if the variable is one of the local variables
+      if (m.getVar(id) != null) {
+        return m.getVar(id).getType();
+      }
 
-  public Variable getVar(String id) {
-    if (containsVar(id))
-      return (Variable) vars.get(id);
-    else
-      return null;
-  }
+      // Check if the variable is one of the formal parameters
+      if (m.getParam(id) != null) {
+        return m.getParam(id).getType();
+      }
+    }
 
-  // Return a formal parameter by name
-  public Variable getParam(String id) {
-    for (int i = 0; i < params.size(); i++)
-      if (((Variable) params.elementAt(i)).id.equals(id))
-        return (Variable) (params.elementAt(i));
+    // Try to resolve the name against fields in class (and in its ancestors)
+    if (c != null) {
+      Variable field = c.getVisibleVar(id);
+      if (field != null) {
+        return field.getType();  // Found!
+      }
+    }
 
     return null;
   }
 
-  public int getBeginLine() {
-    return beginLine;
-  }
-
-  public int getBeginColumn() {
-    return beginColumn;
-  }
-
-  public int getInternalId() {
-    return internalId;
-  }
-} // Method
-
-
-class MultiValueMap<K, V> {
+  // Return the declared method defined in the class named "classId"
+  // (or in one of its ancestors) that is invoked by a call with arguments
+  // of types "paramTypes"
+  public Method getMethod(ArrayList<Type> paramTypes, String id, String classId) {
+    Class c = getClass(classId);
 
-  private final Map<K, Set<V>> mappings = new HashMap<K, Set<V>>();
+    if (c == null) {
+      return null;
+    }
 
-  public Set<K> getKeys() {
-    return mappings.keySet();
+    return c.resolveMethod(paramTypes, id);
   }
 
-  public Set<V> getValues(K key) {
-    return mappings.get(key);
-  }
+  // Utility method to check if t1 is compatible with t2
+  // or if t1 is a subclass of t2
+  // Note: This method can be placed in another class
+  public boolean compareTypes(Type t1, Type t2) {
+    if (t1 == null || t2 == null) return false;
 
-  public Boolean putValue(K key, V value) {
-    Set<V> target = mappings.get(key);
+    // Exact Type
+    if (t1 instanceof IntegerType && t2 instanceof IntegerType)
+      return true;
+    if (t1 instanceof BooleanType && t2 instanceof BooleanType)
+      return true;
+    if (t1 instanceof IntArrayType && t2 instanceof IntArrayType)
+      return true;
+    if (t1 instanceof IdentifierType && t2 instanceof IdentifierType) {
+      IdentifierType i1 = (IdentifierType) t1;
+      IdentifierType i2 = (IdentifierType) t2;
 
-    if (target == null) {
-      target = new HashSet<V>();
-      mappings.put(key, target);
+      return isSubclassOf(getClass(i2.s), getClass(i1.s));
     }
 
-    return target.add(value);
+    return false;
   }
 
-}
\ No newline at end of file
+} // SymbolTable
@@ -0,0 +1,92 @@
+package visitor;
+
+import syntaxtree.*;
+
+// Compute the largest number of temporaries that CodeGenVisitor keeps at
+// the same time while generating a method body (or the main statement),
+// so that they can be given fixed slots in the frame (-fframe-temps).
+//
+// A binary operator other than && keeps its left operand while evaluating
+// the right one (at most, see CodeGenVisitor.compare), i[e1] = e2 keeps e2
+// while evaluating e1, and a call keeps the caller's $fp, the object and
+// its arguments (n + 2 words, laid out as the callee expects them) while
+// evaluating the arguments.
+public class TempDepthVisitor extends DepthFirstVisitor {
+
+  private int depth = 0;
+  private int maxDepth = 0;
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  // Identifier i;
+  // Exp e1,e2;
+  public void visit(ArrayAssign n) {
+    n.e2.accept(this);
+    hold(1);
+    n.e1.accept(this);
+    release(1);
+  }
+
+  // Exp e1,e2;
+  public void visit(And n) {
+    n.e1.accept(this);
+    n.e2.accept(this);
+  }
+
+  // Exp e1,e2;
+  public void visit(LessThan n) {
+    binary(n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(Plus n) {
+    binary(n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(Minus n) {
+    binary(n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(Times n) {
+    binary(n.e1, n.e2);
+  }
+
+  // Exp e1,e2;
+  public void visit(ArrayLookup n) {
+    binary(n.e1, n.e2);
+  }
+
+  // Exp e;
+  // Identifier i;
+  // ExpList el;
+  public void visit(Call n) {
+    hold(1);
+    n.e.accept(this);
+    hold(1);
+    for (int i = n.el.size() - 1; i >= 0; i--) {
+      n.el.elementAt(i).accept(this);
+      hold(1);
+    }
+    release(n.el.size() + 2);
+  }
+
+  private void binary(Exp e1, Exp e2) {
+    e1.accept(this);
+    hold(1);
+    e2.accept(this);
+    release(1);
+  }
+
+  private void hold(int count) {
+    depth += count;
+    maxDepth = Math.max(maxDepth, depth);
+  }
+
+  private void release(int count) {
+    depth -= count;
+  }
+}
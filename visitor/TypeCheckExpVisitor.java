@@ -19,22 +19,24 @@ public class TypeCheckExpVisitor extends TypeDepthFirstVisitor {
   // Exp e1,e2;
   public Type visit(And n) {
     if (!(n.e1.accept(this) instanceof BooleanType)) {
-      System.err.printf("Left side of AND must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().err.printf("Left side of AND must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
     if (!(n.e2.accept(this) instanceof BooleanType)) {
-      System.err.printf("Right side of AND must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().err.printf("Right side of AND must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
-    return new BooleanType();
+    n.type = new BooleanType();
+    return n.type;
   }
 
   // Exp e1,e2;
   public Type visit(LessThan n) {
     if (n.e1.accept(this) instanceof IntegerType && n.e2.accept(this) instanceof IntegerType) {
-      return new BooleanType();
+      n.type = new BooleanType();
+      return n.type;
     }
 
     return null;
@@ -43,7 +45,8 @@ public class TypeCheckExpVisitor extends TypeDepthFirstVisitor {
   // Exp e1,e2;
   public Type visit(Plus n) {
     if (n.e1.accept(this) instanceof IntegerType && n.e2.accept(this) instanceof IntegerType) {
-      return new IntegerType();
+      n.type = new IntegerType();
+      return n.type;
     }
 
     return null;
@@ -52,7 +55,8 @@ public class TypeCheckExpVisitor extends TypeDepthFirstVisitor {
   // Exp e1,e2;
   public Type visit(Minus n) {
     if (n.e1.accept(this) instanceof IntegerType && n.e2.accept(this) instanceof IntegerType) {
-      return new IntegerType();
+      n.type = new IntegerType();
+      return n.type;
     }
 
     return null;
@@ -61,35 +65,39 @@ public class TypeCheckExpVisitor extends TypeDepthFirstVisitor {
   // Exp e1,e2;
   public Type visit(Times n) {
     if (n.e1.accept(this) instanceof IntegerType && n.e2.accept(this) instanceof IntegerType) {
-      return new IntegerType();
+      n.type = new IntegerType();
+      return n.type;
     }
 
-    return new IntegerType();
+    n.type = new IntegerType();
+    return n.type;
   }
 
   // Exp e1,e2;
   public Type visit(ArrayLookup n) {
     if (!(n.e1.accept(this) instanceof IntArrayType)) {
-      System.out.printf("Left side of ArrayLookup must be of type integer (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().out.printf("Left side of ArrayLookup must be of type integer (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
     if (!(n.e2.accept(this) instanceof IntegerType)) {
-      System.out.printf("Right side of ArrayLookup must be of type integer (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().out.printf("Right side of ArrayLookup must be of type integer (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
-    return new IntegerType();
+    n.type = new IntegerType();
+    return n.type;
   }
 
   // Exp e;
   public Type visit(ArrayLength n) {
     if (!(n.e.accept(this) instanceof IntArrayType)) {
-      System.out.printf("Left side of ArrayLength must be of type integer (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().out.printf("Left side of ArrayLength must be of type integer (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
-    return new IntegerType();
+    n.type = new IntegerType();
+    return n.type;
   }
 
   // Exp e;
@@ -99,7 +107,7 @@ public class TypeCheckExpVisitor extends TypeDepthFirstVisitor {
     Type ne = n.e.accept(this);
 
     if (!(ne instanceof IdentifierType)) {
-      System.err.printf("Method %s should be called on Class or Object, while %s is not a valid class", n.i, n.i);
+      symbolTable.getContext().err.printf("Method %s should be called on Class or Object, while %s is not a valid class", n.i, n.i);
       return null;
     }
 
@@ -113,59 +121,72 @@ public class TypeCheckExpVisitor extends TypeDepthFirstVisitor {
     Method calledMethod = symbolTable.getMethod(paramTypes, methodId, classId);
 
     if (calledMethod == null) {
-      System.err.printf("Method %s not defined in %s (%s,%s:%s)%n", methodId, classId, 0, 0, 0);
+      symbolTable.getContext().err.printf("Method %s not defined in %s (%s,%s:%s)%n", methodId, classId, 0, 0, 0);
       return null;
     }
 
-    return calledMethod.getType();
+    n.method = calledMethod;
+    n.type = calledMethod.getType();
+    return n.type;
   }
 
   // int i;
   public Type visit(IntegerLiteral n) {
-    return new IntegerType();
+    n.type = new IntegerType();
+    return n.type;
   }
 
   public Type visit(True n) {
-    return new BooleanType();
+    n.type = new BooleanType();
+    return n.type;
   }
 
   public Type visit(False n) {
-    return new BooleanType();
+    n.type = new BooleanType();
+    return n.type;
   }
 
   // String s;
   public Type visit(IdentifierExp n) {
     Type type = symbolTable.getVarType(currMethod, currClass, n.s);
-    return type;
+    n.type = type;
+    return n.type;
   }
 
   public Type visit(This n) {
-    return currClass.getType();
+    n.type = currClass.getType();
+    return n.type;
   }
 
   // Exp e;
   public Type visit(NewArray n) {
     if (!(n.e.accept(this) instanceof IntegerType)) {
-      System.err.printf("NewArray operand must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().err.printf("NewArray operand must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
-    return new IntArrayType();
+    n.type = new IntArrayType();
+    return n.type;
   }
 
   // Identifier i;
   public Type visit(NewObject n) {
-    return new IdentifierType(n.i.s);
+    Class c = symbolTable.getClass(n.i.s);
+    if (c != null)
+      c.setInstantiated();
+    n.type = new IdentifierType(n.i.s);
+    return n.type;
   }
 
   // Exp e;
   public Type visit(Not n) {
     if (!(n.e.accept(this) instanceof BooleanType)) {
-      System.err.printf("Not operand must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
+      symbolTable.getContext().err.printf("Not operand must be of type boolean (%s,%s:%s)%n", 0, 0, 0);
       return null;
     }
 
-    return new BooleanType();
+    n.type = new BooleanType();
+    return n.type;
   }
 
 }
\ No newline at end of file
@@ -6,13 +6,15 @@ import java.util.ArrayList;
 
 public class TypeCheckVisitor extends DepthFirstVisitor {
 
-  static Class currClass;
-  static Method currMethod;
-  static SymbolTable symbolTable;
+  private final CompilationContext context;
+  private final SymbolTable symbolTable;
 
+  // Checks (and annotates) the expressions of the current method
+  private TypeCheckExpVisitor expVisitor;
 
-  public TypeCheckVisitor(SymbolTable s) {
-    symbolTable = s;
+  public TypeCheckVisitor(CompilationContext context) {
+    this.context = context;
+    this.symbolTable = context.getSymbolTable();
   }
 
   // MainClass m;
@@ -29,8 +31,9 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
   public void visit(MainClass n) {
     String i1 = n.i1.toString();
 
-    currClass = symbolTable.getClass(i1);
-    currMethod = currClass.getMethod(new ArrayList<>(), "main");
+    context.currClass = symbolTable.getClass(i1);
+    context.currMethod = context.currClass.getMethod(new ArrayList<>(), "main");
+    expVisitor = new TypeCheckExpVisitor(context.currClass, context.currMethod, symbolTable);
 
     for (int i = 0; i < n.vl.size(); i++) {
       n.vl.elementAt(i).accept(this);
@@ -45,7 +48,7 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
   // MethodDeclList ml;
   public void visit(ClassDeclSimple n) {
     String id = n.i.toString();
-    currClass = symbolTable.getClass(id);
+    context.currClass = symbolTable.getClass(id);
 
     for (int i = 0; i < n.vl.size(); i++) {
       n.vl.elementAt(i).accept(this);
@@ -61,7 +64,7 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
   // MethodDeclList ml;
   public void visit(ClassDeclExtends n) {
     String id = n.i.toString();
-    currClass = symbolTable.getClass(id);
+    context.currClass = symbolTable.getClass(id);
 
     n.j.accept(this);
     for (int i = 0; i < n.vl.size(); i++) {
@@ -93,9 +96,10 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
     for (int i = 0; i < n.fl.size(); i++) {
       paramTypes.add(n.fl.elementAt(i).t);
     }
-    currMethod = currClass.getMethod(paramTypes, id);
+    context.currMethod = context.currClass.getMethod(paramTypes, id);
+    expVisitor = new TypeCheckExpVisitor(context.currClass, context.currMethod, symbolTable);
 
-    Type retType = currMethod.getType();
+    Type retType = context.currMethod.getType();
     for (int i = 0; i < n.fl.size(); i++) {
       n.fl.elementAt(i).accept(this);
     }
@@ -106,9 +110,9 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
       n.sl.elementAt(i).accept(this);
     }
 
-    if (symbolTable.compareTypes(retType, n.e.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable))) == false) {
-      System.out.println("Wrong return type for method " + id);
-      System.exit(0);
+    if (symbolTable.compareTypes(retType, n.e.accept(expVisitor)) == false) {
+      context.out.println("Wrong return type for method " + id);
+      throw new CompilationException(0);
     }
   }
 
@@ -122,9 +126,9 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
   // Exp e;
   // Statement s1,s2;
   public void visit(If n) {
-    if (!(n.e.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable)) instanceof BooleanType)) {
-      System.out.println("The condition of while must be of type boolean");
-      System.exit(-1);
+    if (!(n.e.accept(expVisitor) instanceof BooleanType)) {
+      context.out.println("The condition of while must be of type boolean");
+      throw new CompilationException(-1);
     }
     n.s1.accept(this);
     n.s2.accept(this);
@@ -133,61 +137,61 @@ public class TypeCheckVisitor extends DepthFirstVisitor {
   // Exp e;
   // Statement s;
   public void visit(While n) {
-    if (!(n.e.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable)) instanceof BooleanType)) {
-      System.out.println("The condition of while must be of type boolean");
-      System.exit(-1);
+    if (!(n.e.accept(expVisitor) instanceof BooleanType)) {
+      context.out.println("The condition of while must be of type boolean");
+      throw new CompilationException(-1);
     }
     n.s.accept(this);
   }
 
   // Exp e;
   public void visit(Print n) {
-    if (!(n.e.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable)) instanceof IntegerType)) {
-      System.out.println("The argument of System.out.println must be of type int");
-      System.exit(-1);
+    if (!(n.e.accept(expVisitor) instanceof IntegerType)) {
+      context.out.println("The argument of System.out.println must be of type int");
+      throw new CompilationException(-1);
     }
   }
 
   // Identifier i;
   // Exp e;
   public void visit(Assign n) {
-    Type t1 = symbolTable.getVarType(currMethod, currClass, n.i.toString());
-    Type t2 = n.e.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable));
+    Type t1 = symbolTable.getVarType(context.currMethod, context.currClass, n.i.toString());
+    Type t2 = n.e.accept(expVisitor);
 
     if (t1 == null) {
-      System.err.printf("%s: Unknown identifier (%s,%s:%s)%n", n.i.toString(), 0, 0, currMethod.getInternalId());
+      context.err.printf("%s: Unknown identifier (%s,%s:%s)%n", n.i.toString(), 0, 0, context.currMethod.getInternalId());
       return;
     }
 
     if (symbolTable.compareTypes(t1, t2) == false) {
-      System.out.println("Type error in assignment to " + n.i.toString());
-      System.exit(0);
+      context.out.println("Type error in assignment to " + n.i.toString());
+      throw new CompilationException(0);
     }
   }
 
   // Identifier i;
   // Exp e1,e2;
   public void visit(ArrayAssign n) {
-    Type typeI = symbolTable.getVarType(currMethod, currClass, n.i.toString());
+    Type typeI = symbolTable.getVarType(context.currMethod, context.currClass, n.i.toString());
 
     if (typeI == null) {
-      System.err.printf("%s: Unknown identifier (%s,%s:%s)%n", n.i.toString(), 0, 0, currMethod.getInternalId());
+      context.err.printf("%s: Unknown identifier (%s,%s:%s)%n", n.i.toString(), 0, 0, context.currMethod.getInternalId());
       return;
     }
 
     if (!(typeI instanceof IntArrayType)) {
-      System.out.printf("The identifier in an array assignment must be of type int [] (%s,%s:%s)%n", 0, 0, currMethod.getInternalId());
-      System.exit(-1);
+      context.out.printf("The identifier in an array assignment must be of type int [] (%s,%s:%s)%n", 0, 0, context.currMethod.getInternalId());
+      throw new CompilationException(-1);
     }
 
-    if (!(n.e1.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable)) instanceof IntegerType)) {
-      System.out.printf("The first expression in an array assignment must be of type int (%s,%s:%s)%n", 0, 0, currMethod.getInternalId());
-      System.exit(-1);
+    if (!(n.e1.accept(expVisitor) instanceof IntegerType)) {
+      context.out.printf("The first expression in an array assignment must be of type int (%s,%s:%s)%n", 0, 0, context.currMethod.getInternalId());
+      throw new CompilationException(-1);
     }
 
-    if (!(n.e1.accept(new TypeCheckExpVisitor(currClass, currMethod, symbolTable)) instanceof IntegerType)) {
-      System.out.printf("The second expression in an array assignment must be of type int (%s,%s:%s)%n", 0, 0, currMethod.getInternalId());
-      System.exit(-1);
+    if (!(n.e2.accept(expVisitor) instanceof IntegerType)) {
+      context.out.printf("The second expression in an array assignment must be of type int (%s,%s:%s)%n", 0, 0, context.currMethod.getInternalId());
+      throw new CompilationException(-1);
     }
   }
 }
@@ -0,0 +1,57 @@
+package visitor;
+
+import syntaxtree.*;
+
+// Store all properties that describe a variable
+class Variable {
+
+  private final int internalId;
+  private final Class scopingClass;
+  private final Method scopingMethod;
+  private final int beginLine;
+  private final int beginColumn;
+  protected String id;
+  protected Type type;
+
+  public Variable(String id, Type type, Class scopingClass, Method scopingMethod, int beginLine, int beginColumn) {
+    this.id = id;
+    this.type = type;
+    this.scopingClass = scopingClass;
+    this.scopingMethod = scopingMethod;
+    this.beginLine = beginLine;
+    this.beginColumn = beginColumn;
+    this.internalId = scopingClass.getSymbolTable().getContext().newVariableId();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getUniqueId() {
+    if (scopingMethod == null) {
+      return scopingClass.getId() + "_" + id;
+    } else {
+      return scopingClass.getId() + "_" + scopingMethod.getId() + "_" + id;
+    }
+  }
+
+  public int getBeginLine() {
+    return beginLine;
+  }
+
+  public int getBeginColumn() {
+    return beginColumn;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public int getInternalId() {
+    return internalId;
+  }
+
+  public Method getScopingMethod() {
+    return scopingMethod;
+  }
+} // Variable